@@ -0,0 +1,29 @@
+package com.elevatebanking.aspect;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Re-runs the annotated transactional method when it loses an optimistic lock, i.e. a versioned
+ * entity it wrote was changed by someone else in the meantime. Each attempt gets a new database
+ * transaction, so the method must load what it changes instead of taking entities as arguments.
+ * <p>
+ * Only the outermost call retries: inside an already running transaction the conflict has marked
+ * that transaction for rollback and is passed on to the caller.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryOnConflict {
+    // attempts including the first one
+    int maxAttempts() default 3;
+
+    long initialBackoffMs() default 20;
+
+    long maxBackoffMs() default 500;
+
+    double multiplier() default 2.0;
+}
@@ -0,0 +1,95 @@
+package com.elevatebanking.aspect;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Implements {@link RetryOnConflict}. Ordered before the transaction interceptor, so every attempt
+ * runs in a fresh transaction and persistence context. Conflicts are counted as
+ * optimistic.lock.conflicts, tagged with the entity type, the method and whether the call was
+ * retried or gave up.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@RequiredArgsConstructor
+@Slf4j
+public class RetryOnConflictAspect {
+    private final MeterRegistry meterRegistry;
+
+    @Around("@annotation(retryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // the caller's transaction is already rollback-only, only its own unit can be re-run
+            return joinPoint.proceed();
+        }
+
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "."
+                + joinPoint.getSignature().getName();
+        int attempt = 1;
+        while (true) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                String entity = entityType(e);
+                if (attempt >= retryOnConflict.maxAttempts()) {
+                    conflicts(entity, method, "exhausted").increment();
+                    log.warn("Optimistic lock conflict on {} in {}, giving up after {} attempts",
+                            entity, method, attempt);
+                    throw e;
+                }
+
+                conflicts(entity, method, "retried").increment();
+                long delay = backoff(attempt, retryOnConflict);
+                log.debug("Optimistic lock conflict on {} in {}, attempt {} retrying in {} ms",
+                        entity, method, attempt, delay);
+                sleep(delay);
+                attempt++;
+            }
+        }
+    }
+
+    // exponential with equal jitter, so concurrent losers do not collide again in lockstep
+    private long backoff(int attempt, RetryOnConflict retryOnConflict) {
+        double exponential = retryOnConflict.initialBackoffMs() * Math.pow(retryOnConflict.multiplier(), attempt - 1);
+        long capped = (long) Math.min(exponential, retryOnConflict.maxBackoffMs());
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private String entityType(OptimisticLockingFailureException e) {
+        if (e instanceof ObjectOptimisticLockingFailureException objectException
+                && objectException.getPersistentClassName() != null) {
+            String className = objectException.getPersistentClassName();
+            return className.substring(className.lastIndexOf('.') + 1);
+        }
+        return "unknown";
+    }
+
+    private Counter conflicts(String entity, String method, String outcome) {
+        return Counter.builder("optimistic.lock.conflicts")
+                .description("Optimistic lock conflicts handled by @RetryOnConflict")
+                .tag("entity", entity)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.elevatebanking.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors of the application. With spring.threads.virtual.enabled every task runs on its own
+ * virtual thread, so blocking Redis, JDBC and SMTP calls no longer hold a pooled thread; Spring Boot
+ * applies the same switch to Tomcat and the scheduler. Otherwise each executor is a bounded, named
+ * platform pool from app.executor.pools.
+ * <p>
+ * Every executor exports executor.active and executor.completed tagged with its name, platform
+ * pools add executor.queued and executor.pool.size.
+ */
+@Configuration
+@EnableAsync
+@Slf4j
+public class ExecutorConfig {
+    public static final String NOTIFICATION_EXECUTOR = "notificationExecutor";
+    public static final String KAFKA_LISTENER_EXECUTOR = "kafkaListenerExecutor";
+
+    private final ExecutorProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final boolean virtualThreads;
+
+    public ExecutorConfig(ExecutorProperties properties, MeterRegistry meterRegistry,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.virtualThreads = virtualThreads;
+        log.info("Executors run on {} threads", virtualThreads ? "virtual" : "platform");
+    }
+
+    // backs @Async and async MVC requests (DeferredResult, SSE)
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    @Primary
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return buildExecutor("async");
+    }
+
+    // email and other notification I/O
+    @Bean(name = NOTIFICATION_EXECUTOR)
+    public AsyncTaskExecutor notificationExecutor() {
+        return buildExecutor("notification");
+    }
+
+    // one long running thread per consumer, so it is never a bounded pool
+    @Bean(name = KAFKA_LISTENER_EXECUTOR)
+    public AsyncTaskExecutor kafkaListenerExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("kafka-listener-");
+        executor.setVirtualThreads(virtualThreads);
+        executor.setTaskDecorator(meteredDecorator("kafka-listener"));
+        return executor;
+    }
+
+    private AsyncTaskExecutor buildExecutor(String name) {
+        ExecutorProperties.Pool pool = properties.pool(name);
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(name + "-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(pool.getVirtualConcurrencyLimit());
+            executor.setTaskDecorator(meteredDecorator(name));
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(name + "-");
+        executor.setCorePoolSize(pool.getCoreSize());
+        executor.setMaxPoolSize(pool.getMaxSize());
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        // a full pool slows the submitter down instead of dropping work
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        registerPoolMetrics(name, executor);
+        return executor;
+    }
+
+    private TaskDecorator meteredDecorator(String name) {
+        AtomicInteger active = new AtomicInteger();
+        Gauge.builder("executor.active", active, AtomicInteger::get)
+                .tags(Tags.of("name", name))
+                .description("Tasks currently running")
+                .register(meterRegistry);
+        Counter completed = Counter.builder("executor.completed")
+                .tags(Tags.of("name", name))
+                .description("Tasks that finished")
+                .register(meterRegistry);
+
+        return task -> () -> {
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                completed.increment();
+            }
+        };
+    }
+
+    // read through the executor, the underlying pool only exists once Spring initialized it
+    private void registerPoolMetrics(String name, ThreadPoolTaskExecutor executor) {
+        Tags tags = Tags.of("name", name);
+        Gauge.builder("executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tags(tags).description("Tasks currently running").register(meterRegistry);
+        Gauge.builder("executor.queued", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .tags(tags).description("Tasks waiting for a thread").register(meterRegistry);
+        Gauge.builder("executor.pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+                .tags(tags).description("Threads in the pool").register(meterRegistry);
+        FunctionCounter.builder("executor.completed", executor,
+                        e -> e.getThreadPoolExecutor().getCompletedTaskCount())
+                .tags(tags).description("Tasks that finished").register(meterRegistry);
+    }
+}
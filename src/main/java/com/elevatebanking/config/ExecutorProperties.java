@@ -0,0 +1,33 @@
+package com.elevatebanking.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.executor")
+@Data
+public class ExecutorProperties {
+    // per executor name, e.g. "async" or "notification"
+    private Map<String, Pool> pools = new HashMap<>();
+    // virtual threads pinned to their carrier for longer than this are counted and logged
+    private Duration pinnedThreshold = Duration.ofMillis(20);
+
+    @Data
+    public static class Pool {
+        // bounded platform pool, used when spring.threads.virtual.enabled is false
+        private int coreSize = 8;
+        private int maxSize = 32;
+        private int queueCapacity = 500;
+        // most tasks running at once on virtual threads, -1 for no limit
+        private int virtualConcurrencyLimit = -1;
+    }
+
+    public Pool pool(String name) {
+        return pools.getOrDefault(name, new Pool());
+    }
+}
@@ -1,8 +1,17 @@
 
 package com.elevatebanking.config.kafka;
 
+import com.elevatebanking.config.ExecutorConfig;
+import com.elevatebanking.config.KafkaProducerProperties;
+import com.elevatebanking.config.ProducerProfileMetrics;
 import com.elevatebanking.event.EmailEvent;
 import com.elevatebanking.event.NotificationEvent;
+import com.elevatebanking.event.codec.BinaryEventDeserializer;
+import com.elevatebanking.event.codec.BinaryEventSerializer;
+import com.elevatebanking.event.codec.EventCodecs;
+import com.elevatebanking.service.retry.config.TransactionRetryConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.admin.AdminClient;
@@ -10,24 +19,40 @@ import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.ListTopicsResult;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultAfterRollbackProcessor;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.FixedBackOff;
 
 import com.elevatebanking.event.TransactionEvent;
 
@@ -37,12 +62,50 @@ import java.util.*;
 @Slf4j
 public class KafkaConfig {
 
+    // consumer threads, virtual when spring.threads.virtual.enabled is set
+    @Autowired
+    @Qualifier(ExecutorConfig.KAFKA_LISTENER_EXECUTOR)
+    private AsyncTaskExecutor kafkaListenerExecutor;
+
+    @Autowired
+    private KafkaProducerProperties producerProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EventCodecs eventCodecs;
+
+    @Autowired
+    private TransactionRetryConfig retryConfig;
+
+    // binary or json, consumers read both
+    @Value("${app.kafka.serialization:binary}")
+    private String serializationFormat;
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
     @Value("${spring.kafka.consumer.groups.transaction}")
     private String transactionGroupId;
 
+    @Value("${transaction.events.batch.enabled:true}")
+    private boolean transactionBatchEnabled;
+
+    @Value("${transaction.events.batch.max-poll-records:500}")
+    private int transactionBatchMaxPollRecords;
+
+    // consumer threads per transaction listener, at most the partition count
+    @Value("${transaction.events.concurrency:1}")
+    private int transactionConcurrency;
+
+    @Value("${transaction.events.exactly-once.enabled:false}")
+    private boolean exactlyOnce;
+
+    // unique per node, a restarted node reuses its ids and fences the producers it left behind
+    @Value("${transaction.events.exactly-once.transaction-id-prefix:elevate-tx-}")
+    private String transactionIdPrefix;
+
     @Value("${spring.kafka.consumer.groups.email}")
     private String emailGroupId;
 
@@ -67,24 +130,39 @@ public class KafkaConfig {
     @Value("${spring.kafka.topics.email-retry}")
     private String emailRetryTopic;
 
+    @Value("${spring.kafka.topics.transaction-dlq}")
+    private String transactionDlqTopic;
+
+    @Value("${spring.kafka.topics.notification-dlq}")
+    private String notificationDlqTopic;
+
+    @Value("${spring.kafka.topics.email-dlq}")
+    private String emailDlqTopic;
 
-    // common producer config
-    private <T> Map<String, Object> getProducerConfigs() {
+
+    // common producer config, batching and in-flight settings come from the topic's profile
+    private Map<String, Object> getProducerConfigs(KafkaProducerProperties.Profile profile) {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
 
         // timeout and retry settings
-        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 5000); // 5 seconds
-        configProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 5000);
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, (int) profile.getMaxBlock().toMillis());
+        configProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) profile.getRequestTimeout().toMillis());
+        configProps.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, (int) profile.getDeliveryTimeout().toMillis());
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
 
         // reliability settings
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
-        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1);
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, profile.getMaxInFlight());
+
+        // throughput settings
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, (int) profile.getLinger().toMillis());
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, profile.getBatchSize());
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, profile.getCompression());
 
         return configProps;
     }
@@ -111,29 +189,56 @@ public class KafkaConfig {
         return config;
     }
 
-    // generic producer factory builder
-    private <T> ProducerFactory<String, T> buildProducerFactory() {
-        return new DefaultKafkaProducerFactory<>(getProducerConfigs());
+    // generic producer factory builder, client metrics such as batch-size-avg are tagged with the profile
+    private <T> DefaultKafkaProducerFactory<String, T> buildProducerFactory(String topic, Class<T> valueType) {
+        String profile = producerProperties.profileName(topic);
+        DefaultKafkaProducerFactory<String, T> factory = new DefaultKafkaProducerFactory<>(
+                getProducerConfigs(producerProperties.profile(profile)), new StringSerializer(), valueSerializer(valueType));
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry, List.of(Tag.of("profile", profile))));
+        return factory;
+    }
+
+    // generic template builder, records send latency and size per profile
+    private <T> KafkaTemplate<String, T> buildTemplate(ProducerFactory<String, T> producerFactory, String topic) {
+        KafkaTemplate<String, T> template = new KafkaTemplate<>(producerFactory);
+        template.setProducerInterceptor(new ProducerProfileMetrics<>(producerProperties.profileName(topic), meterRegistry));
+        return template;
+    }
+
+    // events with a schema go out binary unless app.kafka.serialization is json
+    private <T> Serializer<T> valueSerializer(Class<T> valueType) {
+        return eventCodecs.forType(valueType)
+                .filter(codec -> "binary".equalsIgnoreCase(serializationFormat))
+                .<Serializer<T>>map(BinaryEventSerializer::new)
+                .orElseGet(JsonSerializer::new);
+    }
+
+    // a record that cannot be read reaches the listener with a null value and the cause in its headers,
+    // rather than failing poll() and coming back forever
+    private <T> Deserializer<T> valueDeserializer(Class<T> valueType) {
+        Deserializer<T> delegate = eventCodecs.forType(valueType)
+                .<Deserializer<T>>map(codec -> new BinaryEventDeserializer<>(codec, valueType))
+                .orElseGet(() -> new JsonDeserializer<>(valueType, false));
+        return new ErrorHandlingDeserializer<>(delegate);
     }
 
     // generic consumer factory builder
     private <T> ConsumerFactory<String, T> buildConsumerFactory(Class<T> valueType, String groupId) {
         return new DefaultKafkaConsumerFactory<>(getConsumerConfigs(valueType, groupId),
                 new StringDeserializer(),
-                new JsonDeserializer<>(valueType, false));
+                valueDeserializer(valueType));
     }
 
     // generic listener container factory builder
-    private <T> ConcurrentKafkaListenerContainerFactory<String, T> buildListenerContainerFactory(ConsumerFactory<String, T> consumerFactory) {
+    private <T> ConcurrentKafkaListenerContainerFactory<String, T> buildListenerContainerFactory(
+            ConsumerFactory<String, T> consumerFactory, ConsumerRecordRecoverer recoverer) {
         ConcurrentKafkaListenerContainerFactory<String, T> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.getContainerProperties().setListenerTaskExecutor(kafkaListenerExecutor);
 
-        DefaultErrorHandler errorHandler = new DefaultErrorHandler((record, ex) -> {
-            log.error("Error processing message: topic={}, offset={}, key={}, value={}",
-                    record.topic(), record.offset(), record.key(), record.value(), ex);
-        });
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer);
 
         errorHandler.setRetryListeners((record, ex, deliveryAttempt) -> {
             log.warn("Failed to process message, attempt {} of 3. Error: {}",
@@ -144,6 +249,31 @@ public class KafkaConfig {
         return factory;
     }
 
+    /*
+     * Records that could not be deserialized go to the dead letter topic with their original bytes,
+     * they fail the same way on every delivery. Other records that exhausted their retries are logged.
+     */
+    private ConsumerRecordRecoverer buildRecoverer(String deadLetterTopic) {
+        DeadLetterPublishingRecoverer deadLetters = new DeadLetterPublishingRecoverer(deadLetterKafkaTemplate(),
+                (record, ex) -> new TopicPartition(deadLetterTopic, -1));
+        return (record, ex) -> {
+            if (isUnreadable(record)) {
+                log.error("Sending unreadable message to {}: topic={}, offset={}, key={}",
+                        deadLetterTopic, record.topic(), record.offset(), record.key(), ex);
+                deadLetters.accept(record, ex);
+                return;
+            }
+            log.error("Error processing message: topic={}, offset={}, key={}, value={}",
+                    record.topic(), record.offset(), record.key(), record.value(), ex);
+        };
+    }
+
+    // set by the ErrorHandlingDeserializer around every value deserializer
+    public static boolean isUnreadable(ConsumerRecord<?, ?> record) {
+        return record.value() == null
+                && record.headers().lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER) != null;
+    }
+
     // generic topic builder
     private NewTopic buildTopic(String name, int partitions, int replicas, Map<String, String> configs) {
         return TopicBuilder.name(name)
@@ -156,50 +286,65 @@ public class KafkaConfig {
     // specific beans using generic builders
     @Bean
     public ProducerFactory<String, TransactionEvent> transactionProducerFactory() {
-        return buildProducerFactory();
+        DefaultKafkaProducerFactory<String, TransactionEvent> factory =
+                buildProducerFactory(transactionTopic, TransactionEvent.class);
+        if (exactlyOnce) {
+            factory.setTransactionIdPrefix(transactionIdPrefix);
+        }
+        return factory;
     }
 
     @Bean
     public ProducerFactory<String, NotificationEvent> notificationProducerFactory() {
-        return buildProducerFactory();
+        return buildProducerFactory(notificationTopic, NotificationEvent.class);
     }
 
     @Bean
     public ProducerFactory<String, EmailEvent> emailProducerFactory() {
-        return buildProducerFactory();
+        return buildProducerFactory(emailTopic, EmailEvent.class);
     }
 
     // template beans
 
     @Bean
     public KafkaTemplate<String, TransactionEvent> transactionKafkaTemplate() {
-        return new KafkaTemplate<>(transactionProducerFactory());
+        KafkaTemplate<String, TransactionEvent> template = buildTemplate(transactionProducerFactory(), transactionTopic);
+        // sends from a listener join its kafka transaction, sends from request threads go out on their own
+        template.setAllowNonTransactional(exactlyOnce);
+        return template;
     }
 
     @Bean
     public KafkaTemplate<String, NotificationEvent> notificationKafkaTemplate() {
         log.info("Tạo notification kafka template");
-        return new KafkaTemplate<>(notificationProducerFactory());
+        return buildTemplate(notificationProducerFactory(), notificationTopic);
     }
 
     @Bean
     public KafkaTemplate<String, EmailEvent> emailKafkaTemplate() {
-        return new KafkaTemplate<>(emailProducerFactory());
+        return buildTemplate(emailProducerFactory(), emailTopic);
+    }
+
+    // raw values of unreadable records, never part of a kafka transaction
+    @Bean
+    public KafkaTemplate<String, byte[]> deadLetterKafkaTemplate() {
+        DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(
+                getProducerConfigs(producerProperties.profile(producerProperties.profileName(transactionDlqTopic))),
+                new StringSerializer(), new ByteArraySerializer());
+        return new KafkaTemplate<>(factory);
     }
 
     // consumer factory beans
 
     @Bean
     public ConsumerFactory<String, TransactionEvent> transactionConsumerFactory() {
-        Map<String, Object> props = new HashMap<>();
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        Map<String, Object> props = getConsumerConfigs(TransactionEvent.class, transactionGroupId);
         props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
-//        return new DefaultKafkaConsumerFactory<>(props);
-//        return buildConsumerFactory(TransactionEvent.class, transactionGroupId);
-        return new DefaultKafkaConsumerFactory<>(getConsumerConfigs(TransactionEvent.class, transactionGroupId),
+        // the batch listener takes a whole poll, single record listeners one at a time
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, transactionBatchEnabled ? transactionBatchMaxPollRecords : 1);
+        return new DefaultKafkaConsumerFactory<>(props,
                 new StringDeserializer(),
-                new JsonDeserializer<>(TransactionEvent.class, false));
+                valueDeserializer(TransactionEvent.class));
     }
 
     @Bean
@@ -214,20 +359,57 @@ public class KafkaConfig {
 
     // Listener container factory beans
 
+    // also used by the batch listener, which gets unreadable records handed in with the rest of the poll
+    @Bean
+    public ConsumerRecordRecoverer transactionDeadLetterRecoverer() {
+        return buildRecoverer(transactionDlqTopic);
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> transactionKafkaListenerContainerFactory() {
-        return buildListenerContainerFactory(transactionConsumerFactory());
+        return buildTransactionListenerContainerFactory();
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> transactionBatchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> factory = buildTransactionListenerContainerFactory();
+        factory.setBatchListener(true);
+        return factory;
+    }
+
+    /*
+     * In exactly-once mode every container runs its listener in a kafka transaction: records sent by the
+     * listener and the offsets it acknowledges commit together, a redelivered record finds no output of
+     * the attempt before. The database side is deduplicated by eventId in ProcessedEventService.
+     */
+    private ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> buildTransactionListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, TransactionEvent> factory =
+                buildListenerContainerFactory(transactionConsumerFactory(), transactionDeadLetterRecoverer());
+        factory.setConcurrency(transactionConcurrency);
+        if (exactlyOnce) {
+            // failures of a transactional listener roll back and end up here instead of the error handler
+            factory.setAfterRollbackProcessor(new DefaultAfterRollbackProcessor<>(transactionDeadLetterRecoverer(),
+                    new FixedBackOff(0L, 9)));
+            factory.setContainerCustomizer(container -> {
+                // transactional.id per listener container
+                KafkaTransactionManager<String, TransactionEvent> transactionManager =
+                        new KafkaTransactionManager<>(transactionProducerFactory());
+                transactionManager.setTransactionIdPrefix(transactionIdPrefix + container.getListenerId() + "-");
+                container.getContainerProperties().setTransactionManager(transactionManager);
+            });
+        }
+        return factory;
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, EmailEvent> emailKafkaListenerContainerFactory() {
-        return buildListenerContainerFactory(emailConsumerFactory());
+        return buildListenerContainerFactory(emailConsumerFactory(), buildRecoverer(emailDlqTopic));
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, NotificationEvent> notificationKafkaListenerContainerFactory() {
         log.info("Creating notification kafka listener factory");
-        return buildListenerContainerFactory(notificationConsumerFactory());
+        return buildListenerContainerFactory(notificationConsumerFactory(), buildRecoverer(notificationDlqTopic));
     }
 
     // Topic beans
@@ -244,6 +426,17 @@ public class KafkaConfig {
         return buildTopic(transactionRetryTopic, 4, 1, Collections.emptyMap());
     }
 
+    // one topic per delay tier, records are gone well before the retention runs out
+    @Bean
+    public KafkaAdmin.NewTopics transactionDelayTopics() {
+        return new KafkaAdmin.NewTopics(retryConfig.getTiers().stream()
+                .map(tier -> buildTopic(retryConfig.tierTopic(tier), 4, 1, Map.of(
+                        "cleanup.policy", "delete",
+                        "retention.ms", "86400000" // 1 day
+                )))
+                .toArray(NewTopic[]::new));
+    }
+
     @Bean
     public NewTopic emailRetryTopic() {
         return buildTopic(emailRetryTopic, 4, 1, Collections.emptyMap());
@@ -251,13 +444,13 @@ public class KafkaConfig {
 
     @Bean
     public NewTopic emailDLQTopic() {
-        return buildTopic("elevate.emails.dlq", 1, 1, Collections.emptyMap());
+        return buildTopic(emailDlqTopic, 1, 1, Collections.emptyMap());
     }
 
 
     @Bean
     public NewTopic deadLetterTopic() {
-        return buildTopic("elevate.transactions.dlq", 1, 1, Collections.emptyMap());
+        return buildTopic(transactionDlqTopic, 1, 1, Collections.emptyMap());
     }
 
     @Bean
@@ -280,7 +473,7 @@ public class KafkaConfig {
 
     @Bean
     public NewTopic notificationDLQTopic() {
-        return buildTopic("elevate.notifications.dlq", 1, 1, Collections.emptyMap());
+        return buildTopic(notificationDlqTopic, 1, 1, Collections.emptyMap());
     }
 
 
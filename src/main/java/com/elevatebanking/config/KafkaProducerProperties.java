@@ -0,0 +1,45 @@
+package com.elevatebanking.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.kafka.producer")
+@Data
+public class KafkaProducerProperties {
+    // per profile name, e.g. "ordered-critical", "bulk" or "best-effort"
+    private Map<String, Profile> profiles = new HashMap<>();
+    // profile of each topic's producer, retry and dead letter topics share the producer of their topic
+    private Map<String, String> topics = new HashMap<>();
+    // used for topics without an entry
+    private String defaultProfile = "ordered-critical";
+
+    @Data
+    public static class Profile {
+        // how long a batch may wait for more records, zero sends as soon as the sender is free
+        private Duration linger = Duration.ZERO;
+        private int batchSize = 16384;
+        // none, gzip, snappy, lz4 or zstd
+        private String compression = "none";
+        // idempotence keeps records in order with up to 5 requests in flight
+        private int maxInFlight = 1;
+        // how long send() may block when the buffer is full or metadata is missing
+        private Duration maxBlock = Duration.ofSeconds(5);
+        private Duration requestTimeout = Duration.ofSeconds(5);
+        // upper bound from send() to acknowledgement including retries, at least linger + request timeout
+        private Duration deliveryTimeout = Duration.ofMinutes(2);
+    }
+
+    public String profileName(String topic) {
+        return topics.getOrDefault(topic, defaultProfile);
+    }
+
+    public Profile profile(String name) {
+        return profiles.getOrDefault(name, new Profile());
+    }
+}
@@ -0,0 +1,66 @@
+package com.elevatebanking.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Send latency and record sizes of one producer profile. Latency runs from the record's create
+ * timestamp, taken by the producer in send(), to its acknowledgement, so it includes the time the
+ * record waited in its batch. Runs on the producer's I/O thread and only records meters.
+ */
+public class ProducerProfileMetrics<V> implements ProducerInterceptor<String, V> {
+    private final Timer sendLatency;
+    private final DistributionSummary recordSize;
+    private final Counter failed;
+
+    public ProducerProfileMetrics(String profile, MeterRegistry meterRegistry) {
+        this.sendLatency = Timer.builder("kafka.producer.send")
+                .description("Time from send to acknowledgement of a record")
+                .tag("profile", profile)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.recordSize = DistributionSummary.builder("kafka.producer.record.size")
+                .description("Serialized size of acknowledged records")
+                .baseUnit("bytes")
+                .tag("profile", profile)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failed = Counter.builder("kafka.producer.send.failed")
+                .description("Records the broker did not acknowledge")
+                .tag("profile", profile)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ProducerRecord<String, V> onSend(ProducerRecord<String, V> record) {
+        return record;
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+        if (exception != null) {
+            failed.increment();
+            return;
+        }
+        if (metadata.hasTimestamp()) {
+            sendLatency.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - metadata.timestamp())));
+        }
+        recordSize.record(Math.max(0, metadata.serializedKeySize()) + Math.max(0, metadata.serializedValueSize()));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
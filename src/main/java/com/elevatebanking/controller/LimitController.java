@@ -0,0 +1,34 @@
+package com.elevatebanking.controller;
+
+import com.elevatebanking.dto.limit.LimitDTOs.LimitHeadroomResponse;
+import com.elevatebanking.service.transaction.LimitHeadroomService;
+import com.elevatebanking.service.transaction.config.TransactionLimitConfig;
+import com.elevatebanking.util.SecurityUtils;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/limits")
+@RequiredArgsConstructor
+@Tag(name = "Transaction Limits", description = "APIs for reading transaction limits")
+@SecurityRequirement(name = "Bearer Authentication")
+public class LimitController {
+    private final LimitHeadroomService headroomService;
+    private final TransactionLimitConfig limitConfig;
+
+    @Operation(summary = "Get the remaining transfer amounts and transaction counts of the current user")
+    @GetMapping("/me")
+    public ResponseEntity<LimitHeadroomResponse> getMyHeadroom() {
+        String userId = SecurityUtils.getCurrentUserId();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(limitConfig.getHeadroom().getTtl()).cachePrivate())
+                .body(headroomService.getHeadroom(userId));
+    }
+}
@@ -3,6 +3,10 @@ package com.elevatebanking.controller;
 import com.elevatebanking.dto.transaction.TransactionDTOs.*;
 import com.elevatebanking.service.IAccountService;
 import com.elevatebanking.service.ITransactionService;
+import com.elevatebanking.service.transaction.IdempotencyService;
+import com.elevatebanking.service.transaction.TransactionBatchService;
+import com.elevatebanking.service.transaction.TransactionStatusService;
+import com.elevatebanking.service.transaction.config.AsyncTransactionConfig;
 import com.elevatebanking.util.SecurityUtils;
 import com.github.dockerjava.api.exception.UnauthorizedException;
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,13 +16,20 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -31,41 +42,96 @@ import java.util.List;
 public class TransactionController {
     private final ITransactionService transactionService;
     private final IAccountService accountService;
+    private final TransactionBatchService batchService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionStatusService statusService;
+    private final AsyncTransactionConfig asyncConfig;
+
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    // RFC 7240, Prefer: respond-async asks for 202 Accepted instead of waiting for the transfer
+    private static final String PREFER_HEADER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
 
     @Operation(summary = "Process a new transfer between accounts")
     @PostMapping("/transfer")
     @PreAuthorize("hasRole('USER') or hasRole('TELLER')")
-    public ResponseEntity<TransactionResponse> transfer(@Valid @RequestBody TransferRequest request) {
+    public ResponseEntity<TransactionResponse> transfer(
+            @Valid @RequestBody TransferRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
         String userId = SecurityUtils.getCurrentUserId();
 
         if (!accountService.isAccountOwner(request.getFromAccountId(), userId)) {
             throw new UnauthorizedException("User is not authorized to perform this operation");
         }
 
+        if (asyncConfig.isEnabled() && prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            log.info("Submitting transfer request from account: {} to account: {}, amount: {}",
+                    request.getFromAccountId(), request.getToAccountId(), request.getAmount());
+            TransactionResponse response = idempotencyService.execute(userId, idempotencyKey, "transfer-async",
+                    request, () -> transactionService.submitTransfer(request));
+            URI statusUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                    .path("/api/v1/transactions/{id}/status")
+                    .buildAndExpand(response.getTransactionId())
+                    .toUri();
+            return ResponseEntity.accepted()
+                    .location(statusUri)
+                    .header(PREFERENCE_APPLIED, RESPOND_ASYNC)
+                    .body(response);
+        }
+
         log.info("Processing transfer request from account: {} to account: {}, amount: {}", request.getFromAccountId(),
                 request.getToAccountId(), request.getAmount());
-        return ResponseEntity.ok(transactionService.transfer(request));
+        return ResponseEntity.ok(idempotencyService.execute(userId, idempotencyKey, "transfer", request,
+                () -> transactionService.transfer(request)));
+    }
+
+    @Operation(summary = "Submit a batch of transfers, e.g. payroll or disbursements")
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('USER') or hasRole('TELLER')")
+    public ResponseEntity<BatchTransferResponse> transferBatch(@Valid @RequestBody BatchTransferRequest request) {
+        String userId = SecurityUtils.getCurrentUserId();
+        log.info("Processing transfer batch request with {} transfers, reference: {}", request.getTransfers().size(),
+                request.getReference());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchService.submitTransferBatch(userId, request));
+    }
+
+    @Operation(summary = "Get the progress of a transfer batch")
+    @GetMapping("/batch/{batchId}")
+    @PreAuthorize("hasAnyRole('USER', 'TELLER', 'ADMIN')")
+    public ResponseEntity<BatchStatusResponse> getBatchStatus(@PathVariable String batchId) {
+        String userId = SecurityUtils.getCurrentUserId();
+        log.info("Fetching status of transfer batch: {}", batchId);
+        return ResponseEntity.ok(batchService.getBatchStatus(batchId, userId));
     }
 
     @Operation(summary = "Process a new deposit to an account")
     @PostMapping("/deposit")
     @PreAuthorize("hasRole('USER') or hasRole('TELLER')")
-    public ResponseEntity<TransactionResponse> deposit(@Valid @RequestBody DepositRequest request) {
+    public ResponseEntity<TransactionResponse> deposit(
+            @Valid @RequestBody DepositRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        String userId = SecurityUtils.getCurrentUserId();
         log.info("Processing deposit request to account: {}, amount: {}", request.getAccountId(), request.getAmount());
-        return ResponseEntity.ok(transactionService.deposit(request));
+        return ResponseEntity.ok(idempotencyService.execute(userId, idempotencyKey, "deposit", request,
+                () -> transactionService.deposit(request)));
     }
 
     @Operation(summary = "Process a new withdrawal from an account")
     @PostMapping("/withdraw")
     @PreAuthorize("hasRole('USER') or hasRole('TELLER')")
-    public ResponseEntity<TransactionResponse> withdraw(@Valid @RequestBody WithdrawRequest request) {
+    public ResponseEntity<TransactionResponse> withdraw(
+            @Valid @RequestBody WithdrawRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         String userId = SecurityUtils.getCurrentUserId();
         if (!accountService.isAccountOwner(request.getAccountId(), userId)) {
             throw new UnauthorizedException("User is not authorized to perform this operation");
         }
         log.info("Processing withdrawal request from account: {}, amount: {}", request.getAccountId(),
                 request.getAmount());
-        return ResponseEntity.ok(transactionService.withdraw(request));
+        return ResponseEntity.ok(idempotencyService.execute(userId, idempotencyKey, "withdraw", request,
+                () -> transactionService.withdraw(request)));
     }
 
     @Operation(summary = "Get transaction details by ID")
@@ -76,6 +142,24 @@ public class TransactionController {
         return ResponseEntity.ok(transactionService.getTransaction(id));
     }
 
+    @Operation(summary = "Get the status of a transaction, waiting up to waitSeconds for it to settle")
+    @GetMapping("/{id}/status")
+    @PreAuthorize("hasAnyRole('USER', 'TELLER', 'ADMIN')")
+    public DeferredResult<TransactionStatusResponse> getTransactionStatus(
+            @PathVariable String id,
+            @RequestParam(required = false) Long waitSeconds) {
+        log.debug("Waiting for status of transaction: {}, wait: {}s", id, waitSeconds);
+        return statusService.awaitStatus(id, waitSeconds != null ? Duration.ofSeconds(waitSeconds) : null);
+    }
+
+    @Operation(summary = "Stream the status of a transaction as server-sent events until it settles")
+    @GetMapping(value = "/{id}/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('USER', 'TELLER', 'ADMIN')")
+    public SseEmitter streamTransactionStatus(@PathVariable String id) {
+        log.debug("Streaming status of transaction: {}", id);
+        return statusService.streamStatus(id);
+    }
+
     @Operation(summary = "Get transaction history with optional date range")
     @GetMapping("/history")
     @PreAuthorize("hasAnyRole('USER', 'TELLER', 'ADMIN')")
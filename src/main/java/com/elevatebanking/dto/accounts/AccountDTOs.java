@@ -47,4 +47,13 @@ public class AccountDTOs {
         private BigDecimal balance;
     }
 
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BalanceTransferResult {
+        private BigDecimal fromBalance;
+        private BigDecimal toBalance;
+    }
+
 }
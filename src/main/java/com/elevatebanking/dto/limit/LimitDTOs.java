@@ -0,0 +1,33 @@
+package com.elevatebanking.dto.limit;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+public class LimitDTOs {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LimitHeadroomResponse {
+        private BigDecimal singleTransactionLimit;
+        private BigDecimal dailyLimit;
+        private BigDecimal monthlyLimit;
+        private int maxTransactionsPerMinute;
+        private int maxTransactionsPerDay;
+        // largest transfer that passes every amount limit right now
+        private BigDecimal remainingSingle;
+        private BigDecimal remainingDaily;
+        private BigDecimal remainingMonthly;
+        private long remainingPerMinute;
+        private long remainingPerDay;
+        private LocalDateTime calculatedAt;
+    }
+
+}
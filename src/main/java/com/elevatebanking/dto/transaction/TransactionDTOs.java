@@ -1,5 +1,6 @@
 package com.elevatebanking.dto.transaction;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 import lombok.*;
 
@@ -79,6 +80,17 @@ public class TransactionDTOs {
         private LocalDateTime timestamp;
     }
 
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TransactionStatusResponse {
+        private String transactionId;
+        private String status;
+        private boolean settled; // false while the transaction is still PENDING
+        private LocalDateTime updatedAt;
+    }
+
     @Data
     @Builder
     @NoArgsConstructor
@@ -106,6 +118,62 @@ public class TransactionDTOs {
 
     }
 
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchTransferRequest {
+        @Size(max = 100, message = "Reference must be less than 100 characters")
+        private String reference;
+
+        @NotEmpty(message = "Transfers are required")
+        @Size(max = 100000, message = "A batch cannot contain more than 100,000 transfers")
+        private List<@Valid TransferRequest> transfers;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchTransferResponse {
+        private String batchId;
+        private String status;
+        private int totalCount;
+        private int acceptedCount;
+        private int rejectedCount;
+        private BigDecimal totalAmount;
+        private List<BatchItemRejection> rejections;
+        private LocalDateTime timestamp;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchItemRejection {
+        private int index; // position of the transfer in the submitted batch
+        private String fromAccountId;
+        private String toAccountId;
+        private String reason;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchStatusResponse {
+        private String batchId;
+        private String reference;
+        private String status; // PROCESSING, COMPLETED, COMPLETED_WITH_ERRORS, REJECTED
+        private int totalCount;
+        private int rejectedCount;
+        private long pendingCount;
+        private long completedCount;
+        private long failedCount;
+        private BigDecimal totalAmount;
+        private LocalDateTime createdAt;
+    }
+
     @Data
 //    @Builder
     @NoArgsConstructor
@@ -1,5 +1,7 @@
 package com.elevatebanking.entity.enums;
 
 public enum EventStatus {
-    PENDING, PROCESSED, FAILED, RETRY
+    PENDING, PROCESSED, FAILED, RETRY,
+    // claimed by an outbox relay that is sending it
+    IN_FLIGHT
 }
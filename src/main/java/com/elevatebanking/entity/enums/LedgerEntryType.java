@@ -0,0 +1,5 @@
+package com.elevatebanking.entity.enums;
+
+public enum LedgerEntryType {
+    DEBIT, CREDIT
+}
@@ -0,0 +1,8 @@
+package com.elevatebanking.entity.enums;
+
+public enum LedgerTransferState {
+    DEBITED,    // money left the sender, not yet with the recipient
+    CREDITED,   // every leg committed, a deposit or withdrawal has a single leg against the cash account
+    UNWINDING,  // the recipient was debited again, the sender is still to be credited back
+    REVERSED    // the sender has the money back
+}
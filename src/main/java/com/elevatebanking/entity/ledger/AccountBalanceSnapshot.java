@@ -0,0 +1,55 @@
+package com.elevatebanking.entity.ledger;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// balance of an account after all of its ledger entries created before coveredUntil
+@Entity
+@Immutable
+@Table(name = "account_balance_snapshots",
+        uniqueConstraints = @UniqueConstraint(name = "uk_account_balance_snapshots_covered", columnNames = {"account_id", "covered_until"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class AccountBalanceSnapshot {
+    // before any ledger entry, the opening snapshot holds the balance the account had when the ledger started
+    public static final LocalDateTime OPENING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Id
+    @GeneratedValue(generator = "uuid2")
+    @GenericGenerator(name = "uuid2", strategy = "uuid2")
+    @Column(name = "snapshot_id", columnDefinition = "VARCHAR(36)")
+    private String id;
+
+    @NotBlank(message = "Account id is required")
+    @Column(name = "account_id", columnDefinition = "VARCHAR(36)", nullable = false)
+    private String accountId;
+
+    // OPENING for the snapshot taken when the account got its first ledger entry
+    @NotNull(message = "Covered until is required")
+    @Column(name = "covered_until", nullable = false)
+    private LocalDateTime coveredUntil;
+
+    @NotNull(message = "Balance is required")
+    @Column(nullable = false, precision = 20, scale = 2)
+    private BigDecimal balance;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public AccountBalanceSnapshot(String accountId, LocalDateTime coveredUntil, BigDecimal balance) {
+        this.accountId = accountId;
+        this.coveredUntil = coveredUntil;
+        this.balance = balance;
+    }
+}
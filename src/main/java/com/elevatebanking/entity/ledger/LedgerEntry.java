@@ -0,0 +1,67 @@
+package com.elevatebanking.entity.ledger;
+
+import com.elevatebanking.entity.enums.LedgerEntryType;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// append-only: one row per leg of a posted transaction, a reversal is posted as new rows
+@Entity
+@Immutable
+@Table(name = "ledger_entries",
+        uniqueConstraints = {
+                // a transaction is posted (and reversed) at most once per account
+                @UniqueConstraint(name = "uk_ledger_entries_transaction_leg", columnNames = {"transaction_id", "account_id", "reversal"})
+        },
+        indexes = {
+                @Index(name = "idx_ledger_entries_created_at", columnList = "created_at"),
+                @Index(name = "idx_ledger_entries_account_created", columnList = "account_id, created_at")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+public class LedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entry_seq")
+    @SequenceGenerator(name = "ledger_entry_seq", sequenceName = "ledger_entry_seq", allocationSize = 50)
+    @Column(name = "entry_id")
+    private Long id;
+
+    @NotBlank(message = "Transaction id is required")
+    @Column(name = "transaction_id", columnDefinition = "VARCHAR(36)", nullable = false)
+    private String transactionId;
+
+    // customer account id, or a system account such as the cash account for deposits and withdrawals
+    @NotBlank(message = "Account id is required")
+    @Column(name = "account_id", columnDefinition = "VARCHAR(36)", nullable = false)
+    private String accountId;
+
+    @NotNull(message = "Entry type is required")
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false)
+    private LedgerEntryType entryType;
+
+    // signed: credits are positive, debits negative, the legs of a transaction sum to zero
+    @NotNull(message = "Amount is required")
+    @Digits(integer = 18, fraction = 2, message = "Invalid amount format")
+    @Column(nullable = false, precision = 20, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "balance_after", precision = 20, scale = 2)
+    private BigDecimal balanceAfter;
+
+    @Column(nullable = false)
+    private boolean reversal;
+
+    // orders the entries of an account, snapshots cover every entry created before their cutoff
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,46 @@
+package com.elevatebanking.entity.ledger;
+
+import com.elevatebanking.entity.enums.LedgerTransferState;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// progress of a transfer through the ledger engine, moved by the partition writers together with the balance legs
+@Entity
+@Table(name = "ledger_transfers",
+        indexes = @Index(name = "idx_ledger_transfers_state_updated_at", columnList = "state, updated_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class LedgerTransfer {
+    @Id
+    @Column(name = "transfer_id", columnDefinition = "VARCHAR(36)")
+    private String id;
+
+    @Column(name = "from_account_id", columnDefinition = "VARCHAR(36)", nullable = false)
+    private String fromAccountId;
+
+    @Column(name = "to_account_id", columnDefinition = "VARCHAR(36)", nullable = false)
+    private String toAccountId;
+
+    @Column(nullable = false, precision = 20, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private LedgerTransferState state;
+
+    // set in the caller's database transaction, a credited transfer that never got it is unwound
+    @Column(nullable = false)
+    private boolean confirmed;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -8,13 +8,18 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Getter
 @Setter
-@Table(name = "event_logs")
+@Table(name = "event_logs", indexes = {
+        @Index(name = "idx_event_logs_status_created_at", columnList = "status, created_at"),
+        @Index(name = "idx_event_logs_message_key_created_at", columnList = "message_key, created_at")
+})
 @NoArgsConstructor
 public class EventLog {
     @Id
@@ -28,12 +33,18 @@ public class EventLog {
     @Column(length = 100, nullable = false)
     private String topic;
 
+    // kafka record key, keeps the events of one transaction on one partition
+    @Size(max = 100, message = "Message key must be at most 100 characters")
+    @Column(name = "message_key", length = 100)
+    private String messageKey;
+
     @NotBlank(message = "Event type is required")
     @Size(min = 1, max = 50, message = "Event type must be between 1 and 50 characters")
     @Column(name = "event_type", length = 50, nullable = false)
     private String eventType;
 
     @NotNull(message = "Payload is required")
+    @JdbcTypeCode(SqlTypes.JSON)
     @Column(columnDefinition = "jsonb", nullable = false)
     private String payload;
 
@@ -42,6 +53,13 @@ public class EventLog {
     @Column(nullable = false)
     private EventStatus status = EventStatus.PENDING;
 
+    // the relay batch sending an IN_FLIGHT row, and since when
+    @Column(name = "claimed_by", columnDefinition = "VARCHAR(36)")
+    private String claimedBy;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
     @PositiveOrZero(message = "Retry count cannot be negative")
     @Column(name = "retry_count")
     private Integer retryCount = 0;
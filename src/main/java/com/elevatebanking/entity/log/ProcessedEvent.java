@@ -0,0 +1,25 @@
+package com.elevatebanking.entity.log;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// consumed events whose database side has run, written by ProcessedEventRepository in the same transaction
+@Entity
+@Getter
+@Setter
+@Table(name = "processed_events", indexes = @Index(name = "idx_processed_events_processed_at", columnList = "processed_at"))
+@NoArgsConstructor
+public class ProcessedEvent {
+    @Id
+    @NotBlank(message = "Event id is required")
+    @Column(name = "event_id", columnDefinition = "VARCHAR(36)")
+    private String eventId;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+}
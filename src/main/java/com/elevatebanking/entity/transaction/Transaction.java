@@ -16,7 +16,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = @Index(name = "idx_transactions_batch_id", columnList = "batch_id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -55,6 +55,10 @@ public class Transaction {
     @Column
     private String description;
 
+    // set when the transaction was submitted as part of a transaction batch
+    @Column(name = "batch_id", columnDefinition = "VARCHAR(36)")
+    private String batchId;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,54 @@
+package com.elevatebanking.entity.transaction;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "transaction_batches")
+@Getter
+@Setter
+@NoArgsConstructor
+public class TransactionBatch {
+    @Id
+    @GeneratedValue(generator = "uuid2")
+    @GenericGenerator(name = "uuid2", strategy = "uuid2")
+    @Column(name = "batch_id", columnDefinition = "VARCHAR(36)")
+    private String id;
+
+    @NotBlank(message = "User id is required")
+    @Column(name = "user_id", columnDefinition = "VARCHAR(36)", nullable = false)
+    private String userId;
+
+    @Size(max = 100, message = "Reference cannot exceed 100 characters")
+    @Column(length = 100)
+    private String reference;
+
+    @PositiveOrZero(message = "Total count cannot be negative")
+    @Column(name = "total_count", nullable = false)
+    private Integer totalCount = 0;
+
+    @PositiveOrZero(message = "Accepted count cannot be negative")
+    @Column(name = "accepted_count", nullable = false)
+    private Integer acceptedCount = 0;
+
+    @PositiveOrZero(message = "Rejected count cannot be negative")
+    @Column(name = "rejected_count", nullable = false)
+    private Integer rejectedCount = 0;
+
+    // sum of the accepted transfers
+    @NotNull(message = "Total amount is required")
+    @Column(name = "total_amount", nullable = false, precision = 20, scale = 2)
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,54 @@
+package com.elevatebanking.entity.transaction;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// completed outgoing transfers of a user in one day or month, written by UserSpendAggregateRepository upserts
+@Entity
+@Table(name = "user_spend_aggregates")
+@IdClass(UserSpendAggregate.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class UserSpendAggregate {
+    @Id
+    @NotBlank(message = "User id is required")
+    @Column(name = "user_id", columnDefinition = "VARCHAR(36)")
+    private String userId;
+
+    // yyyy-MM-dd for a day, yyyy-MM for a month
+    @Id
+    @NotBlank(message = "Period is required")
+    @Column(name = "period", length = 10)
+    private String period;
+
+    @NotNull(message = "Total is required")
+    @Column(nullable = false, precision = 20, scale = 2)
+    private BigDecimal total;
+
+    @Column(name = "count", nullable = false)
+    private long count;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String userId;
+        private String period;
+    }
+}
@@ -0,0 +1,329 @@
+package com.elevatebanking.event.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes one event type with the latest version of its schema. A record is a magic byte, the
+ * schema version, then per record a bitmap of the fields that are set followed by their values
+ * in schema order. Numbers are zigzag varints, strings and byte arrays are length prefixed.
+ * <p>
+ * Decoding reads with the version the record was written with and assigns fields by name, fields
+ * the reader does not bind are skipped and fields the writer did not have stay null.
+ */
+public class BinaryEventCodec<T> {
+    // JSON records start with '{', so a reader can tell the two apart
+    private static final byte MAGIC = 0x00;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_INT = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_DOUBLE = 4;
+    private static final byte VALUE_BOOLEAN = 5;
+
+    private final EventSchemaRegistry registry;
+    private final String subject;
+    private final RecordBinding<T> binding;
+    private final EventSchema writerSchema;
+
+    public BinaryEventCodec(EventSchemaRegistry registry, String subject, RecordBinding<T> binding) {
+        this.registry = registry;
+        this.subject = subject;
+        this.binding = binding;
+        this.writerSchema = registry.latest(subject);
+        checkBound(writerSchema.fields(), binding, subject);
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] == MAGIC;
+    }
+
+    public byte[] encode(T value) {
+        Output out = new Output();
+        out.writeByte(MAGIC);
+        out.writeVarLong(writerSchema.version());
+        writeRecord(out, writerSchema.fields(), binding, value);
+        return out.toByteArray();
+    }
+
+    public T decode(byte[] data) {
+        Input in = new Input(data);
+        if (in.readByte() != MAGIC) {
+            throw new SerializationException("Not a binary " + subject + " record");
+        }
+        int version = (int) in.readVarLong();
+        EventSchema schema;
+        try {
+            schema = registry.get(subject, version);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException(e.getMessage(), e);
+        }
+        return readRecord(in, schema.fields(), binding);
+    }
+
+    // the binding has to cover the schema exactly, a field missing on either side would be dropped silently
+    private static void checkBound(List<EventSchema.Field> fields, RecordBinding<?> binding, String path) {
+        for (EventSchema.Field field : fields) {
+            RecordBinding.Accessor<?> accessor = binding.accessor(field.name());
+            if (accessor == null) {
+                throw new IllegalStateException(path + "." + field.name() + " is in the schema but not bound");
+            }
+            if (field.type() == EventSchema.Type.RECORD) {
+                checkBound(field.fields(), accessor.nested(), path + "." + field.name());
+            }
+        }
+        List<String> names = fields.stream().map(EventSchema.Field::name).toList();
+        for (String name : binding.accessors().keySet()) {
+            if (!names.contains(name)) {
+                throw new IllegalStateException(path + "." + name + " is bound but not in the schema");
+            }
+        }
+    }
+
+    private <R> void writeRecord(Output out, List<EventSchema.Field> fields, RecordBinding<R> binding, R record) {
+        Object[] values = new Object[fields.size()];
+        byte[] present = new byte[(fields.size() + 7) / 8];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = binding.accessor(fields.get(i).name()).getter().apply(record);
+            if (values[i] != null) {
+                present[i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        out.writeBytes(present);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                writeValue(out, fields.get(i), binding.accessor(fields.get(i).name()).nested(), values[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(Output out, EventSchema.Field field, RecordBinding<Object> nested, Object value) {
+        switch (field.type()) {
+            case STRING -> out.writeString((String) value);
+            case INT -> out.writeVarLong(((Number) value).intValue());
+            case LONG -> out.writeVarLong(((Number) value).longValue());
+            case DECIMAL -> {
+                BigDecimal decimal = (BigDecimal) value;
+                out.writeVarLong(decimal.scale());
+                byte[] unscaled = decimal.unscaledValue().toByteArray();
+                out.writeVarLong(unscaled.length);
+                out.writeBytes(unscaled);
+            }
+            case TIMESTAMP -> {
+                LocalDateTime timestamp = (LocalDateTime) value;
+                out.writeVarLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+                out.writeVarLong(timestamp.getNano());
+            }
+            case ENUM -> {
+                int index = field.symbols().indexOf(value);
+                if (index < 0) {
+                    throw new SerializationException(subject + "." + field.name() + " has no symbol " + value);
+                }
+                out.writeVarLong(index);
+            }
+            case RECORD -> writeRecord(out, field.fields(), nested, value);
+            case MAP -> {
+                Map<String, Object> map = (Map<String, Object>) value;
+                out.writeVarLong(map.size());
+                map.forEach((key, item) -> {
+                    out.writeString(key);
+                    writeMapValue(out, item);
+                });
+            }
+            case ARRAY -> {
+                List<String> list = (List<String>) value;
+                out.writeVarLong(list.size());
+                list.forEach(out::writeString);
+            }
+        }
+    }
+
+    private void writeMapValue(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Integer i) {
+            out.writeByte(VALUE_INT);
+            out.writeVarLong(i);
+        } else if (value instanceof Long l) {
+            out.writeByte(VALUE_LONG);
+            out.writeVarLong(l);
+        } else if (value instanceof Double d) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeVarLong(Double.doubleToRawLongBits(d));
+        } else if (value instanceof Boolean b) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeByte((byte) (b ? 1 : 0));
+        } else {
+            // anything else travels as its string form, as JSON would mostly have done
+            out.writeByte(VALUE_STRING);
+            out.writeString(value.toString());
+        }
+    }
+
+    // a null binding reads the record to skip over it
+    private <R> R readRecord(Input in, List<EventSchema.Field> fields, RecordBinding<R> binding) {
+        byte[] present = in.readBytes((fields.size() + 7) / 8);
+        R record = binding != null ? binding.newInstance() : null;
+        for (int i = 0; i < fields.size(); i++) {
+            if ((present[i / 8] & (1 << (i % 8))) == 0) {
+                continue;
+            }
+            EventSchema.Field field = fields.get(i);
+            RecordBinding.Accessor<R> accessor = binding != null ? binding.accessor(field.name()) : null;
+            Object value = readValue(in, field, accessor != null ? accessor.nested() : null);
+            if (accessor != null) {
+                try {
+                    accessor.setter().accept(record, value);
+                } catch (IllegalArgumentException e) {
+                    throw new SerializationException(subject + "." + field.name() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return record;
+    }
+
+    private Object readValue(Input in, EventSchema.Field field, RecordBinding<Object> nested) {
+        return switch (field.type()) {
+            case STRING -> in.readString();
+            case INT -> (int) in.readVarLong();
+            case LONG -> in.readVarLong();
+            case DECIMAL -> {
+                int scale = (int) in.readVarLong();
+                yield new BigDecimal(new BigInteger(in.readBytes((int) in.readVarLong())), scale);
+            }
+            case TIMESTAMP -> LocalDateTime.ofEpochSecond(in.readVarLong(), (int) in.readVarLong(), ZoneOffset.UTC);
+            case ENUM -> field.symbols().get((int) in.readVarLong());
+            case RECORD -> readRecord(in, field.fields(), nested);
+            case MAP -> {
+                int size = (int) in.readVarLong();
+                Map<String, Object> map = new HashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(in.readString(), readMapValue(in));
+                }
+                yield map;
+            }
+            case ARRAY -> {
+                int size = (int) in.readVarLong();
+                List<String> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(in.readString());
+                }
+                yield list;
+            }
+        };
+    }
+
+    private Object readMapValue(Input in) {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case VALUE_NULL -> null;
+            case VALUE_STRING -> in.readString();
+            case VALUE_INT -> (int) in.readVarLong();
+            case VALUE_LONG -> in.readVarLong();
+            case VALUE_DOUBLE -> Double.longBitsToDouble(in.readVarLong());
+            case VALUE_BOOLEAN -> in.readByte() != 0;
+            default -> throw new SerializationException("Unknown map value tag " + tag + " in " + subject);
+        };
+    }
+
+    private static final class Output {
+        private byte[] buffer = new byte[256];
+        private int position;
+
+        void writeByte(byte value) {
+            ensure(1);
+            buffer[position++] = value;
+        }
+
+        void writeBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+        }
+
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[position++] = (byte) zigzag;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    private final class Input {
+        private final byte[] data;
+        private int position;
+
+        Input(byte[] data) {
+            this.data = data;
+        }
+
+        byte readByte() {
+            require(1);
+            return data[position++];
+        }
+
+        byte[] readBytes(int length) {
+            require(length);
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new SerializationException("Malformed varint in " + subject + " record");
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            require(length);
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private void require(int length) {
+            if (length < 0 || position + length > data.length) {
+                throw new SerializationException("Truncated " + subject + " record");
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.elevatebanking.event.codec;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+/**
+ * Reads binary records and, by their first byte, JSON ones, so topics can hold both while producers
+ * switch format and JSON stays usable for debugging.
+ */
+public class BinaryEventDeserializer<T> implements Deserializer<T> {
+    private final BinaryEventCodec<T> codec;
+    private final JsonDeserializer<T> json;
+
+    public BinaryEventDeserializer(BinaryEventCodec<T> codec, Class<T> type) {
+        this.codec = codec;
+        this.json = new JsonDeserializer<>(type, false);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return BinaryEventCodec.isBinary(data) ? codec.decode(data) : json.deserialize(topic, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,16 @@
+package com.elevatebanking.event.codec;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+public class BinaryEventSerializer<T> implements Serializer<T> {
+    private final BinaryEventCodec<T> codec;
+
+    public BinaryEventSerializer(BinaryEventCodec<T> codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        return data == null ? null : codec.encode(data);
+    }
+}
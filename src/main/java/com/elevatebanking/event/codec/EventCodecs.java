@@ -0,0 +1,72 @@
+package com.elevatebanking.event.codec;
+
+import com.elevatebanking.entity.enums.TransactionStatus;
+import com.elevatebanking.entity.enums.TransactionType;
+import com.elevatebanking.event.NotificationEvent;
+import com.elevatebanking.event.TransactionEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The binary codecs of the events that have a schema, keyed by event class. A new field of a bound
+ * event needs a new schema version and an entry in its binding, the codec refuses to start otherwise.
+ */
+@Component
+public class EventCodecs {
+    public static final String TRANSACTION_EVENT = "transaction-event";
+    public static final String NOTIFICATION_EVENT = "notification-event";
+
+    private static final RecordBinding<TransactionEvent.AccountInfo> ACCOUNT_INFO =
+            RecordBinding.of(TransactionEvent.AccountInfo::new)
+                    .field("accountId", TransactionEvent.AccountInfo::getAccountId, TransactionEvent.AccountInfo::setAccountId)
+                    .field("accountNumber", TransactionEvent.AccountInfo::getAccountNumber, TransactionEvent.AccountInfo::setAccountNumber)
+                    .field("accountName", TransactionEvent.AccountInfo::getAccountName, TransactionEvent.AccountInfo::setAccountName)
+                    .field("balanceBefore", TransactionEvent.AccountInfo::getBalanceBefore, TransactionEvent.AccountInfo::setBalanceBefore)
+                    .field("balanceAfter", TransactionEvent.AccountInfo::getBalanceAfter, TransactionEvent.AccountInfo::setBalanceAfter);
+
+    private static final RecordBinding<TransactionEvent> TRANSACTION = RecordBinding.of(TransactionEvent::new)
+            .field("eventId", TransactionEvent::getEventId, TransactionEvent::setEventId)
+            .field("eventType", TransactionEvent::getEventType, TransactionEvent::setEventType)
+            .field("transactionId", TransactionEvent::getTransactionId, TransactionEvent::setTransactionId)
+            .enumField("type", TransactionType.class, TransactionEvent::getType, TransactionEvent::setType)
+            .enumField("status", TransactionStatus.class, TransactionEvent::getStatus, TransactionEvent::setStatus)
+            .field("amount", TransactionEvent::getAmount, TransactionEvent::setAmount)
+            .record("fromAccount", TransactionEvent::getFromAccount, TransactionEvent::setFromAccount, ACCOUNT_INFO)
+            .record("toAccount", TransactionEvent::getToAccount, TransactionEvent::setToAccount, ACCOUNT_INFO)
+            .field("description", TransactionEvent::getDescription, TransactionEvent::setDescription)
+            .field("timestamp", TransactionEvent::getTimestamp, TransactionEvent::setTimestamp)
+            .field("retryCount", TransactionEvent::getRetryCount, TransactionEvent::setRetryCount)
+            .field("userId", TransactionEvent::getUserId, TransactionEvent::setUserId)
+            .field("metadata", TransactionEvent::getMetadata, TransactionEvent::setMetadata)
+            .field("errorMessage", TransactionEvent::getErrorMessage, TransactionEvent::setErrorMessage)
+            .field("processedSteps", TransactionEvent::getProcessedSteps, TransactionEvent::setProcessedSteps)
+            .field("nextRetryAt", TransactionEvent::getNextRetryAt, TransactionEvent::setNextRetryAt)
+            .field("processingStage", TransactionEvent::getProcessingStage, TransactionEvent::setProcessingStage);
+
+    private static final RecordBinding<NotificationEvent> NOTIFICATION =
+            RecordBinding.of(() -> NotificationEvent.builder().build())
+                    .field("eventId", NotificationEvent::getEventId, NotificationEvent::setEventId)
+                    .field("userId", NotificationEvent::getUserId, NotificationEvent::setUserId)
+                    .field("title", NotificationEvent::getTitle, NotificationEvent::setTitle)
+                    .field("message", NotificationEvent::getMessage, NotificationEvent::setMessage)
+                    .field("transactionId", NotificationEvent::getTransactionId, NotificationEvent::setTransactionId)
+                    .field("type", NotificationEvent::getType, NotificationEvent::setType)
+                    .field("priority", NotificationEvent::getPriority, NotificationEvent::setPriority)
+                    .field("timestamp", NotificationEvent::getTimestamp, NotificationEvent::setTimestamp)
+                    .field("metadata", NotificationEvent::getMetadata, NotificationEvent::setMetadata);
+
+    private final Map<Class<?>, BinaryEventCodec<?>> codecs;
+
+    public EventCodecs(EventSchemaRegistry registry) {
+        this.codecs = Map.of(
+                TransactionEvent.class, new BinaryEventCodec<>(registry, TRANSACTION_EVENT, TRANSACTION),
+                NotificationEvent.class, new BinaryEventCodec<>(registry, NOTIFICATION_EVENT, NOTIFICATION));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Optional<BinaryEventCodec<T>> forType(Class<T> type) {
+        return Optional.ofNullable((BinaryEventCodec<T>) codecs.get(type));
+    }
+}
@@ -0,0 +1,61 @@
+package com.elevatebanking.event.codec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One version of an event's schema, read from schemas/&lt;subject&gt;/v&lt;version&gt;.json. Every field is
+ * optional, so a version may add or drop fields; a field that stays keeps its type.
+ */
+public record EventSchema(String subject, int version, List<Field> fields) {
+
+    public enum Type {
+        STRING, INT, LONG, DECIMAL, TIMESTAMP, ENUM, RECORD,
+        // string keys, values are null, strings, ints, longs, doubles or booleans
+        MAP,
+        // of strings
+        ARRAY
+    }
+
+    // symbols are set for enums, fields for records
+    public record Field(String name, Type type, List<String> symbols, List<Field> fields) {
+        public Field {
+            symbols = symbols == null ? List.of() : List.copyOf(symbols);
+            fields = fields == null ? List.of() : List.copyOf(fields);
+        }
+    }
+
+    public EventSchema {
+        fields = List.copyOf(fields);
+    }
+
+    /**
+     * Fails if the newer version changes the type of a field both have or drops an enum symbol that
+     * records still on the topics may carry.
+     */
+    public void checkCompatible(EventSchema newer) {
+        checkCompatible(fields, newer.fields, subject + " v" + version + " -> v" + newer.version);
+    }
+
+    private static void checkCompatible(List<Field> older, List<Field> newer, String path) {
+        Map<String, Field> byName = new HashMap<>();
+        newer.forEach(field -> byName.put(field.name(), field));
+        for (Field field : older) {
+            Field next = byName.get(field.name());
+            if (next == null) {
+                continue;
+            }
+            String at = path + ": " + field.name();
+            if (field.type() != next.type()) {
+                throw new IllegalStateException(at + " changed type from " + field.type() + " to " + next.type());
+            }
+            if (field.type() == Type.ENUM && !next.symbols().containsAll(field.symbols())) {
+                throw new IllegalStateException(at + " dropped enum symbols");
+            }
+            if (field.type() == Type.RECORD) {
+                checkCompatible(field.fields(), next.fields(), at);
+            }
+        }
+    }
+}
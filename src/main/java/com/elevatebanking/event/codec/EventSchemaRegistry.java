@@ -0,0 +1,81 @@
+package com.elevatebanking.event.codec;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Stand-in for a schema registry, serving the schema files shipped on the classpath. Records carry
+ * the version they were written with and readers look that version up here. Every version is
+ * checked against the one before when the application starts, so an incompatible schema fails the
+ * deployment instead of the consumers.
+ */
+@Component
+@Slf4j
+public class EventSchemaRegistry {
+    private static final String LOCATION = "classpath*:schemas/*/v*.json";
+
+    private final Map<String, NavigableMap<Integer, EventSchema>> subjects = new HashMap<>();
+
+    public EventSchemaRegistry() throws IOException {
+        this(LOCATION);
+    }
+
+    // another set of schema files, laid out as <subject>/v<version>.json
+    EventSchemaRegistry(String location) throws IOException {
+        JsonMapper mapper = JsonMapper.builder()
+                .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+                .build();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location)) {
+            EventSchema schema;
+            try (InputStream in = resource.getInputStream()) {
+                schema = mapper.readValue(in, EventSchema.class);
+            }
+            EventSchema duplicate = subjects.computeIfAbsent(schema.subject(), subject -> new TreeMap<>())
+                    .put(schema.version(), schema);
+            // the same file may be on the classpath twice, two different ones are a mistake
+            if (duplicate != null && !duplicate.equals(schema)) {
+                throw new IllegalStateException("Schema " + schema.subject() + " v" + schema.version()
+                        + " is defined twice");
+            }
+        }
+
+        subjects.forEach((subject, versions) -> {
+            EventSchema previous = null;
+            for (EventSchema schema : versions.values()) {
+                if (previous != null) {
+                    previous.checkCompatible(schema);
+                }
+                previous = schema;
+            }
+            log.info("Loaded schema {} versions {}", subject, versions.keySet());
+        });
+    }
+
+    // the version producers write
+    public EventSchema latest(String subject) {
+        NavigableMap<Integer, EventSchema> versions = subjects.get(subject);
+        if (versions == null) {
+            throw new IllegalArgumentException("No schema registered for " + subject);
+        }
+        return versions.lastEntry().getValue();
+    }
+
+    public EventSchema get(String subject, int version) {
+        EventSchema schema = subjects.getOrDefault(subject, new TreeMap<>()).get(version);
+        if (schema == null) {
+            throw new IllegalArgumentException("No schema " + subject + " v" + version);
+        }
+        return schema;
+    }
+}
@@ -0,0 +1,68 @@
+package com.elevatebanking.event.codec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * How the fields of a schema map onto a class, written out by hand so encoding neither reflects
+ * nor builds a tree of intermediate nodes. Values are exchanged in the types the codec reads and
+ * writes: strings for enums, maps and lists for maps and arrays, bound objects for records.
+ */
+public final class RecordBinding<T> {
+
+    record Accessor<T>(Function<T, Object> getter, BiConsumer<T, Object> setter, RecordBinding<Object> nested) {
+    }
+
+    private final Supplier<T> factory;
+    private final Map<String, Accessor<T>> accessors = new LinkedHashMap<>();
+
+    private RecordBinding(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    public static <T> RecordBinding<T> of(Supplier<T> factory) {
+        return new RecordBinding<>(factory);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> RecordBinding<T> field(String name, Function<T, V> getter, BiConsumer<T, V> setter) {
+        accessors.put(name, new Accessor<>((Function<T, Object>) getter,
+                (target, value) -> setter.accept(target, (V) value), null));
+        return this;
+    }
+
+    public <E extends Enum<E>> RecordBinding<T> enumField(String name, Class<E> type, Function<T, E> getter,
+                                                          BiConsumer<T, E> setter) {
+        accessors.put(name, new Accessor<>(
+                target -> {
+                    E value = getter.apply(target);
+                    return value == null ? null : value.name();
+                },
+                (target, value) -> setter.accept(target, Enum.valueOf(type, (String) value)),
+                null));
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> RecordBinding<T> record(String name, Function<T, V> getter, BiConsumer<T, V> setter,
+                                       RecordBinding<V> binding) {
+        accessors.put(name, new Accessor<>((Function<T, Object>) getter,
+                (target, value) -> setter.accept(target, (V) value), (RecordBinding<Object>) binding));
+        return this;
+    }
+
+    T newInstance() {
+        return factory.get();
+    }
+
+    Accessor<T> accessor(String name) {
+        return accessors.get(name);
+    }
+
+    Map<String, Accessor<T>> accessors() {
+        return accessors;
+    }
+}
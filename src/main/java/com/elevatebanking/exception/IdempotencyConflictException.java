@@ -0,0 +1,9 @@
+package com.elevatebanking.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class IdempotencyConflictException extends ElevateBankingException {
+    public IdempotencyConflictException(String message) {
+        super("IDEMPOTENCY_CONFLICT", message, HttpStatus.CONFLICT);
+    }
+}
@@ -0,0 +1,44 @@
+package com.elevatebanking.repository;
+
+import com.elevatebanking.entity.ledger.AccountBalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AccountBalanceSnapshotRepository extends JpaRepository<AccountBalanceSnapshot, String> {
+    Optional<AccountBalanceSnapshot> findTopByAccountIdOrderByCoveredUntilDesc(String accountId);
+
+    boolean existsByAccountId(String accountId);
+
+    // waits for a concurrent uncommitted opening snapshot of the same account and keeps that one if it commits
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "INSERT INTO account_balance_snapshots (snapshot_id, account_id, covered_until, balance, created_at) " +
+            "VALUES (:id, :accountId, :coveredUntil, :balance, now()) " +
+            "ON CONFLICT (account_id, covered_until) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id, @Param("accountId") String accountId,
+                       @Param("coveredUntil") LocalDateTime coveredUntil, @Param("balance") BigDecimal balance);
+
+    // per account: latest snapshot (account id, covered until, balance), then the delta of the entries from it up to the cutoff.
+    // one statement, so the snapshot and the entries summed on top of it are read consistently
+    @Query("SELECT s.accountId, s.coveredUntil, s.balance, SUM(e.amount) " +
+            "FROM AccountBalanceSnapshot s, LedgerEntry e " +
+            "WHERE s.accountId IN :accountIds " +
+            "AND s.coveredUntil = (SELECT MAX(s2.coveredUntil) FROM AccountBalanceSnapshot s2 WHERE s2.accountId = s.accountId) " +
+            "AND s.coveredUntil < :cutoff " +
+            "AND e.accountId = s.accountId AND e.createdAt >= s.coveredUntil AND e.createdAt < :cutoff " +
+            "GROUP BY s.accountId, s.coveredUntil, s.balance")
+    List<Object[]> findDeltasSinceLatestSnapshot(@Param("accountIds") Collection<String> accountIds,
+                                                 @Param("cutoff") LocalDateTime cutoff);
+}
@@ -7,8 +7,11 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +26,22 @@ public interface AccountRepository extends JpaRepository<Account, String> {
     @Query("SELECT a FROM Account a WHERE a.user.id = :userId AND a.status = :status")
     List<Account> findAccountsByUserIdAndStatus(@Param("userId") String userId, @Param("status") AccountStatus status);
 
+    // bulk lookup for batch processing, the owner is fetched in the same query
+    @Query("SELECT a FROM Account a JOIN FETCH a.user WHERE a.id IN :ids")
+    List<Account> findAllWithUserByIdIn(@Param("ids") Collection<String> ids);
+
     @Query("SELECT SUM(a.balance) FROM Account a WHERE a.user.id = :userId")
     BigDecimal getTotalBalanceByUserId(@Param("userId") String userId);
+
+    // guarded in-place debit: takes the row lock, checks the balance and bumps the version in one round trip.
+    // returns empty when the account does not exist or the balance is insufficient
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE accounts SET balance = balance - :amount, version = version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = :accountId AND balance >= :amount RETURNING balance", nativeQuery = true)
+    Optional<BigDecimal> debitBalance(@Param("accountId") String accountId, @Param("amount") BigDecimal amount);
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE accounts SET balance = balance + :amount, version = version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = :accountId RETURNING balance", nativeQuery = true)
+    Optional<BigDecimal> creditBalance(@Param("accountId") String accountId, @Param("amount") BigDecimal amount);
 }
@@ -3,11 +3,13 @@ package com.elevatebanking.repository;
 import com.elevatebanking.entity.enums.EventStatus;
 import com.elevatebanking.entity.log.EventLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -21,4 +23,47 @@ public interface EventLogRepository extends JpaRepository<EventLog, String> {
 
     @Query("SELECT el FROM EventLog el WHERE el.status = 'PENDING' AND el.createdAt < :timeout")
     List<EventLog> findStaleEvents(@Param("timeout") LocalDateTime timeout);
+
+    /*
+     * Oldest publishable rows whose key has no earlier row still to be sent, so the events of one key
+     * reach kafka in the order they were written. Rows locked by another relay are skipped instead of
+     * waited for, and the earlier rows they hold keep the later ones of their key out.
+     */
+    @Query(value = "SELECT e.* FROM event_logs e WHERE e.status IN ('PENDING', 'RETRY') " +
+            "AND NOT EXISTS (SELECT 1 FROM event_logs p WHERE p.message_key = e.message_key " +
+            "AND p.status IN ('PENDING', 'RETRY', 'IN_FLIGHT') " +
+            "AND (p.created_at, p.event_id) < (e.created_at, e.event_id)) " +
+            "ORDER BY e.created_at, e.event_id LIMIT :limit FOR UPDATE OF e SKIP LOCKED", nativeQuery = true)
+    List<EventLog> lockPublishable(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE event_logs SET status = 'IN_FLIGHT', claimed_by = :owner, claimed_at = now() " +
+            "WHERE event_id IN (:ids)", nativeQuery = true)
+    int markInFlight(@Param("ids") Collection<String> ids, @Param("owner") String owner);
+
+    // only rows still claimed by the batch, a row released in the meantime belongs to whoever took it
+    @Modifying
+    @Query(value = "UPDATE event_logs SET status = 'PROCESSED', processed_at = now(), claimed_by = NULL, " +
+            "claimed_at = NULL WHERE event_id IN (:ids) AND status = 'IN_FLIGHT' AND claimed_by = :owner",
+            nativeQuery = true)
+    int markProcessed(@Param("ids") Collection<String> ids, @Param("owner") String owner);
+
+    @Modifying
+    @Query(value = "UPDATE event_logs SET retry_count = retry_count + 1, " +
+            "status = CASE WHEN retry_count + 1 >= :maxAttempts THEN 'FAILED' ELSE 'RETRY' END, " +
+            "claimed_by = NULL, claimed_at = NULL " +
+            "WHERE event_id IN (:ids) AND status = 'IN_FLIGHT' AND claimed_by = :owner", nativeQuery = true)
+    int markAttemptFailed(@Param("ids") Collection<String> ids, @Param("maxAttempts") int maxAttempts,
+                          @Param("owner") String owner);
+
+    // rows of a relay that died or hung while sending, they may have reached kafka and are sent again
+    @Modifying
+    @Query(value = "UPDATE event_logs SET status = 'RETRY', claimed_by = NULL, claimed_at = NULL " +
+            "WHERE status = 'IN_FLIGHT' AND claimed_at < :before", nativeQuery = true)
+    int releaseInFlight(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query(value = "DELETE FROM event_logs WHERE event_id IN (SELECT event_id FROM event_logs " +
+            "WHERE status = 'PROCESSED' AND processed_at < :before LIMIT :limit)", nativeQuery = true)
+    int deleteProcessedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
 }
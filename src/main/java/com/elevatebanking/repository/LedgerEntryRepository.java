@@ -0,0 +1,25 @@
+package com.elevatebanking.repository;
+
+import com.elevatebanking.entity.ledger.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    boolean existsByTransactionIdAndReversal(String transactionId, boolean reversal);
+
+    List<LedgerEntry> findByTransactionIdAndReversal(String transactionId, boolean reversal);
+
+    @Query("SELECT COALESCE(SUM(e.amount), 0) FROM LedgerEntry e WHERE e.accountId = :accountId AND e.createdAt >= :since")
+    BigDecimal sumAmountsSince(@Param("accountId") String accountId, @Param("since") LocalDateTime since);
+
+    @Query("SELECT DISTINCT e.accountId FROM LedgerEntry e WHERE e.createdAt >= :since AND e.accountId <> :systemAccountId")
+    List<String> findAccountIdsWithEntriesSince(@Param("since") LocalDateTime since,
+                                                @Param("systemAccountId") String systemAccountId);
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,4 +18,11 @@ public interface LimitExceptionRepository extends JpaRepository<LimitException,
 
     @Query("SELECT le FROM LimitException le WHERE le.user.id = :userId AND le.active = true and le.startTime <= CURRENT_TIMESTAMP and le.endTime >= CURRENT_TIMESTAMP")
     Optional<LimitException> findActiveExceptionForUser(@Param("userId") String userId);
+
+    List<LimitException> findByActiveTrueAndEndTimeAfter(LocalDateTime time);
+
+    List<LimitException> findByUserIdAndActiveTrueAndEndTimeAfter(String userId, LocalDateTime time);
+
+    Optional<LimitException> findFirstByUserIdAndActiveTrueAndStartTimeAfterOrderByStartTimeAsc(String userId,
+                                                                                              LocalDateTime after);
 }
@@ -0,0 +1,25 @@
+package com.elevatebanking.repository;
+
+import com.elevatebanking.entity.log.ProcessedEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, String> {
+    // 1 for the first delivery, 0 once another transaction recorded the event. A concurrent delivery
+    // waits on the key until the first one commits or rolls back
+    @Modifying
+    @Query(value = "INSERT INTO processed_events (event_id, processed_at) VALUES (:eventId, now()) " +
+            "ON CONFLICT (event_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("eventId") String eventId);
+
+    @Modifying
+    @Query(value = "DELETE FROM processed_events WHERE event_id IN (" +
+            "SELECT event_id FROM processed_events WHERE processed_at < :before LIMIT :limit)", nativeQuery = true)
+    int deleteProcessedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
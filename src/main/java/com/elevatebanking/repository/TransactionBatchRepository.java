@@ -0,0 +1,12 @@
+package com.elevatebanking.repository;
+
+import com.elevatebanking.entity.transaction.TransactionBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface TransactionBatchRepository extends JpaRepository<TransactionBatch, String> {
+    Optional<TransactionBatch> findByIdAndUserId(String id, String userId);
+}
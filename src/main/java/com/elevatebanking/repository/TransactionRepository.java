@@ -2,11 +2,13 @@ package com.elevatebanking.repository;
 
 import com.elevatebanking.entity.enums.TransactionStatus;
 import com.elevatebanking.entity.transaction.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -42,6 +44,9 @@ public interface TransactionRepository extends JpaRepository<Transaction, String
     @Query("SELECT t FROM Transaction t WHERE t.status = 'PENDING' AND t.createdAt < :threshold")
     List<Transaction> findStuckTransactions(LocalDateTime threshold);
 
+    @Query("SELECT t.id FROM Transaction t WHERE t.status = 'PENDING' AND t.createdAt < :threshold ORDER BY t.createdAt")
+    List<String> findStuckTransactionIds(@Param("threshold") LocalDateTime threshold, Pageable pageable);
+
     @Query("SELECT count(t) FROM Transaction t WHERE t.createdAt BETWEEN :start AND :end")
     long countTransactionsInTimeframe(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
@@ -55,7 +60,7 @@ public interface TransactionRepository extends JpaRepository<Transaction, String
             "FROM Transaction t " +
             "WHERE t.createdAt BETWEEN :start AND :end " +
             "AND t.status = 'COMPLETED'")
-    double calculateAverageProcessingTime(
+    Double calculateAverageProcessingTime(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
 
@@ -71,4 +76,17 @@ public interface TransactionRepository extends JpaRepository<Transaction, String
             @Param("endDate") LocalDateTime endDate
     );
 
+    // progress of a batch: one row per status with its transaction count
+    // completed outgoing transfers of a user, when user_spend_aggregates has no row for the period
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t WHERE t.fromAccount.user.id = :userId " +
+            "AND t.type = 'TRANSFER' AND t.status = 'COMPLETED' AND t.createdAt >= :start AND t.createdAt < :end")
+    BigDecimal sumCompletedTransfersByUser(
+            @Param("userId") String userId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+
+    @Query("SELECT t.status, count(t) FROM Transaction t WHERE t.batchId = :batchId GROUP BY t.status")
+    List<Object[]> countByStatusForBatch(@Param("batchId") String batchId);
+
 }
@@ -2,6 +2,7 @@ package com.elevatebanking.repository;
 
 import com.elevatebanking.entity.user.User;
 import com.elevatebanking.entity.enums.UserStatus;
+import com.elevatebanking.entity.enums.UserTier;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -32,6 +33,9 @@ public interface UserRepository extends JpaRepository<User, String> {
     @Query("SELECT u FROM User u WHERE u.createdAt BETWEEN :startDate AND :endDate")
     List<User> findUsersByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
 
+    @Query("SELECT u.tier FROM User u WHERE u.id = :userId")
+    Optional<UserTier> findTierById(@Param("userId") String userId);
+
     // get user by email -> User user
 
 
@@ -0,0 +1,38 @@
+package com.elevatebanking.repository;
+
+import com.elevatebanking.entity.transaction.UserSpendAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface UserSpendAggregateRepository extends JpaRepository<UserSpendAggregate, UserSpendAggregate.Key> {
+    @Query("SELECT a.total FROM UserSpendAggregate a WHERE a.userId = :userId AND a.period = :period")
+    Optional<BigDecimal> findTotal(@Param("userId") String userId, @Param("period") String period);
+
+    // adds one transfer to the period. The first transfer of a period creates the row from the transfers completed
+    // before it, concurrent first transfers conflict on the key and add only their own amount
+    @Modifying
+    @Query(value = "INSERT INTO user_spend_aggregates (user_id, period, total, count, updated_at) " +
+            "SELECT :userId, :period, COALESCE(SUM(t.amount), 0) + :amount, COUNT(t.transaction_id) + 1, now() " +
+            "FROM transactions t JOIN accounts a ON a.id = t.from_account_id " +
+            "WHERE a.user_id = :userId AND t.transaction_type = 'TRANSFER' AND t.status = 'COMPLETED' " +
+            "AND t.created_at >= :start AND t.created_at < :end AND t.transaction_id <> :transactionId " +
+            "ON CONFLICT (user_id, period) DO UPDATE SET " +
+            "total = user_spend_aggregates.total + :amount, count = user_spend_aggregates.count + 1, updated_at = now()",
+            nativeQuery = true)
+    int add(@Param("userId") String userId, @Param("period") String period, @Param("amount") BigDecimal amount,
+            @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+            @Param("transactionId") String transactionId);
+
+    @Modifying
+    @Query(value = "UPDATE user_spend_aggregates SET total = total - :amount, count = count - 1, updated_at = now() " +
+            "WHERE user_id = :userId AND period = :period", nativeQuery = true)
+    int subtract(@Param("userId") String userId, @Param("period") String period, @Param("amount") BigDecimal amount);
+}
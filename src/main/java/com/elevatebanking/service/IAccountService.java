@@ -24,6 +24,13 @@ public interface IAccountService {
 
     Account updateBalance(String accountId, BigDecimal newBalance);
 
+    // atomic balance mutations, each returns the balance written by the database
+    BigDecimal debitBalance(String accountId, BigDecimal amount);
+
+    BigDecimal creditBalance(String accountId, BigDecimal amount);
+
+    AccountDTOs.BalanceTransferResult transferBalance(String fromAccountId, String toAccountId, BigDecimal amount);
+
     boolean existsByAccountNumber(String accountNumber);
 
     void validateAccount(String accountId, BigDecimal amount);
@@ -31,6 +31,9 @@ public interface ITransactionService {
 
     TransactionResponse transfer(TransferRequest request);
 
+    // persists the transfer as PENDING and leaves it to the event processor
+    TransactionResponse submitTransfer(TransferRequest request);
+
     TransactionResponse deposit(DepositRequest request);
 
     TransactionResponse withdraw(WithdrawRequest request);
@@ -1,26 +1,36 @@
 package com.elevatebanking.service.consumer;
 
+import com.elevatebanking.config.ExecutorConfig;
 import com.elevatebanking.entity.Notification;
 import com.elevatebanking.entity.user.User;
 import com.elevatebanking.event.NotificationEvent;
 import com.elevatebanking.repository.NotificationRepository;
 import com.elevatebanking.repository.UserRepository;
 import com.elevatebanking.service.nonImp.EmailService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.concurrent.CompletableFuture;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class NotificationConsumer {
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
+    private final AsyncTaskExecutor notificationExecutor;
+
+    public NotificationConsumer(NotificationRepository notificationRepository, UserRepository userRepository,
+                                EmailService emailService,
+                                @Qualifier(ExecutorConfig.NOTIFICATION_EXECUTOR) AsyncTaskExecutor notificationExecutor) {
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.emailService = emailService;
+        this.notificationExecutor = notificationExecutor;
+    }
 
     public void handleNotification(NotificationEvent event, Acknowledgment ack) {
         log.info("Received notification event: {}", event);
@@ -48,8 +58,8 @@ public class NotificationConsumer {
     }
 
     private void sendNotificationAsync(Notification notification, User user) {
-        // su dung completableFuture de gui notification bat dong bo
-        CompletableFuture.runAsync(() -> {
+        // gui notification bat dong bo, SMTP blocks so it must not run on the common pool
+        notificationExecutor.execute(() -> {
             try {
                 sendEmailNotification(notification, user);
 
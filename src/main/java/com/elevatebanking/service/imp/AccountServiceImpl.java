@@ -1,5 +1,6 @@
 package com.elevatebanking.service.imp;
 
+import com.elevatebanking.aspect.RetryOnConflict;
 import com.elevatebanking.dto.accounts.AccountDTOs.*;
 import com.elevatebanking.entity.account.Account;
 import com.elevatebanking.entity.enums.AccountStatus;
@@ -19,7 +20,8 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import com.elevatebanking.exception.InsufficientBalanceException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -33,6 +35,8 @@ import java.util.concurrent.TimeUnit;
 public class AccountServiceImpl implements IAccountService {
 
     private static final int MAX_ACCOUNTS_PER_USER = 5;
+    private static final String BALANCE_CACHE_PREFIX = "balance:";
+    private static final long BALANCE_CACHE_TTL_MINUTES = 5;
 
     private final AccountRepository accountRepository;
     private final UserRepository userRepository;
@@ -97,7 +101,8 @@ public class AccountServiceImpl implements IAccountService {
 
     @Override
     @PreAuthorize("hasRole('ADMIN') or hasRole('TELLER')")
-    @Transactional(readOnly = true)
+    @Transactional
+    @RetryOnConflict
     public Account updateAccountStatus(String id, AccountStatus status) {
         Account account = getAccountById(id).orElseThrow(() -> new ResourceNotFoundException("Account not found"));
 
@@ -146,7 +151,8 @@ public class AccountServiceImpl implements IAccountService {
 
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional
+    @RetryOnConflict
     public Account updateBalance(String accountId, BigDecimal newBalance) {
         Account account = getAccountById(accountId).orElseThrow(() -> new ResourceNotFoundException("Account not found"));
         if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
@@ -167,6 +173,86 @@ public class AccountServiceImpl implements IAccountService {
         return updatedAccount;
     }
 
+    @Override
+    public BigDecimal debitBalance(String accountId, BigDecimal amount) {
+        validateMutationAmount(amount);
+        BigDecimal newBalance = accountRepository.debitBalance(accountId, amount)
+                .orElseThrow(() -> accountRepository.existsById(accountId)
+                        ? new InsufficientBalanceException("Insufficient balance")
+                        : new ResourceNotFoundException("Account not found"));
+        refreshCachedBalance(accountId, newBalance);
+        log.debug("Debited {} from account {}, new balance {}", amount, accountId, newBalance);
+        return newBalance;
+    }
+
+    @Override
+    public BigDecimal creditBalance(String accountId, BigDecimal amount) {
+        validateMutationAmount(amount);
+        BigDecimal newBalance = accountRepository.creditBalance(accountId, amount)
+                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+        refreshCachedBalance(accountId, newBalance);
+        log.debug("Credited {} to account {}, new balance {}", amount, accountId, newBalance);
+        return newBalance;
+    }
+
+    @Override
+    public BalanceTransferResult transferBalance(String fromAccountId, String toAccountId, BigDecimal amount) {
+        if (fromAccountId.equals(toAccountId)) {
+            throw new InvalidOperationException("Cannot transfer to the same account");
+        }
+
+        // each UPDATE takes its row lock, so apply the legs in account id order
+        // to keep opposite-direction transfers on the same pair from deadlocking
+        BigDecimal fromBalance;
+        BigDecimal toBalance;
+        if (fromAccountId.compareTo(toAccountId) < 0) {
+            fromBalance = debitBalance(fromAccountId, amount);
+            toBalance = creditBalance(toAccountId, amount);
+        } else {
+            toBalance = creditBalance(toAccountId, amount);
+            fromBalance = debitBalance(fromAccountId, amount);
+        }
+
+        return BalanceTransferResult.builder()
+                .fromBalance(fromBalance)
+                .toBalance(toBalance)
+                .build();
+    }
+
+    private void validateMutationAmount(BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new InvalidOperationException("Amount must be greater than 0");
+        }
+    }
+
+    private void refreshCachedBalance(String accountId, BigDecimal balance) {
+        // only publish the new balance once it is committed, a rollback must not leave it in the cache
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    writeCachedBalance(accountId, balance);
+                }
+            });
+        } else {
+            writeCachedBalance(accountId, balance);
+        }
+    }
+
+    private void writeCachedBalance(String accountId, BigDecimal balance) {
+        try {
+            redisTemplate.opsForValue().set(
+                    BALANCE_CACHE_PREFIX + accountId,
+                    balance.toString(),
+                    BALANCE_CACHE_TTL_MINUTES,
+                    TimeUnit.MINUTES
+            );
+        } catch (Exception e) {
+            // the database is the source of truth, a stale entry expires on its own
+            log.warn("Failed to refresh cached balance for account {}: {}", accountId, e.getMessage());
+        }
+    }
+
     @Override
     @Transactional(readOnly = true)
     public boolean existsByAccountNumber(String accountNumber) {
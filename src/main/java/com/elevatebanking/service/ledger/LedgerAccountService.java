@@ -0,0 +1,295 @@
+package com.elevatebanking.service.ledger;
+
+import com.elevatebanking.dto.accounts.AccountDTOs;
+import com.elevatebanking.dto.accounts.AccountDTOs.BalanceTransferResult;
+import com.elevatebanking.entity.account.Account;
+import com.elevatebanking.entity.enums.AccountStatus;
+import com.elevatebanking.entity.enums.LedgerTransferState;
+import com.elevatebanking.exception.InvalidOperationException;
+import com.elevatebanking.exception.RetryableException;
+import com.elevatebanking.service.IAccountService;
+import com.elevatebanking.service.ledger.config.LedgerEngineConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.elevatebanking.service.ledger.LedgerPostingService.CASH_ACCOUNT_ID;
+
+/**
+ * Ledger engine mode of {@link IAccountService}. Balance mutations are routed to the engine and
+ * committed by the partition writers, everything else is served by the regular account service.
+ * <p>
+ * The engine commits on its own threads, outside the caller's transaction. Every mutation is
+ * therefore recorded in ledger_transfers, a deposit or withdrawal as a single leg against the cash
+ * account, and confirmed in the caller's transaction; a rollback unwinds it. In this mode every
+ * balance change must go through this service, otherwise the writers' in-memory balances drift
+ * and their commits get rejected.
+ * <p>
+ * The legs of a transfer can live on different partitions. Each leg moves the transfer's row in
+ * ledger_transfers in the same writer transaction as its balance update, so the row always says
+ * which legs committed, and a leg whose state was already moved on by someone else is rejected.
+ * Transfers left half done, or applied for a caller transaction that rolled back, are finished by
+ * {@link LedgerTransferRecovery}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "ledger.engine", name = "enabled", havingValue = "true")
+@Slf4j
+public class LedgerAccountService implements IAccountService {
+
+    private final IAccountService delegate;
+    private final LedgerEngine ledgerEngine;
+    private final LedgerEngineConfig config;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String START_TRANSFER_SQL = "INSERT INTO ledger_transfers (transfer_id, from_account_id, " +
+            "to_account_id, amount, state, confirmed, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, false, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) ON CONFLICT DO NOTHING";
+    private static final String MOVE_TRANSFER_SQL = "UPDATE ledger_transfers SET state = ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE transfer_id = ? AND state = ?";
+    // a confirmed transfer belongs to a committed caller transaction and is never unwound
+    private static final String UNWIND_TRANSFER_SQL = "UPDATE ledger_transfers SET state = ?, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE transfer_id = ? AND state = 'CREDITED' AND NOT confirmed";
+    private static final String CONFIRM_TRANSFER_SQL = "UPDATE ledger_transfers SET confirmed = true WHERE transfer_id = ?";
+
+    @Autowired
+    public LedgerAccountService(@Qualifier("accountServiceImpl") IAccountService delegate, LedgerEngine ledgerEngine,
+                                LedgerEngineConfig config, RedisTemplate<String, String> redisTemplate,
+                                JdbcTemplate jdbcTemplate) {
+        this.delegate = delegate;
+        this.ledgerEngine = ledgerEngine;
+        this.config = config;
+        this.redisTemplate = redisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public BigDecimal debitBalance(String accountId, BigDecimal amount) {
+        validateMutationAmount(amount);
+        String transferId = UUID.randomUUID().toString();
+        BigDecimal balance = await(accountId, ledgerEngine.debit(accountId, amount,
+                start(transferId, accountId, CASH_ACCOUNT_ID, amount, LedgerTransferState.CREDITED)));
+        confirmWithCaller(transferId, accountId, CASH_ACCOUNT_ID, amount);
+        return balance;
+    }
+
+    @Override
+    public BigDecimal creditBalance(String accountId, BigDecimal amount) {
+        validateMutationAmount(amount);
+        String transferId = UUID.randomUUID().toString();
+        BigDecimal balance = await(accountId, ledgerEngine.credit(accountId, amount,
+                start(transferId, CASH_ACCOUNT_ID, accountId, amount, LedgerTransferState.CREDITED)));
+        confirmWithCaller(transferId, CASH_ACCOUNT_ID, accountId, amount);
+        return balance;
+    }
+
+    @Override
+    public BalanceTransferResult transferBalance(String fromAccountId, String toAccountId, BigDecimal amount) {
+        if (fromAccountId.equals(toAccountId)) {
+            throw new InvalidOperationException("Cannot transfer to the same account");
+        }
+
+        validateMutationAmount(amount);
+
+        // the debit records the transfer, so from here on a half done transfer is never forgotten
+        String transferId = UUID.randomUUID().toString();
+        BigDecimal fromBalance = await(fromAccountId, ledgerEngine.debit(fromAccountId, amount,
+                start(transferId, fromAccountId, toAccountId, amount, LedgerTransferState.DEBITED)));
+        BigDecimal toBalance;
+        try {
+            toBalance = await(toAccountId, ledgerEngine.credit(toAccountId, amount,
+                    move(transferId, LedgerTransferState.DEBITED, LedgerTransferState.CREDITED)));
+        } catch (RuntimeException e) {
+            log.error("Credit leg of transfer {} ({} -> {}) failed, reversing debit: {}",
+                    transferId, fromAccountId, toAccountId, e.getMessage());
+            try {
+                reverseDebit(transferId, fromAccountId, amount);
+            } catch (RuntimeException reversalFailure) {
+                // still DEBITED, or credited after all, the recovery job settles it either way
+                log.error("Reversal of transfer {} failed, left to recovery: {}", transferId, reversalFailure.getMessage());
+            }
+            throw e;
+        }
+        confirmWithCaller(transferId, fromAccountId, toAccountId, amount);
+
+        return BalanceTransferResult.builder()
+                .fromBalance(fromBalance)
+                .toBalance(toBalance)
+                .build();
+    }
+
+    @Override
+    public Account updateBalance(String accountId, BigDecimal newBalance) {
+        Account account = delegate.updateBalance(accountId, newBalance);
+        await(accountId, ledgerEngine.invalidate(accountId));
+        return account;
+    }
+
+    // credits the sender back, rejected once the credit leg or another reversal got there first
+    void reverseDebit(String transferId, String fromAccountId, BigDecimal amount) {
+        await(fromAccountId, ledgerEngine.credit(fromAccountId, amount,
+                move(transferId, LedgerTransferState.DEBITED, LedgerTransferState.REVERSED)));
+    }
+
+    // takes a credited transfer back, or finishes an unwind that stopped after the recipient's debit.
+    // the cash account is outside the engine, a deposit or withdrawal is unwound by its single leg
+    void unwind(String transferId, String fromAccountId, String toAccountId, BigDecimal amount,
+                LedgerTransferState state) {
+        boolean creditSender = !CASH_ACCOUNT_ID.equals(fromAccountId);
+        LedgerTransferState current = state;
+        if (current == LedgerTransferState.CREDITED && !CASH_ACCOUNT_ID.equals(toAccountId)) {
+            current = creditSender ? LedgerTransferState.UNWINDING : LedgerTransferState.REVERSED;
+            await(toAccountId, ledgerEngine.debit(toAccountId, amount,
+                    new LedgerMutation.Guard(UNWIND_TRANSFER_SQL, current.name(), transferId)));
+        }
+        if (creditSender) {
+            LedgerMutation.Guard guard = current == LedgerTransferState.CREDITED
+                    ? new LedgerMutation.Guard(UNWIND_TRANSFER_SQL, LedgerTransferState.REVERSED.name(), transferId)
+                    : move(transferId, LedgerTransferState.UNWINDING, LedgerTransferState.REVERSED);
+            await(fromAccountId, ledgerEngine.credit(fromAccountId, amount, guard));
+        }
+        log.info("Unwound transfer {} ({} -> {})", transferId, fromAccountId, toAccountId);
+    }
+
+    private LedgerMutation.Guard start(String transferId, String fromAccountId, String toAccountId, BigDecimal amount,
+                                       LedgerTransferState state) {
+        return new LedgerMutation.Guard(START_TRANSFER_SQL, transferId, fromAccountId, toAccountId, amount, state.name());
+    }
+
+    private LedgerMutation.Guard move(String transferId, LedgerTransferState from, LedgerTransferState to) {
+        return new LedgerMutation.Guard(MOVE_TRANSFER_SQL, to.name(), transferId, from.name());
+    }
+
+    /**
+     * Marks the transfer as belonging to the caller's database transaction, so it is confirmed exactly
+     * when that transaction commits. A rollback unwinds it right away; if that fails, or the node dies
+     * first, the recovery job finds it credited but never confirmed.
+     */
+    private void confirmWithCaller(String transferId, String fromAccountId, String toAccountId, BigDecimal amount) {
+        jdbcTemplate.update(CONFIRM_TRANSFER_SQL, transferId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    unwind(transferId, fromAccountId, toAccountId, amount, LedgerTransferState.CREDITED);
+                } catch (RuntimeException e) {
+                    log.error("Could not unwind transfer {} after rollback, left to recovery: {}", transferId, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private BigDecimal await(String accountId, CompletableFuture<BigDecimal> future) {
+        try {
+            BigDecimal balance = future.get(config.getSubmitTimeoutMs(), TimeUnit.MILLISECONDS);
+            if (balance != null) {
+                cacheBalance(accountId, balance);
+            }
+            return balance;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RetryableException("Ledger mutation failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RetryableException("Timed out waiting for ledger commit of account " + accountId, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RetryableException("Interrupted while waiting for ledger commit", e);
+        }
+    }
+
+    private void cacheBalance(String accountId, BigDecimal balance) {
+        try {
+            redisTemplate.opsForValue().set("balance:" + accountId, balance.toString(), 5, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("Failed to refresh cached balance for account {}: {}", accountId, e.getMessage());
+        }
+    }
+
+    private void validateMutationAmount(BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new InvalidOperationException("Amount must be greater than 0");
+        }
+    }
+
+    // everything below is not a balance mutation and is served by the regular account service
+
+    @Override
+    public Account createAccount(String userId) {
+        return delegate.createAccount(userId);
+    }
+
+    @Override
+    public Optional<Account> getAccountById(String id) {
+        return delegate.getAccountById(id);
+    }
+
+    @Override
+    public Optional<Account> getAccountByNumber(String accountNumber) {
+        return delegate.getAccountByNumber(accountNumber);
+    }
+
+    @Override
+    public List<Account> getAccountsByUserId(String userId) {
+        return delegate.getAccountsByUserId(userId);
+    }
+
+    @Override
+    public Account updateAccountStatus(String id, AccountStatus status) {
+        return delegate.updateAccountStatus(id, status);
+    }
+
+    @Override
+    public BigDecimal getBalance(String accountId) {
+        return delegate.getBalance(accountId);
+    }
+
+    @Override
+    public boolean existsByAccountNumber(String accountNumber) {
+        return delegate.existsByAccountNumber(accountNumber);
+    }
+
+    @Override
+    public void validateAccount(String accountId, BigDecimal amount) {
+        delegate.validateAccount(accountId, amount);
+    }
+
+    @Override
+    public AccountDTOs.AccountBalanceResponse getBalanceInfo(String id) {
+        return delegate.getBalanceInfo(id);
+    }
+
+    @Override
+    public boolean isAccountOwner(String accountId, String userId) {
+        return delegate.isAccountOwner(accountId, userId);
+    }
+
+    @Override
+    public void validateAccountOwnership(String accountId, String userId) {
+        delegate.validateAccountOwnership(accountId, userId);
+    }
+}
@@ -0,0 +1,116 @@
+package com.elevatebanking.service.ledger;
+
+import com.elevatebanking.exception.RetryableException;
+import com.elevatebanking.service.ledger.config.LedgerEngineConfig;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes balance mutations to single-writer partitions keyed by account id. Each partition is
+ * a disruptor ring buffer drained by one thread, so mutations of the same account never contend
+ * on the database row and are committed in groups.
+ */
+@Component
+@ConditionalOnProperty(prefix = "ledger.engine", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerEngine {
+    private final LedgerEngineConfig config;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private final List<Disruptor<LedgerMutation>> disruptors = new ArrayList<>();
+    private final List<RingBuffer<LedgerMutation>> ringBuffers = new ArrayList<>();
+
+    @PostConstruct
+    public void start() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int partition = 0; partition < config.getPartitions(); partition++) {
+            Disruptor<LedgerMutation> disruptor = new Disruptor<>(
+                    LedgerMutation::new,
+                    config.getRingBufferSize(),
+                    writerThreadFactory(partition),
+                    ProducerType.MULTI,
+                    new BlockingWaitStrategy());
+            disruptor.handleEventsWith(new LedgerPartitionWriter(partition, config.getMaxBatchSize(),
+                    config.getMaxCachedAccounts() / config.getPartitions(), jdbcTemplate, transactionTemplate));
+            ringBuffers.add(disruptor.start());
+            disruptors.add(disruptor);
+        }
+        log.info("Ledger engine started with {} partitions, ring buffer size {}",
+                config.getPartitions(), config.getRingBufferSize());
+    }
+
+    @PreDestroy
+    public void stop() {
+        // halts after the published mutations are drained, the writers flush on shutdown
+        disruptors.forEach(Disruptor::shutdown);
+        log.info("Ledger engine stopped");
+    }
+
+    public CompletableFuture<BigDecimal> credit(String accountId, BigDecimal amount) {
+        return credit(accountId, amount, null);
+    }
+
+    public CompletableFuture<BigDecimal> debit(String accountId, BigDecimal amount) {
+        return debit(accountId, amount, null);
+    }
+
+    // a guarded mutation is group-committed with the others, its guard statement in the same transaction
+    public CompletableFuture<BigDecimal> credit(String accountId, BigDecimal amount, LedgerMutation.Guard guard) {
+        return publish(LedgerMutation.Kind.APPLY, accountId, amount, guard);
+    }
+
+    public CompletableFuture<BigDecimal> debit(String accountId, BigDecimal amount, LedgerMutation.Guard guard) {
+        return publish(LedgerMutation.Kind.APPLY, accountId, amount.negate(), guard);
+    }
+
+    // used after a balance was written outside the engine
+    public CompletableFuture<BigDecimal> invalidate(String accountId) {
+        return publish(LedgerMutation.Kind.INVALIDATE, accountId, null, null);
+    }
+
+    int partitionOf(String accountId) {
+        return Math.floorMod(accountId.hashCode(), ringBuffers.size());
+    }
+
+    private CompletableFuture<BigDecimal> publish(LedgerMutation.Kind kind, String accountId, BigDecimal delta,
+                                                  LedgerMutation.Guard guard) {
+        CompletableFuture<BigDecimal> result = new CompletableFuture<>();
+        RingBuffer<LedgerMutation> ringBuffer = ringBuffers.get(partitionOf(accountId));
+        boolean published = ringBuffer.tryPublishEvent(
+                (mutation, sequence) -> mutation.set(kind, accountId, delta, guard, result));
+        if (!published) {
+            // never block the caller on a full partition, let it retry later instead
+            result.completeExceptionally(new RetryableException("Ledger partition is saturated"));
+        }
+        return result;
+    }
+
+    private ThreadFactory writerThreadFactory(int partition) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ledger-writer-" + partition + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
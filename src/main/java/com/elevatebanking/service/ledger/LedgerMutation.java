@@ -0,0 +1,45 @@
+package com.elevatebanking.service.ledger;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+// pre-allocated ring buffer slot, reused for every mutation published to a partition
+@Getter
+public class LedgerMutation {
+
+    public enum Kind {
+        APPLY,      // add delta to the balance, a negative delta must not overdraw the account
+        INVALIDATE  // drop the in-memory balance so the next mutation reloads it from the database
+    }
+
+    private Kind kind;
+    private String accountId;
+    private BigDecimal delta;
+    private CompletableFuture<BigDecimal> result;
+    private Guard guard;
+
+    /**
+     * Statement committed in the same database transaction as the mutation. When it changes no row
+     * the mutation is rejected, which lets legs on different partitions coordinate through a table.
+     */
+    public record Guard(String sql, Object... args) {
+    }
+
+    void set(Kind kind, String accountId, BigDecimal delta, Guard guard, CompletableFuture<BigDecimal> result) {
+        this.kind = kind;
+        this.accountId = accountId;
+        this.delta = delta;
+        this.guard = guard;
+        this.result = result;
+    }
+
+    void clear() {
+        this.kind = null;
+        this.accountId = null;
+        this.delta = null;
+        this.guard = null;
+        this.result = null;
+    }
+}
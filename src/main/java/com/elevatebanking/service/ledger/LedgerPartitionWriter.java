@@ -0,0 +1,229 @@
+package com.elevatebanking.service.ledger;
+
+import com.elevatebanking.exception.InsufficientBalanceException;
+import com.elevatebanking.exception.InvalidOperationException;
+import com.elevatebanking.exception.ResourceNotFoundException;
+import com.elevatebanking.exception.RetryableException;
+import com.lmax.disruptor.EventHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single writer for one ledger partition. Only the partition's disruptor thread touches this
+ * object, so the in-memory balances need no locking. Mutations are applied in memory as they
+ * arrive and the net delta per account is group-committed at the end of each disruptor batch,
+ * together with the guard statements of the batch's guarded mutations.
+ */
+@Slf4j
+class LedgerPartitionWriter implements EventHandler<LedgerMutation> {
+
+    private static final String LOAD_BALANCE_SQL = "SELECT balance FROM accounts WHERE id = ?";
+    // the guard keeps the database consistent even if a balance was changed outside the engine
+    private static final String APPLY_DELTA_SQL = "UPDATE accounts SET balance = balance + ?, version = version + 1, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE id = ? AND balance + ? >= 0";
+
+    private final int partition;
+    private final int maxBatchSize;
+    private final int maxCachedAccounts;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, BigDecimal> balances;
+    // balance of each account before the pending batch, the start of a replay when a guard refuses
+    private final Map<String, BigDecimal> batchBases = new HashMap<>();
+    private final List<PendingResult> pendingResults = new ArrayList<>();
+
+    private record PendingResult(String accountId, BigDecimal delta, LedgerMutation.Guard guard,
+                                 BigDecimal balanceAfter, CompletableFuture<BigDecimal> future) {
+    }
+
+    LedgerPartitionWriter(int partition, int maxBatchSize, int maxCachedAccounts,
+                          JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.partition = partition;
+        this.maxBatchSize = maxBatchSize;
+        this.maxCachedAccounts = maxCachedAccounts;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.balances = new LinkedHashMap<>(1024, 0.75f, true);
+    }
+
+    @Override
+    public void onEvent(LedgerMutation mutation, long sequence, boolean endOfBatch) {
+        try {
+            switch (mutation.getKind()) {
+                case APPLY -> apply(mutation.getAccountId(), mutation.getDelta(), mutation.getGuard(), mutation.getResult());
+                case INVALIDATE -> {
+                    flush();
+                    balances.remove(mutation.getAccountId());
+                    mutation.getResult().complete(null);
+                }
+            }
+        } catch (Exception e) {
+            mutation.getResult().completeExceptionally(e);
+        } finally {
+            mutation.clear();
+        }
+
+        if (endOfBatch || pendingResults.size() >= maxBatchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onShutdown() {
+        flush();
+    }
+
+    private void apply(String accountId, BigDecimal delta, LedgerMutation.Guard guard,
+                       CompletableFuture<BigDecimal> future) {
+        BigDecimal current = balances.get(accountId);
+        if (current == null) {
+            current = loadBalance(accountId);
+            balances.put(accountId, current);
+        }
+
+        BigDecimal next = current.add(delta);
+        if (next.signum() < 0) {
+            future.completeExceptionally(new InsufficientBalanceException("Insufficient balance"));
+            return;
+        }
+
+        batchBases.putIfAbsent(accountId, current);
+        balances.put(accountId, next);
+        pendingResults.add(new PendingResult(accountId, delta, guard, next, future));
+    }
+
+    private BigDecimal loadBalance(String accountId) {
+        List<BigDecimal> rows = jdbcTemplate.queryForList(LOAD_BALANCE_SQL, BigDecimal.class, accountId);
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Account not found");
+        }
+        return rows.get(0);
+    }
+
+    private void flush() {
+        if (pendingResults.isEmpty()) {
+            return;
+        }
+
+        List<PendingResult> batch = new ArrayList<>(pendingResults);
+        Set<String> rejected = new HashSet<>();
+        try {
+            // a refused guard rolls the batch back, which is then committed again without its mutation
+            while (!batch.isEmpty()) {
+                List<PendingResult> attempt = batch;
+                List<PendingResult> refused = new ArrayList<>();
+                Set<String> rejectedAccounts = transactionTemplate.execute(status -> {
+                    Set<String> result = commit(attempt, refused);
+                    if (!refused.isEmpty()) {
+                        status.setRollbackOnly();
+                    }
+                    return result;
+                });
+                if (refused.isEmpty()) {
+                    rejected.addAll(rejectedAccounts);
+                    break;
+                }
+                for (PendingResult pending : refused) {
+                    pending.future().completeExceptionally(new InvalidOperationException(
+                            "Ledger mutation of account " + pending.accountId() + " no longer applies"));
+                }
+                batch = replay(batch, refused);
+            }
+        } catch (Exception e) {
+            log.error("Ledger partition {} failed to commit batch of {} mutations: {}",
+                    partition, batch.size(), e.getMessage());
+            batch.forEach(pending -> rejected.add(pending.accountId()));
+        }
+
+        for (PendingResult pending : batch) {
+            if (rejected.contains(pending.accountId())) {
+                pending.future().completeExceptionally(
+                        new RetryableException("Ledger commit rejected for account " + pending.accountId()));
+            } else {
+                pending.future().complete(pending.balanceAfter());
+            }
+        }
+
+        // the in-memory view of a rejected account can no longer be trusted
+        rejected.forEach(balances::remove);
+        if (!rejected.isEmpty()) {
+            log.warn("Ledger partition {} rejected mutations for accounts {}", partition, rejected);
+        }
+
+        batchBases.clear();
+        pendingResults.clear();
+        trimBalances();
+    }
+
+    // runs the guards, then the net delta per account; returns the accounts whose delta was rejected
+    private Set<String> commit(List<PendingResult> batch, List<PendingResult> refused) {
+        for (PendingResult pending : batch) {
+            LedgerMutation.Guard guard = pending.guard();
+            if (guard != null && jdbcTemplate.update(guard.sql(), guard.args()) == 0) {
+                refused.add(pending);
+            }
+        }
+        if (!refused.isEmpty()) {
+            return Set.of();
+        }
+
+        Map<String, BigDecimal> deltas = new LinkedHashMap<>();
+        batch.forEach(pending -> deltas.merge(pending.accountId(), pending.delta(), BigDecimal::add));
+        List<String> accountIds = new ArrayList<>(deltas.keySet());
+        List<Object[]> args = new ArrayList<>(accountIds.size());
+        for (String accountId : accountIds) {
+            BigDecimal delta = deltas.get(accountId);
+            args.add(new Object[]{delta, accountId, delta});
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, args);
+        Set<String> rejected = new HashSet<>();
+        for (int i = 0; i < accountIds.size(); i++) {
+            if (counts[i] == 0) {
+                rejected.add(accountIds.get(i));
+            }
+        }
+        // a guard must never commit without the balance update it belongs to
+        for (PendingResult pending : batch) {
+            if (pending.guard() != null && rejected.contains(pending.accountId())) {
+                throw new RetryableException("Ledger commit rejected for account " + pending.accountId());
+            }
+        }
+        return rejected;
+    }
+
+    // applies the batch again from its base balances without the refused mutations
+    private List<PendingResult> replay(List<PendingResult> batch, List<PendingResult> refused) {
+        Map<String, BigDecimal> running = new HashMap<>(batchBases);
+        List<PendingResult> replayed = new ArrayList<>(batch.size());
+        for (PendingResult pending : batch) {
+            if (refused.contains(pending)) {
+                continue;
+            }
+            BigDecimal next = running.get(pending.accountId()).add(pending.delta());
+            if (next.signum() < 0) {
+                // only allowed by a refused credit earlier in the batch
+                pending.future().completeExceptionally(new InsufficientBalanceException("Insufficient balance"));
+                continue;
+            }
+            running.put(pending.accountId(), next);
+            replayed.add(new PendingResult(pending.accountId(), pending.delta(), pending.guard(), next, pending.future()));
+        }
+        balances.putAll(running);
+        return replayed;
+    }
+
+    private void trimBalances() {
+        Iterator<String> eldest = balances.keySet().iterator();
+        while (balances.size() > maxCachedAccounts && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.elevatebanking.service.ledger;
+
+import com.elevatebanking.dto.accounts.AccountDTOs.BalanceTransferResult;
+import com.elevatebanking.entity.enums.LedgerEntryType;
+import com.elevatebanking.entity.ledger.AccountBalanceSnapshot;
+import com.elevatebanking.entity.ledger.LedgerEntry;
+import com.elevatebanking.entity.transaction.Transaction;
+import com.elevatebanking.exception.InvalidOperationException;
+import com.elevatebanking.repository.AccountBalanceSnapshotRepository;
+import com.elevatebanking.repository.LedgerEntryRepository;
+import com.elevatebanking.service.IAccountService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves money through {@link IAccountService} and appends the matching double-entry rows to
+ * ledger_entries in the same database transaction. The ledger is the record of what actually
+ * happened to a transaction: recovery and compensation check it instead of guessing from balances.
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerPostingService {
+    // counter account of deposits and withdrawals, money entering or leaving the bank
+    public static final String CASH_ACCOUNT_ID = "SYSTEM_CASH";
+
+    private final IAccountService accountService;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final AccountBalanceSnapshotRepository snapshotRepository;
+
+    public BalanceTransferResult postTransfer(Transaction transaction) {
+        String fromAccountId = transaction.getFromAccount().getId();
+        String toAccountId = transaction.getToAccount().getId();
+        BigDecimal amount = transaction.getAmount();
+
+        BalanceTransferResult result = accountService.transferBalance(fromAccountId, toAccountId, amount);
+        appendEntries(transaction, false, List.of(
+                leg(fromAccountId, amount.negate(), result.getFromBalance()),
+                leg(toAccountId, amount, result.getToBalance())));
+        return result;
+    }
+
+    public BigDecimal postDeposit(Transaction transaction) {
+        String accountId = transaction.getToAccount().getId();
+        BigDecimal amount = transaction.getAmount();
+
+        BigDecimal balance = accountService.creditBalance(accountId, amount);
+        appendEntries(transaction, false, List.of(
+                leg(CASH_ACCOUNT_ID, amount.negate(), null),
+                leg(accountId, amount, balance)));
+        return balance;
+    }
+
+    public BigDecimal postWithdrawal(Transaction transaction) {
+        String accountId = transaction.getFromAccount().getId();
+        BigDecimal amount = transaction.getAmount();
+
+        BigDecimal balance = accountService.debitBalance(accountId, amount);
+        appendEntries(transaction, false, List.of(
+                leg(accountId, amount.negate(), balance),
+                leg(CASH_ACCOUNT_ID, amount, null)));
+        return balance;
+    }
+
+    /**
+     * Undoes whatever was posted for the transaction. Returns false when nothing was posted, so
+     * there is no money to move back. Reversing twice fails on the ledger's unique constraint.
+     */
+    public boolean reverse(Transaction transaction) {
+        List<LedgerEntry> posted = ledgerEntryRepository.findByTransactionIdAndReversal(transaction.getId(), false);
+        if (posted.isEmpty()) {
+            log.info("Nothing posted for transaction {}, no reversal needed", transaction.getId());
+            return false;
+        }
+        if (ledgerEntryRepository.existsByTransactionIdAndReversal(transaction.getId(), true)) {
+            throw new InvalidOperationException("Transaction " + transaction.getId() + " is already reversed");
+        }
+
+        // same account order as transferBalance, so a reversal cannot deadlock with a transfer
+        List<LedgerEntry> ordered = new ArrayList<>(posted);
+        ordered.sort(Comparator.comparing(LedgerEntry::getAccountId));
+
+        List<Leg> legs = new ArrayList<>(ordered.size());
+        for (LedgerEntry entry : ordered) {
+            BigDecimal amount = entry.getAmount().negate();
+            BigDecimal balance = null;
+            if (!CASH_ACCOUNT_ID.equals(entry.getAccountId())) {
+                balance = amount.signum() > 0
+                        ? accountService.creditBalance(entry.getAccountId(), amount)
+                        : accountService.debitBalance(entry.getAccountId(), amount.negate());
+            }
+            legs.add(leg(entry.getAccountId(), amount, balance));
+        }
+        appendEntries(transaction, true, legs);
+        log.info("Reversed {} ledger entries of transaction {}", legs.size(), transaction.getId());
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isPosted(String transactionId) {
+        return ledgerEntryRepository.existsByTransactionIdAndReversal(transactionId, false);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isReversed(String transactionId) {
+        return ledgerEntryRepository.existsByTransactionIdAndReversal(transactionId, true);
+    }
+
+    // latest snapshot plus the entries from its cutoff on, an index range scan on (account_id, created_at)
+    @Transactional(readOnly = true)
+    public BigDecimal computeBalance(String accountId) {
+        return snapshotRepository.findTopByAccountIdOrderByCoveredUntilDesc(accountId)
+                .map(snapshot -> snapshot.getBalance()
+                        .add(ledgerEntryRepository.sumAmountsSince(accountId, snapshot.getCoveredUntil())))
+                .orElse(BigDecimal.ZERO);
+    }
+
+    private record Leg(String accountId, BigDecimal amount, BigDecimal balanceAfter) {
+    }
+
+    private Leg leg(String accountId, BigDecimal amount, BigDecimal balanceAfter) {
+        return new Leg(accountId, amount, balanceAfter);
+    }
+
+    private void appendEntries(Transaction transaction, boolean reversal, List<Leg> legs) {
+        List<Leg> ordered = new ArrayList<>(legs);
+        ordered.sort(Comparator.comparing(Leg::accountId));
+
+        List<LedgerEntry> entries = new ArrayList<>(ordered.size());
+        for (Leg leg : ordered) {
+            LedgerEntry entry = new LedgerEntry();
+            entry.setTransactionId(transaction.getId());
+            entry.setAccountId(leg.accountId());
+            entry.setEntryType(leg.amount().signum() < 0 ? LedgerEntryType.DEBIT : LedgerEntryType.CREDIT);
+            entry.setAmount(leg.amount());
+            entry.setBalanceAfter(leg.balanceAfter());
+            entry.setReversal(reversal);
+            if (!CASH_ACCOUNT_ID.equals(leg.accountId())) {
+                ensureOpeningSnapshot(leg);
+            }
+            entries.add(entry);
+        }
+        ledgerEntryRepository.saveAll(entries);
+    }
+
+    private void ensureOpeningSnapshot(Leg leg) {
+        if (snapshotRepository.existsByAccountId(leg.accountId())) {
+            return;
+        }
+        // first entry of the account, anchor the ledger at the balance it had before
+        BigDecimal openingBalance = leg.balanceAfter() != null
+                ? leg.balanceAfter().subtract(leg.amount())
+                : BigDecimal.ZERO;
+        snapshotRepository.insertIfAbsent(UUID.randomUUID().toString(), leg.accountId(),
+                AccountBalanceSnapshot.OPENING, openingBalance);
+    }
+}
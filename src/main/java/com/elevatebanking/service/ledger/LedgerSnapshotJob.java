@@ -0,0 +1,81 @@
+package com.elevatebanking.service.ledger;
+
+import com.elevatebanking.entity.ledger.AccountBalanceSnapshot;
+import com.elevatebanking.repository.AccountBalanceSnapshotRepository;
+import com.elevatebanking.repository.LedgerEntryRepository;
+import com.elevatebanking.service.ledger.config.LedgerSnapshotConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Periodically rolls the ledger entries of recently active accounts into a new balance snapshot,
+ * which keeps the range summed by {@link LedgerPostingService#computeBalance} short. Snapshots are
+ * only an optimization: a missed account is picked up by a later run and its balance stays correct.
+ */
+@Component
+@Slf4j
+public class LedgerSnapshotJob {
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final AccountBalanceSnapshotRepository snapshotRepository;
+    private final LedgerSnapshotConfig config;
+    private final TransactionTemplate transactionTemplate;
+
+    private LocalDateTime lastCutoff;
+
+    public LedgerSnapshotJob(LedgerEntryRepository ledgerEntryRepository,
+                             AccountBalanceSnapshotRepository snapshotRepository,
+                             LedgerSnapshotConfig config, PlatformTransactionManager transactionManager) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.config = config;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.snapshot.interval:PT5M}")
+    public void takeSnapshots() {
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(config.getSettleDelay());
+        LocalDateTime since = lastCutoff == null
+                ? cutoff.minus(config.getInitialLookback())
+                : lastCutoff.minus(config.getOverlap());
+
+        try {
+            List<String> accountIds = ledgerEntryRepository.findAccountIdsWithEntriesSince(
+                    since, LedgerPostingService.CASH_ACCOUNT_ID);
+            int snapshots = 0;
+            for (int from = 0; from < accountIds.size(); from += config.getAccountsPerChunk()) {
+                List<String> chunk = accountIds.subList(from, Math.min(from + config.getAccountsPerChunk(), accountIds.size()));
+                Integer taken = transactionTemplate.execute(status -> snapshotChunk(chunk, cutoff));
+                snapshots += taken != null ? taken : 0;
+            }
+            lastCutoff = cutoff;
+            log.info("Ledger snapshot run took {} snapshots for {} active accounts", snapshots, accountIds.size());
+        } catch (Exception e) {
+            log.error("Ledger snapshot run failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private int snapshotChunk(List<String> accountIds, LocalDateTime cutoff) {
+        List<AccountBalanceSnapshot> snapshots = new ArrayList<>();
+        for (Object[] row : snapshotRepository.findDeltasSinceLatestSnapshot(accountIds, cutoff)) {
+            String accountId = (String) row[0];
+            BigDecimal balance = (BigDecimal) row[2];
+            BigDecimal delta = (BigDecimal) row[3];
+            snapshots.add(new AccountBalanceSnapshot(accountId, cutoff, balance.add(delta)));
+        }
+        // a concurrent run on another node takes its own cutoff, both snapshots are correct
+        snapshotRepository.saveAll(snapshots);
+        return snapshots.size();
+    }
+}
@@ -0,0 +1,90 @@
+package com.elevatebanking.service.ledger;
+
+import com.elevatebanking.entity.enums.LedgerTransferState;
+import com.elevatebanking.service.ledger.config.LedgerEngineConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Finishes ledger engine transfers that were left half done: debited but never credited, credited
+ * (or, for a single-leg deposit or withdrawal, applied) for a caller transaction that rolled back,
+ * or stopped in the middle of an unwind. Every step is
+ * guarded by the transfer's state, so a step racing a late leg or another node is simply rejected
+ * and a failed step is tried again by the next run.
+ */
+@Component
+@ConditionalOnProperty(prefix = "ledger.engine", name = "enabled", havingValue = "true")
+@Slf4j
+public class LedgerTransferRecovery {
+    // rows locked by a caller transaction that has not committed yet are skipped, not waited for
+    private static final String STALE_SQL = "SELECT transfer_id, from_account_id, to_account_id, amount, state " +
+            "FROM ledger_transfers WHERE (state IN ('DEBITED', 'UNWINDING') OR (state = 'CREDITED' AND NOT confirmed)) " +
+            "AND updated_at < ? ORDER BY updated_at LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String PURGE_SQL = "DELETE FROM ledger_transfers WHERE (state = 'REVERSED' " +
+            "OR (state = 'CREDITED' AND confirmed)) AND updated_at < ?";
+
+    private final LedgerAccountService ledgerAccountService;
+    private final LedgerEngineConfig config;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private record StaleTransfer(String id, String fromAccountId, String toAccountId, BigDecimal amount,
+                                 LedgerTransferState state) {
+    }
+
+    public LedgerTransferRecovery(LedgerAccountService ledgerAccountService, LedgerEngineConfig config,
+                                  JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.ledgerAccountService = ledgerAccountService;
+        this.config = config;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.engine.recovery-interval:PT30S}")
+    public void recover() {
+        Timestamp staleBefore = Timestamp.valueOf(LocalDateTime.now().minus(config.getRecoveryStaleAfter()));
+        List<StaleTransfer> stale = transactionTemplate.execute(status -> jdbcTemplate.query(STALE_SQL,
+                (rs, row) -> new StaleTransfer(rs.getString(1), rs.getString(2), rs.getString(3),
+                        rs.getBigDecimal(4), LedgerTransferState.valueOf(rs.getString(5))),
+                staleBefore, config.getRecoveryBatchSize()));
+        if (stale == null || stale.isEmpty()) {
+            return;
+        }
+
+        int recovered = 0;
+        for (StaleTransfer transfer : stale) {
+            try {
+                if (transfer.state() == LedgerTransferState.DEBITED) {
+                    ledgerAccountService.reverseDebit(transfer.id(), transfer.fromAccountId(), transfer.amount());
+                } else {
+                    ledgerAccountService.unwind(transfer.id(), transfer.fromAccountId(), transfer.toAccountId(),
+                            transfer.amount(), transfer.state());
+                }
+                recovered++;
+            } catch (RuntimeException e) {
+                log.error("Could not recover {} transfer {}, retrying next run: {}",
+                        transfer.state(), transfer.id(), e.getMessage());
+            }
+        }
+        log.warn("Recovered {} of {} half done ledger transfers", recovered, stale.size());
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.engine.transfer-purge-interval:PT1H}")
+    public void purge() {
+        Timestamp before = Timestamp.valueOf(LocalDateTime.now().minus(config.getTransferRetention()));
+        int purged = jdbcTemplate.update(PURGE_SQL, before);
+        if (purged > 0) {
+            log.info("Purged {} finished ledger transfers older than {}", purged, before);
+        }
+    }
+}
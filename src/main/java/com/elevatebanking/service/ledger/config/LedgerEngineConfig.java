@@ -0,0 +1,29 @@
+package com.elevatebanking.service.ledger.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "ledger.engine")
+@Data
+public class LedgerEngineConfig {
+    // when enabled, balance mutations behind IAccountService go through the partitioned ledger engine
+    private boolean enabled = false;
+    private int partitions = 8;
+    // must be a power of two
+    private int ringBufferSize = 4096;
+    private int maxBatchSize = 256;
+    private int maxCachedAccounts = 100_000;
+    private long submitTimeoutMs = 5000;
+    // how often half done transfers are looked for, read by the @Scheduled trigger
+    private Duration recoveryInterval = Duration.ofSeconds(30);
+    // a transfer untouched for this long is no longer in flight; well above the submit timeout
+    private Duration recoveryStaleAfter = Duration.ofMinutes(2);
+    private int recoveryBatchSize = 100;
+    // finished transfers are deleted after this
+    private Duration transferRetention = Duration.ofDays(7);
+    private Duration transferPurgeInterval = Duration.ofHours(1);
+}
@@ -0,0 +1,24 @@
+package com.elevatebanking.service.ledger.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "ledger.snapshot")
+@Data
+public class LedgerSnapshotConfig {
+    private boolean enabled = true;
+    // delay between two snapshot runs, read by the @Scheduled trigger
+    private Duration interval = Duration.ofMinutes(5);
+    // entries younger than this are left to the next run; must outlast the longest posting transaction
+    // plus clock skew between nodes, or an entry could commit behind a snapshot that already covers its time
+    private Duration settleDelay = Duration.ofMinutes(2);
+    // overlap with the previous run so entries committed while it ran are not missed
+    private Duration overlap = Duration.ofMinutes(1);
+    // how far back the first run after startup looks for active accounts
+    private Duration initialLookback = Duration.ofDays(1);
+    private int accountsPerChunk = 1000;
+}
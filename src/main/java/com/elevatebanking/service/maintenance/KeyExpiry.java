@@ -0,0 +1,16 @@
+package com.elevatebanking.service.maintenance;
+
+/**
+ * A key found by a maintenance scan with its remaining time to live as PTTL reports it.
+ */
+public record KeyExpiry(String key, long ttlMillis) {
+
+    public boolean exists() {
+        return ttlMillis != -2;
+    }
+
+    // written without an expiry, such a key stays until something deletes it
+    public boolean isPersistent() {
+        return ttlMillis == -1;
+    }
+}
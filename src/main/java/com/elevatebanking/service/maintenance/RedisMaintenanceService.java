@@ -0,0 +1,145 @@
+package com.elevatebanking.service.maintenance;
+
+import com.elevatebanking.service.maintenance.config.RedisMaintenanceConfig;
+import com.elevatebanking.service.transaction.config.TransactionLockManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs the {@link RedisMaintenanceTask}s. Keys are walked with SCAN in batches, the TTLs of a batch
+ * are read in one pipeline and the keys a task picks are deleted with UNLINK, so no command blocks
+ * Redis the way KEYS does on a large keyspace.
+ * <p>
+ * A run looks at no more keys per task than the budget, a scan that is not finished stays open and
+ * the next run continues it. Each task runs on a single node at a time, the one holding its lock.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RedisMaintenanceService {
+    private static final String LOCK_PREFIX = "maintenance:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TransactionLockManager lockManager;
+    private final RedisMaintenanceConfig config;
+    private final List<RedisMaintenanceTask> tasks;
+    private final MeterRegistry meterRegistry;
+
+    // scans that ran out of budget, by task name
+    private final Map<String, Cursor<String>> cursors = new ConcurrentHashMap<>();
+
+    @Scheduled(fixedDelayString = "${redis-maintenance.interval:PT5M}")
+    public void runTasks() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (RedisMaintenanceTask task : tasks) {
+            try {
+                run(task);
+            } catch (Exception e) {
+                closeCursor(task.name());
+                log.error("Redis maintenance task {} failed: {}", task.name(), e.getMessage(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cursors.keySet().forEach(this::closeCursor);
+    }
+
+    private void run(RedisMaintenanceTask task) {
+        Optional<TransactionLockManager.Lease> held = lockManager.tryAcquire(LOCK_PREFIX + task.name(), Duration.ZERO);
+        if (held.isEmpty()) {
+            // another node has the task now, start over if it comes back here
+            closeCursor(task.name());
+            return;
+        }
+
+        try (TransactionLockManager.Lease lease = held.get()) {
+            Cursor<String> cursor = cursors.computeIfAbsent(task.name(), name -> redisTemplate.scan(
+                    ScanOptions.scanOptions().match(task.pattern()).count(config.getBatchSize()).build()));
+
+            int scanned = 0;
+            int deleted = 0;
+            List<String> keys = new ArrayList<>(config.getBatchSize());
+            while (scanned < config.getBudget() && lease.isValid() && cursor.hasNext()) {
+                keys.add(cursor.next());
+                scanned++;
+                if (keys.size() == config.getBatchSize()) {
+                    deleted += clean(task, keys);
+                    keys.clear();
+                }
+            }
+            deleted += clean(task, keys);
+
+            boolean finished = !cursor.hasNext();
+            if (finished) {
+                closeCursor(task.name());
+            }
+            keyCounter(task, "scanned").increment(scanned);
+            keyCounter(task, "deleted").increment(deleted);
+            log.debug("Redis maintenance task {} scanned {} keys and deleted {}{}",
+                    task.name(), scanned, deleted, finished ? "" : ", continuing next run");
+        }
+    }
+
+    private int clean(RedisMaintenanceTask task, List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        List<Object> ttls = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.keyCommands().pTtl(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        List<KeyExpiry> batch = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            batch.add(new KeyExpiry(keys.get(i), ((Number) ttls.get(i)).longValue()));
+        }
+        List<String> selected = task.selectForDeletion(batch);
+        if (selected.isEmpty()) {
+            return 0;
+        }
+        Long unlinked = redisTemplate.unlink(selected);
+        return unlinked != null ? unlinked.intValue() : 0;
+    }
+
+    private void closeCursor(String taskName) {
+        Cursor<String> cursor = cursors.remove(taskName);
+        if (cursor != null) {
+            try {
+                cursor.close();
+            } catch (Exception e) {
+                log.debug("Could not close scan of task {}: {}", taskName, e.getMessage());
+            }
+        }
+    }
+
+    private Counter keyCounter(RedisMaintenanceTask task, String outcome) {
+        return Counter.builder("redis.maintenance.keys")
+                .description("Keys looked at and deleted by Redis maintenance tasks")
+                .tag("task", task.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,20 @@
+package com.elevatebanking.service.maintenance;
+
+import java.util.List;
+
+/**
+ * A periodic cleanup of the Redis keys matching a pattern, run by {@link RedisMaintenanceService}.
+ */
+public interface RedisMaintenanceTask {
+
+    // also names the lock that keeps the task on one node
+    String name();
+
+    // SCAN match pattern
+    String pattern();
+
+    /**
+     * Picks the keys of a scanned batch to delete.
+     */
+    List<String> selectForDeletion(List<KeyExpiry> batch);
+}
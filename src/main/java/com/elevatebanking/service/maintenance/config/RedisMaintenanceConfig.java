@@ -0,0 +1,19 @@
+package com.elevatebanking.service.maintenance.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "redis-maintenance")
+@Data
+public class RedisMaintenanceConfig {
+    private boolean enabled = true;
+    private Duration interval = Duration.ofMinutes(5);
+    // SCAN count hint, also the number of TTLs read in one pipeline
+    private int batchSize = 500;
+    // keys one task may look at per run, the next run continues where it stopped
+    private int budget = 20000;
+}
@@ -0,0 +1,225 @@
+package com.elevatebanking.service.outbox;
+
+import com.elevatebanking.entity.log.EventLog;
+import com.elevatebanking.event.TransactionEvent;
+import com.elevatebanking.repository.EventLogRepository;
+import com.elevatebanking.service.outbox.config.OutboxConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains event_logs into Kafka. A batch claims the oldest publishable rows in a short database
+ * transaction, marking them IN_FLIGHT under its own owner id, so several nodes relay side by side
+ * without taking the same rows. It sends them outside of any database transaction, all before waiting
+ * on an acknowledgement, and records the outcome in a second one. A row is only claimed once no
+ * earlier row of its key is left to send, which keeps the order of a key's events.
+ * <p>
+ * Rows are only marked processed once the broker has them. Rows of a relay that dies in between
+ * are released after the in-flight timeout and published again, consumers drop the duplicates by
+ * event id.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+    private static final int PURGE_CHUNK = 1000;
+
+    private final OutboxConfig config;
+    private final TransactionOutbox outbox;
+    private final EventLogRepository eventLogRepository;
+    private final KafkaTemplate<String, TransactionEvent> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private int failedBatches;
+    private long pausedUntil;
+
+    public OutboxRelay(OutboxConfig config, TransactionOutbox outbox, EventLogRepository eventLogRepository,
+                       KafkaTemplate<String, TransactionEvent> kafkaTemplate, TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry) {
+        this.config = config;
+        this.outbox = outbox;
+        this.eventLogRepository = eventLogRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:PT0.2S}")
+    public void relay() {
+        if (!config.isEnabled() || System.currentTimeMillis() < pausedUntil) {
+            return;
+        }
+        for (int run = 0; run < config.getMaxBatchesPerRun(); run++) {
+            Batch batch = relayBatch();
+            if (batch.failed() > 0) {
+                backOff();
+                return;
+            }
+            failedBatches = 0;
+            if (batch.claimed() < config.getBatchSize()) {
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.release-interval:PT30S}")
+    public void releaseInFlight() {
+        LocalDateTime before = LocalDateTime.now().minus(config.getInFlightTimeout());
+        Integer released = transactionTemplate.execute(status -> eventLogRepository.releaseInFlight(before));
+        if (released != null && released > 0) {
+            log.warn("Released {} outbox events claimed before {} without a result", released, before);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.purge-interval:PT1H}")
+    public void purge() {
+        LocalDateTime before = LocalDateTime.now().minus(config.getRetention());
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> eventLogRepository.deleteProcessedBefore(before, PURGE_CHUNK));
+            purged += deleted;
+        } while (deleted == PURGE_CHUNK);
+        if (purged > 0) {
+            log.info("Purged {} relayed outbox events older than {}", purged, before);
+        }
+    }
+
+    private Batch relayBatch() {
+        String owner = UUID.randomUUID().toString();
+        List<EventLog> rows = transactionTemplate.execute(status -> {
+            List<EventLog> locked = eventLogRepository.lockPublishable(config.getBatchSize());
+            if (!locked.isEmpty()) {
+                eventLogRepository.markInFlight(locked.stream().map(EventLog::getId).toList(), owner);
+            }
+            return locked;
+        });
+        if (rows.isEmpty()) {
+            return new Batch(0, 0, 0);
+        }
+
+        List<EventLog> sendable = new ArrayList<>(rows.size());
+        List<TransactionEvent> events = new ArrayList<>(rows.size());
+        List<String> failed = new ArrayList<>();
+        for (EventLog row : rows) {
+            try {
+                events.add(outbox.decode(row));
+                sendable.add(row);
+            } catch (Exception e) {
+                log.error("Cannot decode outbox event {}: {}", row.getId(), e.getMessage());
+                failed.add(row.getId());
+            }
+        }
+
+        List<String> published = kafkaTemplate.isTransactional()
+                ? publishTransactional(sendable, events)
+                : publishAsync(sendable, events);
+        Set<String> acknowledged = new HashSet<>(published);
+        for (EventLog row : sendable) {
+            if (!acknowledged.contains(row.getId())) {
+                failed.add(row.getId());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!published.isEmpty()) {
+                eventLogRepository.markProcessed(published, owner);
+            }
+            if (!failed.isEmpty()) {
+                eventLogRepository.markAttemptFailed(failed, config.getMaxAttempts(), owner);
+            }
+        });
+        if (!failed.isEmpty()) {
+            log.warn("Could not relay {} of {} outbox events", failed.size(), rows.size());
+        }
+        count("published", published.size());
+        count("failed", failed.size());
+        return new Batch(rows.size(), published.size(), failed.size());
+    }
+
+    // one kafka transaction per batch, committed before the rows are marked so consumers see all or none
+    private List<String> publishTransactional(List<EventLog> rows, List<TransactionEvent> events) {
+        try {
+            kafkaTemplate.executeInTransaction(operations -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    operations.send(rows.get(i).getTopic(), rows.get(i).getMessageKey(), events.get(i));
+                }
+                return null;
+            });
+            return rows.stream().map(EventLog::getId).toList();
+        } catch (Exception e) {
+            log.error("Outbox batch of {} events was not committed to kafka: {}", rows.size(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    private List<String> publishAsync(List<EventLog> rows, List<TransactionEvent> events) {
+        List<CompletableFuture<SendResult<String, TransactionEvent>>> futures = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                futures.add(kafkaTemplate.send(rows.get(i).getTopic(), rows.get(i).getMessageKey(), events.get(i)));
+            } catch (Exception e) {
+                futures.add(CompletableFuture.failedFuture(e));
+            }
+        }
+
+        long deadline = System.nanoTime() + config.getSendTimeout().toNanos();
+        List<String> published = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                futures.get(i).get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                published.add(rows.get(i).getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                // still unacknowledged ones go out again with the next attempt
+                log.debug("Outbox event {} not acknowledged: {}", rows.get(i).getId(), e.getMessage());
+            }
+        }
+        return published;
+    }
+
+    // doubles the pause per failed batch in a row, so a broker outage is not hammered every poll
+    private void backOff() {
+        Duration pause = config.getBackoff().multipliedBy(1L << Math.min(failedBatches, 20));
+        if (pause.compareTo(config.getMaxBackoff()) > 0) {
+            pause = config.getMaxBackoff();
+        }
+        failedBatches++;
+        pausedUntil = System.currentTimeMillis() + pause.toMillis();
+        log.warn("Pausing the outbox relay for {}", pause);
+    }
+
+    private void count(String outcome, int events) {
+        if (events == 0) {
+            return;
+        }
+        Counter.builder("outbox.events.relayed")
+                .description("Outbox events handed to kafka, failed ones are retried up to the max attempts")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(events);
+    }
+
+    private record Batch(int claimed, int published, int failed) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.elevatebanking.service.outbox;
+
+import com.elevatebanking.entity.log.EventLog;
+import com.elevatebanking.event.TransactionEvent;
+import com.elevatebanking.repository.EventLogRepository;
+import com.elevatebanking.service.outbox.config.OutboxConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes transaction events to event_logs instead of sending them, so an event exists exactly when
+ * the database work that raised it committed. {@link OutboxRelay} publishes the rows afterwards.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionOutbox {
+    private static final String INSERT = "INSERT INTO event_logs (event_id, topic, message_key, event_type, " +
+            "payload, status, retry_count, created_at) VALUES (?, ?, ?, ?, ?::jsonb, 'PENDING', 0, ?)";
+
+    private final EventLogRepository eventLogRepository;
+    private final OutboxConfig config;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    // joins the caller's transaction, outside of one the row is committed on its own
+    @Transactional
+    public void enqueue(String topic, String key, TransactionEvent event) {
+        EventLog row = new EventLog();
+        row.setTopic(topic);
+        row.setMessageKey(key);
+        row.setEventType(event.getEventType());
+        row.setPayload(serialize(event));
+        eventLogRepository.save(row);
+    }
+
+    /**
+     * Writes the events in JDBC batches, keyed by transaction id, without keeping an entity per row in
+     * the persistence context. Must run in the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(String topic, Collection<TransactionEvent> events) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (TransactionEvent event : events) {
+            rows.add(new Object[]{UUID.randomUUID().toString(), topic, event.getTransactionId(),
+                    event.getEventType(), serialize(event), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    TransactionEvent decode(EventLog row) throws JsonProcessingException {
+        return objectMapper.readValue(row.getPayload(), TransactionEvent.class);
+    }
+
+    private String serialize(TransactionEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize transaction event " + event.getEventId(), e);
+        }
+    }
+}
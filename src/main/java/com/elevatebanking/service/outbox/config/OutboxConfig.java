@@ -0,0 +1,33 @@
+package com.elevatebanking.service.outbox.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "outbox")
+@Data
+public class OutboxConfig {
+    // false sends transaction events straight to kafka after commit, as before the outbox
+    private boolean enabled = true;
+    private Duration pollInterval = Duration.ofMillis(200);
+    // rows claimed and published per batch
+    private int batchSize = 500;
+    // a run stops after this many full batches and lets the next run continue
+    private int maxBatchesPerRun = 20;
+    // how long a batch may wait for the broker's acknowledgements
+    private Duration sendTimeout = Duration.ofSeconds(30);
+    // claimed rows whose batch did not record a result by then are released, well above the send timeout
+    private Duration inFlightTimeout = Duration.ofMinutes(2);
+    private Duration releaseInterval = Duration.ofSeconds(30);
+    // attempts before a row is left FAILED for manual inspection
+    private int maxAttempts = 5;
+    // pause after a failed batch, doubled per failed batch in a row
+    private Duration backoff = Duration.ofSeconds(1);
+    private Duration maxBackoff = Duration.ofMinutes(1);
+    // processed rows are deleted after this
+    private Duration retention = Duration.ofDays(3);
+    private Duration purgeInterval = Duration.ofHours(1);
+}
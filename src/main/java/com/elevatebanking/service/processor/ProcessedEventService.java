@@ -0,0 +1,59 @@
+package com.elevatebanking.service.processor;
+
+import com.elevatebanking.repository.ProcessedEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Remembers which consumed events already ran their database side. The row is written in the
+ * database transaction of that work, so a redelivery after a crash or a rebalance finds it if and
+ * only if the work committed.
+ */
+@Service
+@Slf4j
+public class ProcessedEventService {
+    private static final int PURGE_CHUNK = 1000;
+
+    private final ProcessedEventRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+
+    public ProcessedEventService(ProcessedEventRepository repository, TransactionTemplate transactionTemplate,
+                                 @Value("${transaction.events.dedupe.retention:7d}") Duration retention) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.retention = retention;
+    }
+
+    /**
+     * Records the event in the current transaction, false if an earlier delivery already did. Events
+     * without an id cannot be told apart and always run.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claim(String eventId) {
+        return eventId == null || repository.insertIfAbsent(eventId) == 1;
+    }
+
+    // events expire long before the retention, a redelivery older than that is rejected anyway
+    @Scheduled(fixedDelayString = "${transaction.events.dedupe.purge-interval:PT1H}")
+    public void purge() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> repository.deleteProcessedBefore(before, PURGE_CHUNK));
+            purged += deleted;
+        } while (deleted == PURGE_CHUNK);
+        if (purged > 0) {
+            log.info("Purged {} processed event records older than {}", purged, before);
+        }
+    }
+}
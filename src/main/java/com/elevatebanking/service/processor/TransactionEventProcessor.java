@@ -1,48 +1,126 @@
 package com.elevatebanking.service.processor;
 
+import com.elevatebanking.config.kafka.KafkaConfig;
 import com.elevatebanking.entity.account.Account;
 import com.elevatebanking.entity.enums.TransactionStatus;
 import com.elevatebanking.entity.enums.TransactionType;
 import com.elevatebanking.entity.transaction.Transaction;
 import com.elevatebanking.event.NotificationEvent;
 import com.elevatebanking.event.TransactionEvent;
-import com.elevatebanking.exception.InvalidOperationException;
 import com.elevatebanking.exception.NonRetryableException;
 import com.elevatebanking.exception.ResourceNotFoundException;
+import com.elevatebanking.repository.AccountRepository;
 import com.elevatebanking.repository.TransactionRepository;
-import com.elevatebanking.service.IAccountService;
 import com.elevatebanking.service.ITransactionService;
+import com.elevatebanking.service.ledger.LedgerPostingService;
+import com.elevatebanking.service.retry.TransactionRetryScheduler;
+import com.elevatebanking.service.transaction.TransactionStateMachine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.MDC;
+import org.springframework.core.log.LogAccessor;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
 import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.serializer.SerializationUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransactionEventProcessor {
     private final ITransactionService transactionService;
-    private final IAccountService accountService;
+    private final LedgerPostingService ledgerPostingService;
+    private final TransactionStateMachine stateMachine;
+    private final TransactionRetryScheduler retryScheduler;
+    private final ProcessedEventService processedEvents;
     private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
     private final KafkaTemplate<String, TransactionEvent> kafkaTemplate;
     private final KafkaTemplate<String, NotificationEvent> notificationEventKafkaTemplate;
+    private final ConsumerRecordRecoverer deadLetters;
 
     private static final int MAX_RETRY_ATTEMPTS = 3;
     private static final String MAIN_TOPIC = "${spring.kafka.topics.transaction}";
     private static final String RETRY_TOPIC = "elevate.transactions.retry";
     private static final String DLQ_TOPIC = "elevate.transactions.dlq";
+    private static final String BATCH_ENABLED = "${transaction.events.batch.enabled:true}";
+    private static final LogAccessor LOG_ACCESSOR = new LogAccessor(TransactionEventProcessor.class);
+
+    // records of a batch are acknowledged together once all of them are handled
+    private static final Acknowledgment BATCH_ACK = () -> {
+    };
+
+    /**
+     * Applies a whole poll in one database transaction. The transactions and accounts of the batch are
+     * loaded up front with one query each, so their updates are flushed together at commit instead of
+     * one round trip per record. Events are applied in partition order; if any of them fails the batch
+     * rolls back and its records are processed one by one, as the single record listener would.
+     * Records that could not be deserialized are sent to the dead letter topic as they were.
+     */
+    @KafkaListener(
+            topics = MAIN_TOPIC,
+            groupId = "${spring.kafka.consumer.groups.transaction}",
+            containerFactory = "transactionBatchKafkaListenerContainerFactory",
+            autoStartup = BATCH_ENABLED
+    )
+    public void processTransactionEvents(List<ConsumerRecord<String, TransactionEvent>> records, Acknowledgment ack) {
+        List<TransactionEvent> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, TransactionEvent> record : records.stream()
+                .sorted(Comparator.<ConsumerRecord<String, TransactionEvent>>comparingInt(ConsumerRecord::partition)
+                        .thenComparingLong(ConsumerRecord::offset))
+                .toList()) {
+            if (KafkaConfig.isUnreadable(record)) {
+                // it would fail on every delivery, it is in the dead letter topic before the batch is acknowledged
+                deadLetters.accept(record, SerializationUtils.getExceptionFromHeader(record,
+                        SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR));
+            } else if (record.value() != null) {
+                events.add(record.value());
+            }
+        }
+        log.debug("Processing batch of {} transaction events", events.size());
+
+        List<TransactionEvent> applied;
+        List<String> republish = new ArrayList<>();
+        try {
+            applied = transactionTemplate.execute(status -> applyBatch(events, republish));
+        } catch (Exception e) {
+            log.warn("Batch of {} transaction events failed, processing them one by one: {}",
+                    events.size(), e.getMessage());
+            batchCounter("fallback").increment();
+            events.forEach(event -> processTransactionEvent(event, BATCH_ACK));
+            ack.acknowledge();
+            return;
+        }
+        batchCounter("applied").increment();
+        republish.forEach(stateMachine::republish);
+        applied.forEach(this::sendStatusNotification);
+        ack.acknowledge();
+    }
 
     @KafkaListener(
             topics = MAIN_TOPIC,
             groupId = "${spring.kafka.consumer.groups.transaction}",
-            containerFactory = "transactionKafkaListenerContainerFactory"
+            containerFactory = "transactionKafkaListenerContainerFactory",
+            autoStartup = "#{!" + BATCH_ENABLED + "}"
     )
     public void processTransactionEvent(TransactionEvent event, Acknowledgment ack) {
         MDC.put("transactionId", event.getTransactionId());
@@ -77,8 +155,9 @@ public class TransactionEventProcessor {
     public void processRetryEvent(TransactionEvent event, Acknowledgment ack) {
         log.info("Processing retry event: {}", event);
 
+        // only early when clocks disagree, the scheduler holds it back instead of re-publishing it at once
         if (event.getNextRetryAt() != null && LocalDateTime.now().isBefore(event.getNextRetryAt())) {
-            sendToRetryTopic(event);
+            scheduleRetry(event);
             ack.acknowledge();
             return;
         }
@@ -102,6 +181,80 @@ public class TransactionEventProcessor {
         }
     }
 
+    // returns the completed and failed events, their notifications go out once the batch committed
+    private List<TransactionEvent> applyBatch(List<TransactionEvent> events, List<String> republish) {
+        events.forEach(this::validateEvent);
+        Map<String, Transaction> transactions = transactionRepository.findAllById(events.stream()
+                        .map(TransactionEvent::getTransactionId)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Transaction::getId, Function.identity()));
+
+        // loaded into the persistence context, settling and building events no longer load them one by one
+        Set<String> accountIds = new HashSet<>();
+        for (Transaction transaction : transactions.values()) {
+            if (transaction.getFromAccount() != null) {
+                accountIds.add(transaction.getFromAccount().getId());
+            }
+            if (transaction.getToAccount() != null) {
+                accountIds.add(transaction.getToAccount().getId());
+            }
+        }
+        List<Account> accounts = accountIds.isEmpty() ? List.of() : accountRepository.findAllWithUserByIdIn(accountIds);
+        log.debug("Loaded {} transactions and {} accounts for batch", transactions.size(), accounts.size());
+
+        List<TransactionEvent> notify = new ArrayList<>();
+        Set<String> settledHere = new HashSet<>();
+        for (TransactionEvent event : events) {
+            Transaction transaction = transactions.get(event.getTransactionId());
+            if (transaction == null) {
+                throw new ResourceNotFoundException("Transaction not found: " + event.getTransactionId());
+            }
+            switch (event.getEventType()) {
+                case "transaction.initiated" -> {
+                    if (transaction.getStatus() == TransactionStatus.PENDING && processedEvents.claim(event.getEventId())) {
+                        stateMachine.settle(transaction);
+                        settledHere.add(transaction.getId());
+                    } else if (!settledHere.contains(transaction.getId())) {
+                        // settled by an earlier delivery, whose event may not have gone out
+                        log.warn("Transaction is not pending or its event was processed: {}", transaction.getId());
+                        republish.add(transaction.getId());
+                    }
+                }
+                case "transaction.completed" -> {
+                    stateMachine.transition(transaction, TransactionStatus.COMPLETED, null);
+                    notify.add(event);
+                }
+                case "transaction.failed" -> {
+                    stateMachine.transition(transaction, TransactionStatus.FAILED, null);
+                    notify.add(event);
+                }
+                default -> log.warn("Unknown event type: {}", event.getEventType());
+            }
+        }
+        return notify;
+    }
+
+    private void sendStatusNotification(TransactionEvent event) {
+        try {
+            if ("transaction.completed".equals(event.getEventType())) {
+                sendNotificationEvent(event, buildCompletedMessage(event));
+            } else {
+                sendFailureNotification(event);
+            }
+        } catch (Exception e) {
+            // the batch is committed, a lost notification must not process it again
+            log.error("Error sending notification for {}: {}", event.getTransactionId(), e.getMessage());
+        }
+    }
+
+    private Counter batchCounter(String outcome) {
+        return Counter.builder("transaction.events.batches")
+                .description("Batches of transaction events, fallback ones were processed record by record")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     private void handleTransactionInitiated(TransactionEvent event) {
         log.info("Handling transaction initiated event: {}", event.getTransactionId());
 
@@ -112,41 +265,38 @@ public class TransactionEventProcessor {
             // validate transaction status
             if (transaction.getStatus() != TransactionStatus.PENDING) {
                 log.warn("Transaction is not pending: {}", transaction.getId());
+                stateMachine.republish(transaction.getId());
                 return;
             }
 
-            // process based on transaction type
-            switch (transaction.getType()) {
-                case TRANSFER:
-                    processTransferTransaction(transaction, event);
-                    break;
-                case DEPOSIT:
-                    processDepositTransaction(transaction, event);
-                    break;
-                case WITHDRAWAL:
-                    processWithdrawalTransaction(transaction, event);
-                    break;
-                default:
-                    log.error("Unknown transaction type: {}", transaction.getType());
-                    throw new InvalidOperationException("Unknown transaction type: " + transaction.getType());
+            // money moves, the completion and the event's dedupe row are recorded in one database transaction
+            Boolean settled = transactionTemplate.execute(status -> {
+                if (!processedEvents.claim(event.getEventId())) {
+                    return false;
+                }
+                stateMachine.settle(transaction);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(settled)) {
+                log.warn("Transaction event was already processed: {}", event.getEventId());
+                stateMachine.republish(transaction.getId());
             }
         } catch (Exception e) {
             log.error("Error handling transaction initiated event: {}", e.getMessage());
-            event.setStatus(TransactionStatus.FAILED);
-            kafkaTemplate.send("elevate.transaction", "transaction.failed", event);
+            updateTransactionStatus(event.getTransactionId(), TransactionStatus.FAILED, "transaction.failed");
         }
 
     }
 
     private void handleTransactionCompleted(TransactionEvent event) {
         log.info("Handling transaction completed event: {}", event.getTransactionId());
-        updateTransactionStatus(event.getTransactionId(), TransactionStatus.COMPLETED);
+        updateTransactionStatus(event.getTransactionId(), TransactionStatus.COMPLETED, null);
         sendNotificationEvent(event, buildCompletedMessage(event));
     }
 
     private void handleTransactionFailed(TransactionEvent event) {
         log.info("Handling transaction failed event: {}", event.getTransactionId());
-        updateTransactionStatus(event.getTransactionId(), TransactionStatus.FAILED);
+        updateTransactionStatus(event.getTransactionId(), TransactionStatus.FAILED, null);
         sendFailureNotification(event);
     }
 
@@ -172,52 +322,6 @@ public class TransactionEventProcessor {
 //        ack.acknowledge();
     }
 
-    private void processTransferTransaction(Transaction transaction, TransactionEvent event) {
-
-        // validate accounts
-        Account fromAccount = accountService.getAccountById(transaction.getFromAccount().getId()).get();
-        Account toAccount = accountService.getAccountById(transaction.getToAccount().getId()).get();
-
-        // update balances
-        BigDecimal newFromBalance = fromAccount.getBalance().subtract(transaction.getAmount());
-        BigDecimal newToBalance = toAccount.getBalance().add(transaction.getAmount());
-
-        // update accounts
-        accountService.updateBalance(fromAccount.getId(), newFromBalance);
-        accountService.updateBalance(toAccount.getId(), newToBalance);
-
-        // update event with new status
-        event.setStatus(TransactionStatus.COMPLETED);
-        event.updateBalances(newFromBalance, newToBalance);
-
-        // send completion event
-        kafkaTemplate.send(MAIN_TOPIC, "transaction.completed", event);
-    }
-
-    private void processDepositTransaction(Transaction transaction, TransactionEvent event) {
-        Account account = accountService.getAccountById(transaction.getToAccount().getId()).get();
-        BigDecimal newBalance = account.getBalance().add(transaction.getAmount());
-
-        accountService.updateBalance(account.getId(), newBalance);
-
-        event.setStatus(TransactionStatus.COMPLETED);
-        event.updateBalances(null, newBalance);
-
-        kafkaTemplate.send(MAIN_TOPIC, "transaction.completed", event);
-    }
-
-    private void processWithdrawalTransaction(Transaction transaction, TransactionEvent event) {
-        Account account = accountService.getAccountById(transaction.getFromAccount().getId()).get();
-        BigDecimal newBalance = account.getBalance().subtract(transaction.getAmount());
-
-        accountService.updateBalance(account.getId(), newBalance);
-
-        event.setStatus(TransactionStatus.COMPLETED);
-        event.updateBalances(newBalance, null);
-
-        kafkaTemplate.send(MAIN_TOPIC, "transaction.completed", event);
-    }
-
     private boolean needsRollback(Transaction transaction) {
         return transaction.getStatus() == TransactionStatus.PENDING &&
                 (
@@ -228,26 +332,9 @@ public class TransactionEventProcessor {
 
     private void performRollback(Transaction transaction) {
         try {
-            switch (transaction.getType()) {
-                case TRANSFER:
-                    if (transaction.getFromAccount() != null && transaction.getToAccount() != null) {
-                        Account fromAccount = accountService.getAccountById(transaction.getFromAccount().getId()).get();
-                        Account toAccount = accountService.getAccountById(transaction.getToAccount().getId()).get();
-
-                        //reverse any partial transfer
-                        if (fromAccount.getBalance().compareTo(transaction.getAmount()) < 0) {
-                            accountService.updateBalance(toAccount.getId(), toAccount.getBalance().subtract(transaction.getAmount()));
-                        }
-                    }
-                    break;
-                case WITHDRAWAL:
-                    if (transaction.getFromAccount() != null) {
-                        Account account = accountService.getAccountById(transaction.getFromAccount().getId()).get();
-                        accountService.updateBalance(account.getId(), account.getBalance().add(transaction.getAmount()));
-                    }
-                    break;
-                default:
-                    log.info("No rollback needed for transaction type: {}", transaction.getType());
+            // the ledger knows which legs were posted, a transaction that never moved money is left alone
+            if (ledgerPostingService.reverse(transaction)) {
+                stateMachine.transition(transaction, TransactionStatus.ROLLED_BACK, "transaction.rolled_back");
             }
         } catch (Exception e) {
             log.error("Error rolling back transaction: {}", transaction.getId(), e);
@@ -353,10 +440,8 @@ public class TransactionEventProcessor {
         event.addProcessStep("RETRY_INITIATED: " + e.getMessage());
 
         if (event.getRetryCount() < MAX_RETRY_ATTEMPTS) {
-            // TODO: send to retry topic
-            long backoffIntervel = calculateBackoffInterval(event.getRetryCount());
-            event.setNextRetryAt(LocalDateTime.now().plusSeconds(backoffIntervel));
-            sendToRetryTopic(event);
+            event.setNextRetryAt(LocalDateTime.now().plus(retryScheduler.backoff(event.getRetryCount())));
+            scheduleRetry(event);
         } else {
             // TODO: send to DLQ
             sendToDLQ(event, "Max retries exceeded");
@@ -371,24 +456,22 @@ public class TransactionEventProcessor {
         event.addProcessStep("ERROR: " + e.getMessage());
         // TODO: send to DLQ
         sendToDLQ(event, "Non-retryable error" + e.getMessage());
-        updateTransactionStatus(event.getTransactionId(), TransactionStatus.FAILED);
+        updateTransactionStatus(event.getTransactionId(), TransactionStatus.FAILED, null);
         sendFailureNotification(event);
         ack.acknowledge();
     }
 
-    private void sendToRetryTopic(TransactionEvent event) {
+    private void scheduleRetry(TransactionEvent event) {
         try {
-            kafkaTemplate.send(RETRY_TOPIC, event.getTransactionId(), event).whenComplete((result, ex) -> {
+            retryScheduler.schedule(event).whenComplete((result, ex) -> {
                 if (ex != null) {
-                    log.error("Error sending retry topic: {} - {}", event.getTransactionId(), ex.getMessage());
-                    // TODO: send to DLQ
-                    sendToDLQ(event, "Failed to send to retry topic");
+                    log.error("Error scheduling retry: {} - {}", event.getTransactionId(), ex.getMessage());
+                    sendToDLQ(event, "Failed to schedule retry");
                 }
             });
         } catch (Exception e) {
-            log.error("Error sending event to retry topic: {} - {}", event.getTransactionId(), e.getMessage());
-            // TODO: send to DLQ
-            sendToDLQ(event, "Error sending to retry topic");
+            log.error("Error scheduling retry of event: {} - {}", event.getTransactionId(), e.getMessage());
+            sendToDLQ(event, "Error scheduling retry");
         }
     }
 
@@ -401,7 +484,7 @@ public class TransactionEventProcessor {
                 }
             });
             // TODO: Update transaction status to FAILED
-            updateTransactionStatus(event.getTransactionId(), TransactionStatus.FAILED);
+            updateTransactionStatus(event.getTransactionId(), TransactionStatus.FAILED, null);
 
             // TODO: Send notification event
             sendFailureNotification(event);
@@ -410,10 +493,6 @@ public class TransactionEventProcessor {
         }
     }
 
-    private long calculateBackoffInterval(int retryCount) {
-        return (long) Math.pow(2, retryCount) * 1000L; // exponential backoff in seconds: 2^retryCount * 1000
-    }
-
     private void validateEvent(TransactionEvent event) {
         if (event == null || event.getTransactionId() == null) {
             throw new NonRetryableException("Invalid event format");
@@ -423,11 +502,9 @@ public class TransactionEventProcessor {
         }
     }
 
-    private void updateTransactionStatus(String transactionId, TransactionStatus status) {
+    private void updateTransactionStatus(String transactionId, TransactionStatus status, String eventType) {
         try {
-            Transaction transaction = transactionRepository.findById(transactionId).orElseThrow(() -> new ResourceNotFoundException("Transaction not found: " + transactionId));
-            transaction.setStatus(status);
-            transactionRepository.save(transaction);
+            stateMachine.transition(transactionId, status, eventType);
         } catch (Exception e) {
             log.error("Error updating transaction status: {} - {}", transactionId, e.getMessage());
         }
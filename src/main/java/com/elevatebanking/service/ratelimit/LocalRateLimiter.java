@@ -0,0 +1,71 @@
+package com.elevatebanking.service.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GCRA over an in-memory table of theoretical arrival times. Every key is a single
+ * {@link AtomicLong} moved forward with compare-and-set, so concurrent requests never block.
+ */
+class LocalRateLimiter {
+    private final ConcurrentMap<String, AtomicLong> arrivals = new ConcurrentHashMap<>();
+
+    RateLimitResult tryAcquire(String key, Rate... rates) {
+        long now = System.currentTimeMillis();
+        AtomicLong[] taken = new AtomicLong[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            AtomicLong arrival = arrivals.computeIfAbsent(key + ":" + rates[i].name(), k -> new AtomicLong());
+            long retryAfter = acquire(arrival, rates[i], now);
+            if (retryAfter > 0) {
+                // give back what the earlier rates took, all or none
+                for (int j = 0; j < i; j++) {
+                    taken[j].addAndGet(-rates[j].intervalMillis());
+                }
+                return RateLimitResult.deny(rates[i].name(), retryAfter);
+            }
+            taken[i] = arrival;
+        }
+        return RateLimitResult.allow();
+    }
+
+    long[] remaining(String key, Rate... rates) {
+        long now = System.currentTimeMillis();
+        long[] remaining = new long[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            AtomicLong arrival = arrivals.get(key + ":" + rates[i].name());
+            remaining[i] = rates[i].remaining(arrival != null ? arrival.get() : 0, now);
+        }
+        return remaining;
+    }
+
+    // 0 once taken, otherwise how long until the rate would allow it
+    private long acquire(AtomicLong arrival, Rate rate, long now) {
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, now) + rate.intervalMillis();
+            long allowAt = next - rate.periodMillis();
+            if (allowAt > now) {
+                return allowAt - now;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops keys whose arrival time has passed, they behave exactly like a missing key. A request
+     * racing with the removal may go uncounted, which errs on the side of allowing it.
+     */
+    int evictIdle() {
+        long now = System.currentTimeMillis();
+        int before = arrivals.size();
+        arrivals.values().removeIf(arrival -> arrival.get() <= now);
+        return before - arrivals.size();
+    }
+
+    int size() {
+        return arrivals.size();
+    }
+}
@@ -0,0 +1,33 @@
+package com.elevatebanking.service.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * At most limit requests per period, spread evenly: after a full burst the next request is
+ * allowed one period / limit later.
+ */
+public record Rate(String name, long limit, Duration period) {
+
+    public static Rate perMinute(String name, long limit) {
+        return new Rate(name, limit, Duration.ofMinutes(1));
+    }
+
+    public static Rate perDay(String name, long limit) {
+        return new Rate(name, limit, Duration.ofDays(1));
+    }
+
+    public long periodMillis() {
+        return period.toMillis();
+    }
+
+    // the GCRA emission interval
+    public long intervalMillis() {
+        return Math.max(1, periodMillis() / Math.max(1, limit));
+    }
+
+    // requests the rate would allow right now, given the stored arrival time (0 when there is none)
+    public long remaining(long arrival, long now) {
+        long used = Math.max(arrival, now) - now;
+        return Math.max(0, Math.min(limit, (periodMillis() - used) / intervalMillis()));
+    }
+}
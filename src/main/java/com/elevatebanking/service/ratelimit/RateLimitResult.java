@@ -0,0 +1,18 @@
+package com.elevatebanking.service.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Whether a request was allowed, and otherwise which rate refused it and when it may be retried.
+ */
+public record RateLimitResult(boolean allowed, String limitedBy, Duration retryAfter) {
+    private static final RateLimitResult ALLOWED = new RateLimitResult(true, null, Duration.ZERO);
+
+    public static RateLimitResult allow() {
+        return ALLOWED;
+    }
+
+    public static RateLimitResult deny(String limitedBy, long retryAfterMillis) {
+        return new RateLimitResult(false, limitedBy, Duration.ofMillis(retryAfterMillis));
+    }
+}
@@ -0,0 +1,141 @@
+package com.elevatebanking.service.ratelimit;
+
+import com.elevatebanking.service.ratelimit.config.RateLimiterConfig;
+import com.elevatebanking.service.redis.RedisCircuitBreaker;
+import com.elevatebanking.service.redis.RedisScripts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rate limits requests per key with the generic cell rate algorithm (GCRA). Each key and rate needs
+ * a single timestamp, the theoretical arrival time of the next request, instead of a counter per
+ * window, and requests are spread evenly over the period instead of resetting at window edges.
+ * <p>
+ * In REDIS mode the timestamps are shared by all nodes and one script call checks every rate of a
+ * request. In LOCAL mode, and while Redis is unreachable or its circuit is open, they live in
+ * memory on this node.
+ */
+@Service
+@Slf4j
+public class RateLimiterService {
+    private static final DefaultRedisScript<List<String>> SCRIPT = RedisScripts.stringListFromClasspath("scripts/gcra.lua");
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RateLimiterConfig config;
+    private final RedisCircuitBreaker redisHealth;
+    private final LocalRateLimiter localLimiter = new LocalRateLimiter();
+
+    private final Counter allowed;
+    private final Counter denied;
+    private final Counter fallbacks;
+
+    public RateLimiterService(RedisTemplate<String, String> redisTemplate, RateLimiterConfig config,
+                              RedisCircuitBreaker redisHealth, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.config = config;
+        this.redisHealth = redisHealth;
+
+        this.allowed = requestCounter(meterRegistry, "allowed");
+        this.denied = requestCounter(meterRegistry, "denied");
+        this.fallbacks = Counter.builder("rate.limiter.fallbacks")
+                .description("Requests limited in memory because Redis was unreachable")
+                .register(meterRegistry);
+        Gauge.builder("rate.limiter.local.keys", localLimiter, LocalRateLimiter::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes one request from every rate of the key, or from none of them if any rate refuses it.
+     */
+    public RateLimitResult tryAcquire(String key, Rate... rates) {
+        if (isLocal()) {
+            return record(localLimiter.tryAcquire(key, rates));
+        }
+        if (!redisHealth.allowRequest()) {
+            return tryAcquireLocally(key, rates);
+        }
+        try {
+            RateLimitResult result = acquireInRedis(key, rates);
+            redisHealth.recordSuccess();
+            return record(result);
+        } catch (DataAccessException e) {
+            redisHealth.recordFailure(e);
+            log.warn("Rate limiting {} in memory, Redis is unreachable: {}", key, e.getMessage());
+            return tryAcquireLocally(key, rates);
+        }
+    }
+
+    /**
+     * Limits on this node alone, for callers whose own Redis call just failed.
+     */
+    public RateLimitResult tryAcquireLocally(String key, Rate... rates) {
+        if (!isLocal()) {
+            fallbacks.increment();
+        }
+        return record(localLimiter.tryAcquire(key, rates));
+    }
+
+    // what each rate of the key would still allow on this node, without taking anything
+    public long[] remainingLocally(String key, Rate... rates) {
+        return localLimiter.remaining(key, rates);
+    }
+
+    public boolean isLocal() {
+        return config.getMode() == RateLimiterConfig.Mode.LOCAL;
+    }
+
+    // where a rate of the key keeps its arrival time in Redis, for scripts that check rates themselves
+    public String redisKey(String key, Rate rate) {
+        return config.getKeyPrefix() + key + ":" + rate.name();
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limiter.cleanup-interval:PT1M}")
+    public void evictIdleKeys() {
+        int evicted = localLimiter.evictIdle();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limiter keys", evicted);
+        }
+    }
+
+    private RateLimitResult acquireInRedis(String key, Rate... rates) {
+        List<String> keys = new ArrayList<>(rates.length);
+        List<String> args = new ArrayList<>(rates.length * 2);
+        for (Rate rate : rates) {
+            keys.add(redisKey(key, rate));
+            args.add(String.valueOf(rate.intervalMillis()));
+            args.add(String.valueOf(rate.periodMillis()));
+        }
+
+        List<String> result = redisTemplate.execute(SCRIPT, keys, args.toArray());
+        if (result == null || result.isEmpty()) {
+            throw new IllegalStateException("Empty result from rate limiter script");
+        }
+        if ("1".equals(result.get(0))) {
+            return RateLimitResult.allow();
+        }
+        Rate refused = rates[Integer.parseInt(result.get(1)) - 1];
+        return RateLimitResult.deny(refused.name(), Long.parseLong(result.get(2)));
+    }
+
+    private RateLimitResult record(RateLimitResult result) {
+        (result.allowed() ? allowed : denied).increment();
+        return result;
+    }
+
+    private Counter requestCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("rate.limiter.requests")
+                .description("Requests checked by the rate limiter")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
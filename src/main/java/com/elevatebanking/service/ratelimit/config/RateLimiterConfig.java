@@ -0,0 +1,22 @@
+package com.elevatebanking.service.ratelimit.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "rate-limiter")
+@Data
+public class RateLimiterConfig {
+    // REDIS shares the limits between nodes, LOCAL keeps them in memory for a single node
+    private Mode mode = Mode.REDIS;
+    private String keyPrefix = "rate:";
+    // how often idle keys are dropped from the in-memory table
+    private Duration cleanupInterval = Duration.ofMinutes(1);
+
+    public enum Mode {
+        REDIS, LOCAL
+    }
+}
@@ -0,0 +1,150 @@
+package com.elevatebanking.service.redis;
+
+import com.elevatebanking.service.redis.config.RedisCircuitBreakerConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks whether Redis is usable so callers with a fallback skip it while it is down, instead of
+ * each request waiting for its own command to time out.
+ * <p>
+ * Callers report the outcome of their Redis calls and a background prober pings Redis on the shared
+ * connection, so an idle node notices an outage too. Enough failures in a row open the circuit. Once
+ * it has been open for a while and a ping succeeds it turns half open, requests use Redis again and
+ * a run of successes closes it while any failure opens it again. Every transition is published as a
+ * {@link StateChange} event.
+ */
+@Component
+@Slf4j
+public class RedisCircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    public record StateChange(State from, State to, String reason) {
+    }
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisCircuitBreakerConfig config;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger successes = new AtomicInteger();
+    private volatile long openedAt;
+
+    private final Counter rejected;
+
+    public RedisCircuitBreaker(RedisTemplate<String, String> redisTemplate, RedisCircuitBreakerConfig config,
+                               ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.config = config;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("redis.circuit.state", state, current -> current.get().ordinal())
+                .description("Redis circuit state: 0 closed, 1 half open, 2 open")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("redis.circuit.rejected")
+                .description("Redis calls skipped because the circuit was open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * False while the circuit is open, the caller should take its fallback without trying Redis.
+     */
+    public boolean allowRequest() {
+        if (state.get() != State.OPEN) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public void recordSuccess() {
+        failures.set(0);
+        if (state.get() == State.HALF_OPEN && successes.incrementAndGet() >= config.getSuccessThreshold()) {
+            transition(State.HALF_OPEN, State.CLOSED, "Redis calls succeed again");
+        }
+    }
+
+    public void recordFailure(Throwable error) {
+        successes.set(0);
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            transition(State.HALF_OPEN, State.OPEN, error.getMessage());
+        } else if (current == State.CLOSED && failures.incrementAndGet() >= config.getFailureThreshold()) {
+            transition(State.CLOSED, State.OPEN, error.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${redis-circuit-breaker.probe-interval:PT2S}")
+    public void probe() {
+        State current = state.get();
+        if (current == State.OPEN && System.nanoTime() - openedAt < config.getOpenDuration().toNanos()) {
+            return;
+        }
+
+        try {
+            String reply = redisTemplate.execute((RedisCallback<String>) RedisConnection::ping);
+            if (!"PONG".equalsIgnoreCase(reply)) {
+                throw new IllegalStateException("Unexpected reply to PING: " + reply);
+            }
+            if (current == State.OPEN) {
+                transition(State.OPEN, State.HALF_OPEN, "Redis answers pings again");
+            } else {
+                recordSuccess();
+            }
+        } catch (Exception e) {
+            log.debug("Redis probe failed: {}", e.getMessage());
+            if (current == State.OPEN) {
+                // stay open for another full period
+                openedAt = System.nanoTime();
+            } else {
+                recordFailure(e);
+            }
+        }
+    }
+
+    private void transition(State from, State to, String reason) {
+        // set first, so the prober never sees the open state with an old opening time
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        if (!state.compareAndSet(from, to)) {
+            return;
+        }
+        failures.set(0);
+        successes.set(0);
+        if (to == State.OPEN) {
+            log.error("Redis circuit {} -> {}: {}", from, to, reason);
+        } else {
+            log.info("Redis circuit {} -> {}: {}", from, to, reason);
+        }
+
+        Counter.builder("redis.circuit.transitions")
+                .description("Redis circuit state transitions")
+                .tag("from", from.name())
+                .tag("to", to.name())
+                .register(meterRegistry)
+                .increment();
+        eventPublisher.publishEvent(new StateChange(from, to, reason));
+    }
+}
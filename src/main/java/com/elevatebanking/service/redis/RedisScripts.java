@@ -0,0 +1,30 @@
+package com.elevatebanking.service.redis;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.List;
+
+/**
+ * Typed scripts for Lua that returns a table. Redis hands the table back as a list, and the template's
+ * string serializer reads its entries; the scripts here only put strings in it.
+ */
+public final class RedisScripts {
+    // List.class is raw, this cast is the one place its element type is asserted
+    @SuppressWarnings("unchecked")
+    private static final Class<List<String>> STRING_LIST = (Class<List<String>>) (Class<?>) List.class;
+
+    private RedisScripts() {
+    }
+
+    public static DefaultRedisScript<List<String>> stringListFromClasspath(String path) {
+        DefaultRedisScript<List<String>> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(STRING_LIST);
+        return script;
+    }
+
+    public static DefaultRedisScript<List<String>> stringList(String source) {
+        return new DefaultRedisScript<>(source, STRING_LIST);
+    }
+}
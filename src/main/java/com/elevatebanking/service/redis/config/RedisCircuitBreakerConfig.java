@@ -0,0 +1,20 @@
+package com.elevatebanking.service.redis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "redis-circuit-breaker")
+@Data
+public class RedisCircuitBreakerConfig {
+    // failed calls or probes in a row that open the circuit
+    private int failureThreshold = 5;
+    // successful calls or probes in a row that close a half open circuit
+    private int successThreshold = 3;
+    // how long an open circuit waits before the prober tries redis again
+    private Duration openDuration = Duration.ofSeconds(10);
+    private Duration probeInterval = Duration.ofSeconds(2);
+}
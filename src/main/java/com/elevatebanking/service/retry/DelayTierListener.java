@@ -0,0 +1,96 @@
+package com.elevatebanking.service.retry;
+
+import com.elevatebanking.event.TransactionEvent;
+import com.elevatebanking.service.retry.config.TransactionRetryConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the delay tier topics. Every record of a tier waits the same time, so records of a partition
+ * fall due in offset order: when the head of a partition is not due yet, the partition is rewound to
+ * it and paused until it is, instead of being polled again and again. Due records are handed back to
+ * the scheduler, which publishes them to the retry topic or, still early, to a shorter tier.
+ */
+@Component
+@Slf4j
+public class DelayTierListener {
+    public static final String LISTENER_ID = "transaction-delay-tiers";
+
+    private final TransactionRetryScheduler scheduler;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final Map<String, Duration> tierByTopic = new HashMap<>();
+    private final Set<TopicPartition> paused = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService resumer;
+
+    public DelayTierListener(TransactionRetryConfig config, TransactionRetryScheduler scheduler,
+                             KafkaListenerEndpointRegistry listenerRegistry) {
+        this.scheduler = scheduler;
+        this.listenerRegistry = listenerRegistry;
+        config.getTiers().forEach(tier -> tierByTopic.put(config.tierTopic(tier), tier));
+        this.resumer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("delay-tier-resumer").daemon().factory());
+    }
+
+    @KafkaListener(
+            id = LISTENER_ID,
+            topics = "#{@transactionRetryConfig.tierTopics()}",
+            groupId = "${spring.kafka.consumer.groups.transaction-delay}",
+            containerFactory = "transactionKafkaListenerContainerFactory"
+    )
+    public void onDelayed(ConsumerRecord<String, TransactionEvent> record, Acknowledgment ack, Consumer<?, ?> consumer) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        if (paused.contains(partition)) {
+            // fetched in the same poll as an earlier record that is not due, read again after the resume
+            return;
+        }
+
+        long wait = record.timestamp() + tierByTopic.get(record.topic()).toMillis() - System.currentTimeMillis();
+        if (wait > 0) {
+            consumer.seek(partition, record.offset());
+            pause(partition, wait);
+            return;
+        }
+
+        if (record.value() != null) {
+            // acknowledged only once the retry is parked again or published
+            scheduler.schedule(record.value()).join();
+        }
+        ack.acknowledge();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resumer.shutdownNow();
+    }
+
+    private void pause(TopicPartition partition, long millis) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        paused.add(partition);
+        container.pausePartition(partition);
+        log.debug("Paused {} for {}ms", partition, millis);
+        resumer.schedule(() -> {
+            paused.remove(partition);
+            container.resumePartition(partition);
+        }, millis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,172 @@
+package com.elevatebanking.service.retry;
+
+import com.elevatebanking.event.TransactionEvent;
+import com.elevatebanking.event.codec.BinaryEventCodec;
+import com.elevatebanking.event.codec.EventCodecs;
+import com.elevatebanking.service.redis.RedisCircuitBreaker;
+import com.elevatebanking.service.redis.RedisScripts;
+import com.elevatebanking.service.retry.config.TransactionRetryConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Holds transaction retries back until their nextRetryAt and then publishes them to the retry topic,
+ * so a retry that is not due yet never goes round through Kafka. Retries wait either in the delay
+ * tier topics read by {@link DelayTierListener} or in a redis sorted set released by a poller.
+ */
+@Service
+@Slf4j
+public class TransactionRetryScheduler {
+    // pops the due events, a node that takes one is the only one publishing it
+    private static final DefaultRedisScript<List<String>> RELEASE_SCRIPT = RedisScripts.stringList(
+            "local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+                    "local events = {} " +
+                    "for _, id in ipairs(ids) do " +
+                    "    local event = redis.call('hget', KEYS[2], id) " +
+                    "    redis.call('zrem', KEYS[1], id) " +
+                    "    redis.call('hdel', KEYS[2], id) " +
+                    "    if event then table.insert(events, event) end " +
+                    "end " +
+                    "return events");
+
+    private final TransactionRetryConfig config;
+    private final KafkaTemplate<String, TransactionEvent> kafkaTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisCircuitBreaker redisHealth;
+    private final BinaryEventCodec<TransactionEvent> codec;
+    private final MeterRegistry meterRegistry;
+    private final String retryTopic;
+    private final List<Duration> tiers;
+
+    public TransactionRetryScheduler(TransactionRetryConfig config, KafkaTemplate<String, TransactionEvent> kafkaTemplate,
+                                     RedisTemplate<String, String> redisTemplate, RedisCircuitBreaker redisHealth,
+                                     EventCodecs eventCodecs, MeterRegistry meterRegistry,
+                                     @Value("${spring.kafka.topics.transaction-retry}") String retryTopic) {
+        this.config = config;
+        this.kafkaTemplate = kafkaTemplate;
+        this.redisTemplate = redisTemplate;
+        this.redisHealth = redisHealth;
+        this.codec = eventCodecs.forType(TransactionEvent.class).orElseThrow();
+        this.meterRegistry = meterRegistry;
+        this.retryTopic = retryTopic;
+        this.tiers = config.getTiers().stream().sorted().toList();
+    }
+
+    // attempt n waits base * 2^n, the first retry after two seconds with the default base
+    public Duration backoff(int attempt) {
+        Duration delay = config.getBackoffBase().multipliedBy(1L << Math.min(Math.max(attempt, 0), 30));
+        return delay.compareTo(config.getBackoffMax()) > 0 ? config.getBackoffMax() : delay;
+    }
+
+    /**
+     * Publishes the event to the retry topic once its nextRetryAt has passed, at once if it has none.
+     * The future completes when the event is parked or published.
+     */
+    public CompletableFuture<?> schedule(TransactionEvent event) {
+        Duration delay = event.getNextRetryAt() == null
+                ? Duration.ZERO
+                : Duration.between(LocalDateTime.now(), event.getNextRetryAt());
+        if (delay.isNegative() || delay.isZero()) {
+            count("due");
+            return send(retryTopic, event);
+        }
+
+        if (config.getMode() == TransactionRetryConfig.Mode.REDIS && redisHealth.allowRequest()) {
+            try {
+                park(event);
+                redisHealth.recordSuccess();
+                count("redis");
+                return CompletableFuture.completedFuture(null);
+            } catch (DataAccessException e) {
+                redisHealth.recordFailure(e);
+                log.warn("Could not park retry of {} in redis, using the delay tiers: {}",
+                        event.getTransactionId(), e.getMessage());
+            }
+        }
+
+        String topic = config.tierTopic(tierFor(delay));
+        count(topic);
+        return send(topic, event);
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.retry.poll-interval:PT0.5S}")
+    public void releaseDue() {
+        if (config.getMode() != TransactionRetryConfig.Mode.REDIS || !redisHealth.allowRequest()) {
+            return;
+        }
+        List<String> due;
+        try {
+            due = redisTemplate.execute(RELEASE_SCRIPT,
+                    List.of(config.getRedisKey(), config.getRedisKey() + ":events"),
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(config.getPollBatchSize()));
+            redisHealth.recordSuccess();
+        } catch (DataAccessException e) {
+            redisHealth.recordFailure(e);
+            log.warn("Could not release due retries from redis: {}", e.getMessage());
+            return;
+        }
+        if (due == null || due.isEmpty()) {
+            return;
+        }
+
+        log.debug("Releasing {} due transaction retries", due.size());
+        for (String encoded : due) {
+            TransactionEvent event = codec.decode(Base64.getDecoder().decode(encoded));
+            send(retryTopic, event).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    // taken out of redis already, park it again rather than lose it
+                    log.error("Could not publish due retry of {}: {}", event.getTransactionId(), ex.getMessage());
+                    event.setNextRetryAt(LocalDateTime.now().plus(tiers.get(0)));
+                    schedule(event);
+                }
+            });
+        }
+    }
+
+    // the longest tier that does not overshoot, shorter delays than every tier take the shortest one
+    Duration tierFor(Duration delay) {
+        Duration chosen = tiers.get(0);
+        for (Duration tier : tiers) {
+            if (tier.compareTo(delay) <= 0) {
+                chosen = tier;
+            }
+        }
+        return chosen;
+    }
+
+    private void park(TransactionEvent event) {
+        String member = event.getEventId() != null ? event.getEventId() : event.getTransactionId();
+        long dueAt = event.getNextRetryAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        // the event first, so the poller never finds a due time without one
+        redisTemplate.opsForHash().put(config.getRedisKey() + ":events", member,
+                Base64.getEncoder().encodeToString(codec.encode(event)));
+        redisTemplate.opsForZSet().add(config.getRedisKey(), member, dueAt);
+    }
+
+    private CompletableFuture<?> send(String topic, TransactionEvent event) {
+        return kafkaTemplate.send(topic, event.getTransactionId(), event);
+    }
+
+    private void count(String target) {
+        Counter.builder("transaction.retry.scheduled")
+                .description("Transaction retries by where they wait, due ones go straight to the retry topic")
+                .tag("target", target)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,41 @@
+package com.elevatebanking.service.retry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "transaction.retry")
+@Data
+public class TransactionRetryConfig {
+    // KAFKA parks retries in delay tier topics, REDIS in a sorted set; tiers stay the fallback while redis is down
+    private Mode mode = Mode.KAFKA;
+    // the delay of attempt n is base * 2^n, capped at max
+    private Duration backoffBase = Duration.ofSeconds(1);
+    private Duration backoffMax = Duration.ofMinutes(10);
+    // one topic per tier, a retry waits in the longest tier not exceeding its remaining delay
+    private List<Duration> tiers = new ArrayList<>(List.of(
+            Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofSeconds(60), Duration.ofMinutes(10)));
+    private String tierTopicPrefix = "elevate.transactions.delay.";
+    // sorted set of due times and the hash holding the events
+    private String redisKey = "retry:transactions";
+    // how often the redis scheduler releases due retries
+    private Duration pollInterval = Duration.ofMillis(500);
+    private int pollBatchSize = 100;
+
+    public enum Mode {
+        KAFKA, REDIS
+    }
+
+    public String tierTopic(Duration tier) {
+        return tierTopicPrefix + tier.toSeconds() + "s";
+    }
+
+    public String[] tierTopics() {
+        return tiers.stream().map(this::tierTopic).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,337 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.dto.transaction.TransactionDTOs.TransactionResponse;
+import com.elevatebanking.exception.IdempotencyConflictException;
+import com.elevatebanking.exception.InvalidOperationException;
+import com.elevatebanking.service.redis.RedisCircuitBreaker;
+import com.elevatebanking.service.transaction.config.IdempotencyConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Replays the response of money-moving requests retried with the same Idempotency-Key.
+ * <p>
+ * Completed responses live in Redis and in a local Caffeine cache in front of it. The first request
+ * claims the key with SET NX, duplicates on the same node wait on the in-flight future and duplicates
+ * on other nodes poll Redis until the owner has stored its response. A failed request releases its
+ * claim so the client can retry it. The claim is a lease renewed while the request runs, so a slow
+ * request keeps its key and only a dead node's claim runs out.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String STATE_IN_FLIGHT = "IN_FLIGHT";
+    private static final String STATE_COMPLETED = "COMPLETED";
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "    return redis.call('del', KEYS[1]) " +
+                    "else " +
+                    "    return 0 " +
+                    "end", Long.class);
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "    return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "else " +
+                    "    return 0 " +
+                    "end", Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyConfig config;
+    private final RedisCircuitBreaker redisHealth;
+
+    private final Cache<String, IdempotencyRecord> completedResponses;
+    private final ConcurrentMap<String, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog;
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+    private final Counter waits;
+    private final Timer waitTimer;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class IdempotencyRecord {
+        private String state;
+        private String fingerprint;
+        private String owner; // unique per claim, so only the claiming request can release it
+        private TransactionResponse response;
+    }
+
+    private record InFlightRequest(String fingerprint, CompletableFuture<TransactionResponse> result) {
+    }
+
+    public IdempotencyService(RedisTemplate<String, String> redisTemplate, ObjectMapper objectMapper,
+                              IdempotencyConfig config, RedisCircuitBreaker redisHealth, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.config = config;
+        this.redisHealth = redisHealth;
+        this.completedResponses = Caffeine.newBuilder()
+                .maximumSize(config.getLocalMaxEntries())
+                .expireAfterWrite(config.getLocalTtl())
+                .build();
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("idempotency-watchdog").daemon().factory());
+
+        this.localHits = requestCounter(meterRegistry, "local_hit");
+        this.redisHits = requestCounter(meterRegistry, "redis_hit");
+        this.misses = requestCounter(meterRegistry, "miss");
+        this.waits = requestCounter(meterRegistry, "wait");
+        this.waitTimer = Timer.builder("idempotency.wait")
+                .description("Time duplicates spent waiting for the in-flight request")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    public TransactionResponse execute(String userId, String idempotencyKey, String operation, Object request,
+                                       Supplier<TransactionResponse> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidOperationException("Idempotency-Key must be between 1 and 255 characters");
+        }
+
+        String storageKey = KEY_PREFIX + userId + ":" + idempotencyKey;
+        String fingerprint = fingerprint(operation, request);
+
+        IdempotencyRecord cached = completedResponses.getIfPresent(storageKey);
+        if (cached != null) {
+            localHits.increment();
+            return replay(cached, fingerprint);
+        }
+
+        // concurrent duplicates on this node wait for the first one instead of going to redis
+        InFlightRequest mine = new InFlightRequest(fingerprint, new CompletableFuture<>());
+        InFlightRequest existing = inFlightRequests.putIfAbsent(storageKey, mine);
+        if (existing != null) {
+            waits.increment();
+            verifyFingerprint(existing.fingerprint(), fingerprint);
+            return waitTimer.record(() -> awaitLocal(existing.result()));
+        }
+
+        try {
+            TransactionResponse response = executeOnce(storageKey, fingerprint, action);
+            mine.result().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightRequests.remove(storageKey, mine);
+        }
+    }
+
+    private TransactionResponse executeOnce(String storageKey, String fingerprint, Supplier<TransactionResponse> action) {
+        if (!redisHealth.allowRequest()) {
+            misses.increment();
+            return action.get();
+        }
+
+        String claim = write(new IdempotencyRecord(STATE_IN_FLIGHT, fingerprint, UUID.randomUUID().toString(), null));
+        long deadline = System.nanoTime() + config.getWaitTimeout().toNanos();
+        long waitStart = 0;
+
+        while (true) {
+            Boolean claimed;
+            try {
+                claimed = redisTemplate.opsForValue().setIfAbsent(storageKey, claim, config.getInFlightTtl());
+                redisHealth.recordSuccess();
+            } catch (Exception e) {
+                redisHealth.recordFailure(e);
+                // without redis only the local tier protects against duplicates
+                log.warn("Idempotency store unavailable, executing without claim: {}", e.getMessage());
+                misses.increment();
+                return action.get();
+            }
+
+            if (Boolean.TRUE.equals(claimed)) {
+                recordWait(waitStart);
+                misses.increment();
+                return runClaimed(storageKey, claim, fingerprint, action);
+            }
+
+            IdempotencyRecord current = read(storageKey);
+            if (current != null) {
+                verifyFingerprint(current.getFingerprint(), fingerprint);
+                if (STATE_COMPLETED.equals(current.getState())) {
+                    recordWait(waitStart);
+                    redisHits.increment();
+                    completedResponses.put(storageKey, current);
+                    return current.getResponse();
+                }
+            }
+
+            // another node owns the key, wait for its response or for the claim to go away
+            if (waitStart == 0) {
+                waits.increment();
+                waitStart = System.nanoTime();
+            }
+            if (System.nanoTime() >= deadline) {
+                recordWait(waitStart);
+                throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+            }
+            sleep(config.getPollInterval().toMillis());
+        }
+    }
+
+    private TransactionResponse runClaimed(String storageKey, String claim, String fingerprint,
+                                           Supplier<TransactionResponse> action) {
+        long interval = config.getRenewInterval().toMillis();
+        ScheduledFuture<?> renewal = watchdog.scheduleAtFixedRate(
+                () -> renew(storageKey, claim), interval, interval, TimeUnit.MILLISECONDS);
+        TransactionResponse response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            renewal.cancel(false);
+            release(storageKey, claim);
+            throw e;
+        }
+        renewal.cancel(false);
+
+        IdempotencyRecord completed = new IdempotencyRecord(STATE_COMPLETED, fingerprint, null, response);
+        completedResponses.put(storageKey, completed);
+        try {
+            redisTemplate.opsForValue().set(storageKey, write(completed), config.getResponseTtl());
+        } catch (Exception e) {
+            log.error("Failed to store idempotent response for key {}: {}", storageKey, e.getMessage());
+        }
+        return response;
+    }
+
+    private TransactionResponse awaitLocal(CompletableFuture<TransactionResponse> result) {
+        try {
+            return result.get(config.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for the in-flight request");
+        }
+    }
+
+    private void recordWait(long waitStart) {
+        if (waitStart != 0) {
+            waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private TransactionResponse replay(IdempotencyRecord record, String fingerprint) {
+        verifyFingerprint(record.getFingerprint(), fingerprint);
+        return record.getResponse();
+    }
+
+    private void verifyFingerprint(String stored, String fingerprint) {
+        if (!stored.equals(fingerprint)) {
+            throw new IdempotencyConflictException("Idempotency-Key was already used with a different request");
+        }
+    }
+
+    private void renew(String storageKey, String claim) {
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(storageKey), claim,
+                    String.valueOf(config.getInFlightTtl().toMillis()));
+            if (renewed == null || renewed == 0) {
+                log.warn("Idempotency claim {} expired while its request was still running", storageKey);
+            }
+        } catch (Exception e) {
+            // tried again on the next tick, the claim outlives a few missed renewals
+            log.warn("Could not renew idempotency claim {}: {}", storageKey, e.getMessage());
+        }
+    }
+
+    private void release(String storageKey, String claim) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(storageKey), claim);
+        } catch (Exception e) {
+            log.warn("Failed to release idempotency claim {}, it expires in {}: {}",
+                    storageKey, config.getInFlightTtl(), e.getMessage());
+        }
+    }
+
+    private IdempotencyRecord read(String storageKey) {
+        String value = redisTemplate.opsForValue().get(storageKey);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(value, IdempotencyRecord.class);
+        } catch (JsonProcessingException e) {
+            log.error("Unreadable idempotency record for key {}: {}", storageKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private String write(IdempotencyRecord record) {
+        try {
+            return objectMapper.writeValueAsString(record);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize idempotency record", e);
+        }
+    }
+
+    private String fingerprint(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8));
+            return operation + "-" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for the in-flight request");
+        }
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("idempotency.requests")
+                .description("Requests carrying an Idempotency-Key by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,163 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.entity.limit.LimitException;
+import com.elevatebanking.repository.LimitExceptionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The limit exceptions that have not ended yet, by user and sorted by start time. Exceptions are
+ * rare and short, so the whole set is loaded at startup and a user without one is answered without
+ * touching the database. An interval is dropped when it ends; a user's intervals are read again when
+ * {@link TransactionLimitCache} hears that the user's limits changed, and all of them every ten minutes.
+ * <p>
+ * Until the startup load has succeeded every lookup goes to the database instead.
+ */
+@Component
+@Slf4j
+public class LimitExceptionIndex {
+    private final LimitExceptionRepository exceptionRepository;
+
+    private final ConcurrentMap<String, List<Interval>> intervals = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    // exceptions with an eviction scheduled, so a reload does not schedule them again
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+
+    public record Interval(String id, LocalDateTime start, LocalDateTime end, BigDecimal limit) {
+    }
+
+    public LimitExceptionIndex(LimitExceptionRepository exceptionRepository) {
+        this.exceptionRepository = exceptionRepository;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("limit-exception-evictor").daemon().factory());
+    }
+
+    // also catches up with changes made outside TransactionLimitService
+    @PostConstruct
+    @Scheduled(fixedDelay = 600000, initialDelay = 600000)
+    public void load() {
+        try {
+            Map<String, List<Interval>> byUser = exceptionRepository.findByActiveTrueAndEndTimeAfter(LocalDateTime.now())
+                    .stream()
+                    .collect(Collectors.groupingBy(exception -> exception.getUser().getId(),
+                            Collectors.mapping(this::toInterval, Collectors.toList())));
+            byUser.forEach(this::replace);
+            intervals.keySet().removeIf(userId -> !byUser.containsKey(userId));
+            loaded = true;
+            log.info("Indexed {} limit exceptions of {} users", byUser.values().stream().mapToInt(List::size).sum(),
+                    byUser.size());
+        } catch (Exception e) {
+            log.error("Could not load limit exceptions, reading them from the database instead: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdownNow();
+    }
+
+    /**
+     * The exception running at the given time, the latest started one if several overlap.
+     */
+    public Optional<Interval> findActive(String userId, LocalDateTime time) {
+        if (!loaded) {
+            return exceptionRepository.findActiveExceptionForUser(userId).map(this::toInterval);
+        }
+        Interval active = null;
+        for (Interval interval : intervals.getOrDefault(userId, List.of())) {
+            if (interval.start().isAfter(time)) {
+                break;
+            }
+            if (interval.end().isAfter(time)) {
+                active = interval;
+            }
+        }
+        return Optional.ofNullable(active);
+    }
+
+    public Optional<LocalDateTime> findNextStart(String userId, LocalDateTime after) {
+        if (!loaded) {
+            return exceptionRepository.findFirstByUserIdAndActiveTrueAndStartTimeAfterOrderByStartTimeAsc(userId, after)
+                    .map(LimitException::getStartTime);
+        }
+        return intervals.getOrDefault(userId, List.of()).stream()
+                .map(Interval::start)
+                .filter(start -> start.isAfter(after))
+                .findFirst();
+    }
+
+    // running and upcoming exceptions
+    public List<Interval> findUnended(String userId) {
+        if (!loaded) {
+            return exceptionRepository.findByUserIdAndActiveTrueAndEndTimeAfter(userId, LocalDateTime.now())
+                    .stream()
+                    .map(this::toInterval)
+                    .sorted(Comparator.comparing(Interval::start))
+                    .toList();
+        }
+        return intervals.getOrDefault(userId, List.of());
+    }
+
+    public void reload(String userId) {
+        if (!loaded) {
+            return;
+        }
+        replace(userId, exceptionRepository.findByUserIdAndActiveTrueAndEndTimeAfter(userId, LocalDateTime.now())
+                .stream()
+                .map(this::toInterval)
+                .toList());
+    }
+
+    private void replace(String userId, List<Interval> unended) {
+        List<Interval> sorted = unended.stream()
+                .sorted(Comparator.comparing(Interval::start))
+                .toList();
+        intervals.compute(userId, (id, current) -> sorted.isEmpty() ? null : sorted);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Interval interval : sorted) {
+            if (!scheduled.add(interval.id())) {
+                continue;
+            }
+            long delay = Math.max(0, Duration.between(now, interval.end()).toMillis());
+            evictor.schedule(() -> evict(userId, interval.id()), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void evict(String userId, String exceptionId) {
+        scheduled.remove(exceptionId);
+        LocalDateTime now = LocalDateTime.now();
+        // an exception extended since it was scheduled stays, the next reload schedules its new end
+        intervals.computeIfPresent(userId, (id, current) -> {
+            List<Interval> rest = current.stream()
+                    .filter(interval -> !interval.id().equals(exceptionId) || interval.end().isAfter(now))
+                    .toList();
+            return rest.isEmpty() ? null : rest;
+        });
+        log.debug("Limit exception {} of user {} ended", exceptionId, userId);
+    }
+
+    private Interval toInterval(LimitException exception) {
+        return new Interval(exception.getId(), exception.getStartTime(), exception.getEndTime(),
+                exception.getExceptionLimit());
+    }
+}
@@ -0,0 +1,123 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.dto.limit.LimitDTOs.LimitHeadroomResponse;
+import com.elevatebanking.service.ratelimit.Rate;
+import com.elevatebanking.service.ratelimit.RateLimiterService;
+import com.elevatebanking.service.redis.RedisCircuitBreaker;
+import com.elevatebanking.service.transaction.config.TransactionLimitConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * How much of their limits a user has left, read from the counters limit validation maintains
+ * instead of validating a trial transfer. The totals and arrival times come from Redis in one MGET,
+ * a total Redis does not have yet is taken from the spend aggregates. Results are cached per user
+ * for a few seconds, so polling clients cost one read per interval.
+ */
+@Service
+@Slf4j
+public class LimitHeadroomService {
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TransactionLimitCache limitCache;
+    private final RateLimiterService rateLimiter;
+    private final SpendAggregateService spendAggregateService;
+    private final RedisCircuitBreaker redisHealth;
+
+    private final Cache<String, LimitHeadroomResponse> headrooms;
+
+    public LimitHeadroomService(RedisTemplate<String, String> redisTemplate, TransactionLimitCache limitCache,
+                                RateLimiterService rateLimiter, SpendAggregateService spendAggregateService,
+                                RedisCircuitBreaker redisHealth, TransactionLimitConfig limitConfig) {
+        this.redisTemplate = redisTemplate;
+        this.limitCache = limitCache;
+        this.rateLimiter = rateLimiter;
+        this.spendAggregateService = spendAggregateService;
+        this.redisHealth = redisHealth;
+        this.headrooms = Caffeine.newBuilder()
+                .maximumSize(limitConfig.getHeadroom().getMaxEntries())
+                .expireAfterWrite(limitConfig.getHeadroom().getTtl())
+                .build();
+    }
+
+    public LimitHeadroomResponse getHeadroom(String userId) {
+        return headrooms.get(userId, this::calculate);
+    }
+
+    private LimitHeadroomResponse calculate(String userId) {
+        TransactionLimitConfig.TierLimit limits = limitCache.getLimits(userId, TransactionValidationService.DEFAULT_LIMITS);
+        Rate[] rates = TransactionLimitScript.rates(limits);
+        String rateKey = TransactionLimitScript.rateKey(userId);
+        LocalDate today = LocalDate.now();
+        YearMonth month = YearMonth.now();
+
+        String daily = null;
+        String monthly = null;
+        long[] remainingRates = null;
+        if (redisHealth.allowRequest()) {
+            try {
+                List<String> values = redisTemplate.opsForValue().multiGet(List.of(
+                        TransactionLimitScript.dailyKey(userId, today),
+                        TransactionLimitScript.monthlyKey(userId, month),
+                        rateLimiter.redisKey(rateKey, rates[0]),
+                        rateLimiter.redisKey(rateKey, rates[1])));
+                redisHealth.recordSuccess();
+                if (values != null) {
+                    daily = values.get(0);
+                    monthly = values.get(1);
+                    if (!rateLimiter.isLocal()) {
+                        long now = System.currentTimeMillis();
+                        remainingRates = new long[]{
+                                rates[0].remaining(arrival(values.get(2)), now),
+                                rates[1].remaining(arrival(values.get(3)), now)};
+                    }
+                }
+            } catch (DataAccessException e) {
+                redisHealth.recordFailure(e);
+                log.warn("Reading limit counters of user {} failed, using the spend aggregates: {}", userId, e.getMessage());
+            }
+        }
+
+        // validation limits velocity in memory when redis is out of the picture, so does this
+        if (remainingRates == null) {
+            remainingRates = rateLimiter.remainingLocally(rateKey, rates);
+        }
+        BigDecimal dailyTotal = daily != null
+                ? TransactionLimitScript.fromMinorUnits(daily) : spendAggregateService.getDailyTotal(userId, today);
+        BigDecimal monthlyTotal = monthly != null
+                ? TransactionLimitScript.fromMinorUnits(monthly) : spendAggregateService.getMonthlyTotal(userId, month);
+
+        BigDecimal remainingDaily = remaining(limits.getDailyLimit(), dailyTotal);
+        BigDecimal remainingMonthly = remaining(limits.getMonthlyLimit(), monthlyTotal);
+        return LimitHeadroomResponse.builder()
+                .singleTransactionLimit(limits.getSingleTransactionLimit())
+                .dailyLimit(limits.getDailyLimit())
+                .monthlyLimit(limits.getMonthlyLimit())
+                .maxTransactionsPerMinute(limits.getMaxTransactionsPerMinute())
+                .maxTransactionsPerDay(limits.getMaxTransactionsPerDay())
+                .remainingSingle(limits.getSingleTransactionLimit().min(remainingDaily).min(remainingMonthly))
+                .remainingDaily(remainingDaily)
+                .remainingMonthly(remainingMonthly)
+                .remainingPerMinute(remainingRates[0])
+                .remainingPerDay(remainingRates[1])
+                .calculatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private BigDecimal remaining(BigDecimal limit, BigDecimal total) {
+        return limit.subtract(total).max(BigDecimal.ZERO);
+    }
+
+    private long arrival(String value) {
+        return value != null ? Long.parseLong(value) : 0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.entity.transaction.Transaction;
+import com.elevatebanking.repository.TransactionRepository;
+import com.elevatebanking.repository.UserSpendAggregateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * Daily and monthly totals of the transfers a user sent, kept in user_spend_aggregates. Rows are
+ * upserted in the database transaction that completes or rolls back a transfer, so reading a total
+ * is a single primary key lookup. A period without a row is summed from the transactions table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SpendAggregateService {
+    private final UserSpendAggregateRepository aggregateRepository;
+    private final TransactionRepository transactionRepository;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(Transaction transaction) {
+        String userId = senderId(transaction);
+        LocalDateTime createdAt = createdAt(transaction);
+        LocalDate day = createdAt.toLocalDate();
+        YearMonth month = YearMonth.from(createdAt);
+
+        aggregateRepository.add(userId, day.toString(), transaction.getAmount(),
+                day.atStartOfDay(), day.plusDays(1).atStartOfDay(), transaction.getId());
+        aggregateRepository.add(userId, month.toString(), transaction.getAmount(),
+                month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay(), transaction.getId());
+    }
+
+    // a rolled back transfer no longer counts, periods without a row already leave it out of their sum
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reverseTransfer(Transaction transaction) {
+        String userId = senderId(transaction);
+        LocalDateTime createdAt = createdAt(transaction);
+
+        aggregateRepository.subtract(userId, createdAt.toLocalDate().toString(), transaction.getAmount());
+        aggregateRepository.subtract(userId, YearMonth.from(createdAt).toString(), transaction.getAmount());
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal getDailyTotal(String userId, LocalDate day) {
+        return aggregateRepository.findTotal(userId, day.toString())
+                .orElseGet(() -> transactionRepository.sumCompletedTransfersByUser(
+                        userId, day.atStartOfDay(), day.plusDays(1).atStartOfDay()));
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal getMonthlyTotal(String userId, YearMonth month) {
+        return aggregateRepository.findTotal(userId, month.toString())
+                .orElseGet(() -> transactionRepository.sumCompletedTransfersByUser(
+                        userId, month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay()));
+    }
+
+    private String senderId(Transaction transaction) {
+        return transaction.getFromAccount().getUser().getId();
+    }
+
+    // the period a transfer counts in follows its creation time, as the fallback sum does
+    private LocalDateTime createdAt(Transaction transaction) {
+        return transaction.getCreatedAt() != null ? transaction.getCreatedAt() : LocalDateTime.now();
+    }
+}
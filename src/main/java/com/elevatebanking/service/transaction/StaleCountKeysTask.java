@@ -0,0 +1,33 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.service.maintenance.KeyExpiry;
+import com.elevatebanking.service.maintenance.RedisMaintenanceTask;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Deletes transaction counters left without an expiry. The fixed window counters under tx_count:
+ * gave way to GCRA arrival times, which always expire, so this only drains what older versions wrote.
+ */
+@Component
+public class StaleCountKeysTask implements RedisMaintenanceTask {
+
+    @Override
+    public String name() {
+        return "stale-tx-count";
+    }
+
+    @Override
+    public String pattern() {
+        return "tx_count:*";
+    }
+
+    @Override
+    public List<String> selectForDeletion(List<KeyExpiry> batch) {
+        return batch.stream()
+                .filter(KeyExpiry::isPersistent)
+                .map(KeyExpiry::key)
+                .toList();
+    }
+}
@@ -0,0 +1,231 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.dto.transaction.TransactionDTOs.*;
+import com.elevatebanking.entity.account.Account;
+import com.elevatebanking.entity.enums.TransactionStatus;
+import com.elevatebanking.entity.enums.TransactionType;
+import com.elevatebanking.entity.transaction.Transaction;
+import com.elevatebanking.entity.transaction.TransactionBatch;
+import com.elevatebanking.entity.user.User;
+import com.elevatebanking.exception.InvalidOperationException;
+import com.elevatebanking.exception.ResourceNotFoundException;
+import com.elevatebanking.repository.AccountRepository;
+import com.elevatebanking.repository.TransactionBatchRepository;
+import com.elevatebanking.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Bulk transfers (payroll, disbursements). A batch is validated as a group and its transactions are
+ * submitted through the {@link TransactionStateMachine} in JDBC batches, so their transaction.initiated
+ * events go through the outbox with the rows like those of any other transfer. Execution then happens
+ * in TransactionEventProcessor, and progress is read back from the transaction statuses.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionBatchService {
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionBatchRepository batchRepository;
+    private final TransactionValidationService validationService;
+    private final TransactionStateMachine stateMachine;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // matches hibernate.jdbc.batch_size in JpaConfig
+    private static final int INSERT_CHUNK_SIZE = 50;
+    // keeps the IN list of the account lookup well under the driver's bind parameter limit
+    private static final int ACCOUNT_LOOKUP_CHUNK_SIZE = 1000;
+
+    @Transactional
+    public BatchTransferResponse submitTransferBatch(String userId, BatchTransferRequest request) {
+        List<TransferRequest> transfers = request.getTransfers();
+        log.info("Processing transfer batch for user: {}, transfers: {}", userId, transfers.size());
+
+        Map<String, Account> accounts = loadAccounts(transfers);
+
+        // row level validation, tracking what each source account has already committed in this batch
+        List<BatchItemRejection> rejections = new ArrayList<>();
+        List<Integer> accepted = new ArrayList<>(transfers.size());
+        Map<String, BigDecimal> debitedPerAccount = new HashMap<>();
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        BigDecimal largestAmount = BigDecimal.ZERO;
+        User owner = null;
+
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest transfer = transfers.get(i);
+            String reason = validateItem(userId, transfer, accounts, debitedPerAccount);
+            if (reason != null) {
+                rejections.add(BatchItemRejection.builder()
+                        .index(i)
+                        .fromAccountId(transfer.getFromAccountId())
+                        .toAccountId(transfer.getToAccountId())
+                        .reason(reason)
+                        .build());
+                continue;
+            }
+
+            Account fromAccount = accounts.get(transfer.getFromAccountId());
+            owner = fromAccount.getUser();
+            debitedPerAccount.merge(fromAccount.getId(), transfer.getAmount(), BigDecimal::add);
+            totalAmount = totalAmount.add(transfer.getAmount());
+            largestAmount = largestAmount.max(transfer.getAmount());
+            accepted.add(i);
+        }
+
+        // group limits are checked once, a violation rejects the whole batch
+        if (owner != null) {
+            validationService.validateBatchTransferLimits(owner, totalAmount, largestAmount);
+        }
+
+        TransactionBatch batch = new TransactionBatch();
+        batch.setUserId(userId);
+        batch.setReference(request.getReference());
+        batch.setTotalCount(transfers.size());
+        batch.setAcceptedCount(accepted.size());
+        batch.setRejectedCount(rejections.size());
+        batch.setTotalAmount(totalAmount);
+        batch = batchRepository.save(batch);
+
+        submitTransactions(batch.getId(), transfers, accepted, accounts);
+
+        log.info("Transfer batch {} accepted {} of {} transfers, total amount: {}",
+                batch.getId(), accepted.size(), transfers.size(), totalAmount);
+
+        return BatchTransferResponse.builder()
+                .batchId(batch.getId())
+                .status(accepted.isEmpty() ? "REJECTED" : "PROCESSING")
+                .totalCount(transfers.size())
+                .acceptedCount(accepted.size())
+                .rejectedCount(rejections.size())
+                .totalAmount(totalAmount)
+                .rejections(rejections)
+                .timestamp(batch.getCreatedAt())
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public BatchStatusResponse getBatchStatus(String batchId, String userId) {
+        TransactionBatch batch = batchRepository.findByIdAndUserId(batchId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction batch not found"));
+
+        Map<TransactionStatus, Long> counts = new EnumMap<>(TransactionStatus.class);
+        for (Object[] row : transactionRepository.countByStatusForBatch(batchId)) {
+            counts.put((TransactionStatus) row[0], (Long) row[1]);
+        }
+
+        long pending = counts.getOrDefault(TransactionStatus.PENDING, 0L);
+        long completed = counts.getOrDefault(TransactionStatus.COMPLETED, 0L);
+        long failed = batch.getAcceptedCount() - pending - completed;
+
+        return BatchStatusResponse.builder()
+                .batchId(batch.getId())
+                .reference(batch.getReference())
+                .status(resolveBatchStatus(batch, pending, completed))
+                .totalCount(batch.getTotalCount())
+                .rejectedCount(batch.getRejectedCount())
+                .pendingCount(pending)
+                .completedCount(completed)
+                .failedCount(failed)
+                .totalAmount(batch.getTotalAmount())
+                .createdAt(batch.getCreatedAt())
+                .build();
+    }
+
+    private Map<String, Account> loadAccounts(List<TransferRequest> transfers) {
+        Set<String> accountIds = new HashSet<>();
+        for (TransferRequest transfer : transfers) {
+            accountIds.add(transfer.getFromAccountId());
+            accountIds.add(transfer.getToAccountId());
+        }
+
+        Map<String, Account> accounts = new HashMap<>(accountIds.size() * 2);
+        List<String> ids = new ArrayList<>(accountIds);
+        for (int from = 0; from < ids.size(); from += ACCOUNT_LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + ACCOUNT_LOOKUP_CHUNK_SIZE, ids.size()));
+            accountRepository.findAllWithUserByIdIn(chunk).forEach(account -> accounts.put(account.getId(), account));
+        }
+        return accounts;
+    }
+
+    // returns the rejection reason, or null when the transfer is accepted
+    private String validateItem(String userId, TransferRequest transfer, Map<String, Account> accounts,
+                                Map<String, BigDecimal> debitedPerAccount) {
+        Account fromAccount = accounts.get(transfer.getFromAccountId());
+        if (fromAccount == null) {
+            return "Source account not found";
+        }
+        Account toAccount = accounts.get(transfer.getToAccountId());
+        if (toAccount == null) {
+            return "Destination account not found";
+        }
+        if (!fromAccount.getUser().getId().equals(userId)) {
+            return "User is not authorized to perform this operation";
+        }
+
+        try {
+            validationService.validateBatchTransferItem(fromAccount, toAccount, transfer.getAmount());
+        } catch (InvalidOperationException e) {
+            return e.getMessage();
+        }
+
+        BigDecimal alreadyDebited = debitedPerAccount.getOrDefault(fromAccount.getId(), BigDecimal.ZERO);
+        if (fromAccount.getBalance().compareTo(alreadyDebited.add(transfer.getAmount())) < 0) {
+            return "Insufficient balance";
+        }
+        return null;
+    }
+
+    private void submitTransactions(String batchId, List<TransferRequest> transfers, List<Integer> accepted,
+                                    Map<String, Account> accounts) {
+        List<Transaction> chunk = new ArrayList<>(INSERT_CHUNK_SIZE);
+
+        for (Integer index : accepted) {
+            TransferRequest transfer = transfers.get(index);
+            Transaction transaction = new Transaction();
+            transaction.setFromAccount(accounts.get(transfer.getFromAccountId()));
+            transaction.setToAccount(accounts.get(transfer.getToAccountId()));
+            transaction.setAmount(transfer.getAmount());
+            transaction.setDescription(transfer.getDescription());
+            transaction.setType(TransactionType.TRANSFER);
+            transaction.setBatchId(batchId);
+            chunk.add(transaction);
+
+            if (chunk.size() == INSERT_CHUNK_SIZE) {
+                flushChunk(chunk);
+            }
+        }
+        flushChunk(chunk);
+    }
+
+    // one JDBC batch per chunk, the persistence context is cleared so a large batch does not pile up
+    private void flushChunk(List<Transaction> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        stateMachine.submitAll(chunk);
+        entityManager.flush();
+        entityManager.clear();
+        chunk.clear();
+    }
+
+    private String resolveBatchStatus(TransactionBatch batch, long pending, long completed) {
+        if (batch.getAcceptedCount() == 0) {
+            return "REJECTED";
+        }
+        if (pending > 0) {
+            return "PROCESSING";
+        }
+        return completed == batch.getAcceptedCount() ? "COMPLETED" : "COMPLETED_WITH_ERRORS";
+    }
+}
@@ -0,0 +1,171 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.entity.enums.UserTier;
+import com.elevatebanking.entity.limit.TransactionLimit;
+import com.elevatebanking.repository.TransactionLimitRepository;
+import com.elevatebanking.repository.UserRepository;
+import com.elevatebanking.service.transaction.config.TransactionLimitConfig;
+import com.elevatebanking.service.transaction.config.TransactionLimitConfig.TierLimit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Keeps the effective limits of recently active users in memory, so validating a money movement
+ * does not read the user's tier and limit row from the database; limit exceptions come from the
+ * {@link LimitExceptionIndex}.
+ * <p>
+ * Entries only remember what the limits are made of: the tier limits themselves are read from the
+ * current {@link TransactionLimitConfig} snapshot, so a config refresh applies right away. A change
+ * made through {@link TransactionLimitService} is announced on a redis channel after commit and
+ * drops the entry on every node, anything else is picked up when the entry expires.
+ */
+@Component
+@Slf4j
+public class TransactionLimitCache implements MessageListener {
+    private final TransactionLimitRepository limitRepository;
+    private final LimitExceptionIndex exceptionIndex;
+    private final UserRepository userRepository;
+    private final TransactionLimitConfig config;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final Cache<String, UserLimits> limits;
+
+    // override is the user's own limit row, exceptionLimit raises the single transaction limit
+    // while a limit exception is running. Valid until the ttl ends or an exception starts or ends.
+    private record UserLimits(UserTier tier, TierLimit override, BigDecimal exceptionLimit,
+                              LocalDateTime validUntil) {
+    }
+
+    public TransactionLimitCache(TransactionLimitRepository limitRepository,
+                                 LimitExceptionIndex exceptionIndex, UserRepository userRepository,
+                                 TransactionLimitConfig config, RedisTemplate<String, String> redisTemplate,
+                                 RedisMessageListenerContainer listenerContainer) {
+        this.limitRepository = limitRepository;
+        this.exceptionIndex = exceptionIndex;
+        this.userRepository = userRepository;
+        this.config = config;
+        this.redisTemplate = redisTemplate;
+        this.limits = Caffeine.newBuilder()
+                .maximumSize(config.getCache().getMaxEntries())
+                .expireAfter(Expiry.creating((String userId, UserLimits entry) -> remaining(entry)))
+                .build();
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(config.getCache().getChannel()));
+    }
+
+    /**
+     * Effective limits of the user, the defaults stand in for a tier without configured limits.
+     */
+    public TierLimit getLimits(String userId, TierLimit defaults) {
+        UserLimits entry = limits.get(userId, this::load);
+
+        TierLimit base = entry.override();
+        if (base == null) {
+            base = config.getTierLimit(entry.tier());
+        }
+        if (base == null) {
+            base = defaults;
+        }
+        if (entry.exceptionLimit() == null) {
+            return base;
+        }
+        return TierLimit.builder()
+                .singleTransactionLimit(entry.exceptionLimit())
+                .dailyLimit(base.getDailyLimit())
+                .monthlyLimit(base.getMonthlyLimit())
+                .maxTransactionsPerMinute(base.getMaxTransactionsPerMinute())
+                .maxTransactionsPerDay(base.getMaxTransactionsPerDay())
+                .build();
+    }
+
+    /**
+     * Drops the user's entry on every node once the surrounding database transaction commits.
+     */
+    public void publishChange(String userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            announce(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                announce(userId);
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String userId = new String(message.getBody(), StandardCharsets.UTF_8);
+        exceptionIndex.reload(userId);
+        limits.invalidate(userId);
+        log.debug("Limits of user {} changed, cache entry dropped", userId);
+    }
+
+    private void announce(String userId) {
+        // drop it here too, this node must not wait for its own message
+        exceptionIndex.reload(userId);
+        limits.invalidate(userId);
+        try {
+            redisTemplate.convertAndSend(config.getCache().getChannel(), userId);
+        } catch (Exception e) {
+            log.error("Could not announce limit change of user {}, other nodes keep it until it expires: {}",
+                    userId, e.getMessage());
+        }
+    }
+
+    private UserLimits load(String userId) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime validUntil = now.plus(config.getCache().getTtl());
+
+        UserTier tier = userRepository.findTierById(userId).orElse(UserTier.BASIC);
+        TierLimit override = limitRepository.findActiveByUserId(userId)
+                .map(this::toTierLimit)
+                .orElse(null);
+
+        BigDecimal exceptionLimit = null;
+        LimitExceptionIndex.Interval running = exceptionIndex.findActive(userId, now).orElse(null);
+        if (running != null) {
+            exceptionLimit = running.limit();
+            validUntil = earliest(validUntil, running.end());
+        }
+        LocalDateTime nextStart = exceptionIndex.findNextStart(userId, now).orElse(null);
+        validUntil = earliest(validUntil, nextStart);
+
+        return new UserLimits(tier, override, exceptionLimit, validUntil);
+    }
+
+    private TierLimit toTierLimit(TransactionLimit limit) {
+        return TierLimit.builder()
+                .singleTransactionLimit(limit.getSingleTransactionLimit())
+                .dailyLimit(limit.getDailyLimit())
+                .monthlyLimit(limit.getMonthlyLimit())
+                .maxTransactionsPerMinute(limit.getMaxTransactionsPerMinute())
+                .maxTransactionsPerDay(limit.getMaxTransactionsPerDay())
+                .build();
+    }
+
+    private static Duration remaining(UserLimits entry) {
+        Duration remaining = Duration.between(LocalDateTime.now(), entry.validUntil());
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    private LocalDateTime earliest(LocalDateTime current, LocalDateTime candidate) {
+        return candidate != null && candidate.isBefore(current) ? candidate : current;
+    }
+}
@@ -0,0 +1,165 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.service.ratelimit.Rate;
+import com.elevatebanking.service.ratelimit.RateLimiterService;
+import com.elevatebanking.service.redis.RedisScripts;
+import com.elevatebanking.service.transaction.config.TransactionLimitConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Checks all tier limits of a submission and counts it in a single round trip. The script is loaded
+ * once at startup and then run by its SHA, {@link RedisTemplate} falls back to sending the source
+ * when a restarted Redis no longer knows it.
+ * <p>
+ * Amounts, limits and the stored totals are integer minor units, Lua numbers are doubles and
+ * INCRBYFLOAT would let the totals drift. Amounts are rounded up and limits down, so rounding
+ * never lets a transaction past a limit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionLimitScript {
+    private static final DefaultRedisScript<List<String>> SCRIPT =
+            RedisScripts.stringListFromClasspath("scripts/transaction_limits.lua");
+
+    private static final Duration DAILY_TTL = Duration.ofDays(1);
+    private static final Duration MONTHLY_TTL = Duration.ofDays(30);
+    private static final int MINOR_UNIT_DIGITS = 2;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RateLimiterService rateLimiter;
+
+    public enum Limit {
+        SINGLE, DAILY, MONTHLY, PER_MINUTE, PER_DAY
+    }
+
+    /**
+     * Outcome of one check: the limit that failed with its current value, or when a rate can be
+     * retried, or null when the submission passed and was counted.
+     */
+    public record Verdict(Limit failed, BigDecimal current, BigDecimal limit, Duration retryAfter) {
+        public boolean passed() {
+            return failed == null;
+        }
+    }
+
+    // transaction velocity of a user, shared with RateLimiterService under the same keys
+    public static String rateKey(String userId) {
+        return "tx:" + userId;
+    }
+
+    public static String dailyKey(String userId, LocalDate day) {
+        return String.format("daily_total_minor:%s:%s", userId, day);
+    }
+
+    public static String monthlyKey(String userId, YearMonth month) {
+        return String.format("monthly_total_minor:%s:%s", userId, month);
+    }
+
+    public static long toMinorUnits(BigDecimal amount, RoundingMode rounding) {
+        return amount.movePointRight(MINOR_UNIT_DIGITS).setScale(0, rounding).longValueExact();
+    }
+
+    public static BigDecimal fromMinorUnits(String minorUnits) {
+        return new BigDecimal(minorUnits).movePointLeft(MINOR_UNIT_DIGITS);
+    }
+
+    public static Rate[] rates(TransactionLimitConfig.TierLimit limits) {
+        return new Rate[]{
+                Rate.perMinute(Limit.PER_MINUTE.name(), limits.getMaxTransactionsPerMinute()),
+                Rate.perDay(Limit.PER_DAY.name(), limits.getMaxTransactionsPerDay())
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            String sha = redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands()
+                    .scriptLoad(SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+            log.info("Loaded transaction limit script {}", sha);
+        } catch (Exception e) {
+            // not fatal, the first check loads it
+            log.warn("Could not preload transaction limit script: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Checks the limits and, only if all of them pass, adds the amount to the daily and monthly
+     * totals and takes one transaction from the per-minute and per-day rates. Totals are only
+     * checked when countTotals is set, rates only when checkRates is. The database is asked for a
+     * missing total once, when a new day or month starts.
+     */
+    public Verdict check(String userId, BigDecimal amount, BigDecimal largestAmount, boolean countTotals,
+                         boolean checkRates, TransactionLimitConfig.TierLimit limits,
+                         Supplier<BigDecimal> dailyTotal, Supplier<BigDecimal> monthlyTotal) {
+        Rate[] rates = rates(limits);
+        List<String> keys = List.of(
+                dailyKey(userId, LocalDate.now()),
+                monthlyKey(userId, YearMonth.now()),
+                rateLimiter.redisKey(rateKey(userId), rates[0]),
+                rateLimiter.redisKey(rateKey(userId), rates[1]));
+
+        List<String> result = run(keys, amount, largestAmount, countTotals, checkRates, limits, rates, "", "");
+        if ("SEED".equals(result.get(0))) {
+            String dailySeed = "1".equals(result.get(1)) ? minor(dailyTotal.get(), RoundingMode.UP) : "";
+            String monthlySeed = "1".equals(result.get(2)) ? minor(monthlyTotal.get(), RoundingMode.UP) : "";
+            result = run(keys, amount, largestAmount, countTotals, checkRates, limits, rates, dailySeed, monthlySeed);
+        }
+
+        if ("OK".equals(result.get(0))) {
+            log.debug("Transaction limits passed for user {} - daily: {}, monthly: {}",
+                    userId, result.get(1), result.get(2));
+            return new Verdict(null, null, null, null);
+        }
+        Limit failed = Limit.valueOf(result.get(0));
+        if (failed == Limit.PER_MINUTE || failed == Limit.PER_DAY) {
+            return new Verdict(failed, null, null, Duration.ofMillis(Long.parseLong(result.get(1))));
+        }
+        return new Verdict(failed, fromMinorUnits(result.get(1)), fromMinorUnits(result.get(2)), null);
+    }
+
+    private List<String> run(List<String> keys, BigDecimal amount, BigDecimal largestAmount, boolean countTotals,
+                             boolean checkRates, TransactionLimitConfig.TierLimit limits, Rate[] rates,
+                             String dailySeed, String monthlySeed) {
+        List<String> result = redisTemplate.execute(SCRIPT, keys,
+                minor(amount, RoundingMode.UP),
+                minor(largestAmount, RoundingMode.UP),
+                countTotals ? "1" : "0",
+                checkRates ? "1" : "0",
+                minor(limits.getSingleTransactionLimit(), RoundingMode.DOWN),
+                minor(limits.getDailyLimit(), RoundingMode.DOWN),
+                minor(limits.getMonthlyLimit(), RoundingMode.DOWN),
+                dailySeed,
+                monthlySeed,
+                String.valueOf(DAILY_TTL.toSeconds()),
+                String.valueOf(MONTHLY_TTL.toSeconds()),
+                String.valueOf(rates[0].intervalMillis()),
+                String.valueOf(rates[0].periodMillis()),
+                String.valueOf(rates[1].intervalMillis()),
+                String.valueOf(rates[1].periodMillis()));
+        if (result == null || result.isEmpty()) {
+            throw new IllegalStateException("Empty verdict from transaction limit script");
+        }
+        return result;
+    }
+
+    private static String minor(BigDecimal amount, RoundingMode rounding) {
+        return String.valueOf(toMinorUnits(amount, rounding));
+    }
+}
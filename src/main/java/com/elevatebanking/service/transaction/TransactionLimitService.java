@@ -1,5 +1,6 @@
 package com.elevatebanking.service.transaction;
 
+import com.elevatebanking.aspect.RetryOnConflict;
 import com.elevatebanking.entity.enums.TransactionType;
 import com.elevatebanking.entity.limit.LimitException;
 import com.elevatebanking.entity.limit.LimitHistory;
@@ -37,11 +38,14 @@ public class TransactionLimitService {
     LimitExceptionRepository exceptionRepository;
     TransactionRepository transactionRepository;
     RedisTemplate<String, String> redisTemplate;
+    TransactionLimitCache limitCache;
+    LimitExceptionIndex exceptionIndex;
 
+    // a user without a limit row gets an unsaved default, the row is only created on update
     @Transactional(readOnly = true)
     public TransactionLimit getUserLimit(String userId) {
         return limitRepository.findActiveByUserId(userId)
-                .orElseGet(() -> createDefaultLimit(userId));
+                .orElseGet(() -> buildDefaultLimit(userId));
     }
 
     @Transactional
@@ -49,7 +53,7 @@ public class TransactionLimitService {
         TransactionLimit limit = getUserLimit(userId);
 
         // check if there is an active exception
-        Optional<LimitException> activeException = exceptionRepository.findActiveExceptionForUser(userId);
+        Optional<LimitExceptionIndex.Interval> activeException = exceptionIndex.findActive(userId, LocalDateTime.now());
         if (activeException.isPresent()) {
             validateWithException(activeException.get(), amount);
             return;
@@ -77,19 +81,25 @@ public class TransactionLimitService {
     }
 
     @Transactional
+    @RetryOnConflict
     public TransactionLimit updateLimit(String userId, TransactionLimit newLimit) {
-        TransactionLimit currentLimit = getUserLimit(userId);
+        TransactionLimit currentLimit = limitRepository.findActiveByUserId(userId)
+                .orElseGet(() -> createDefaultLimit(userId));
         // create history record
         createLimitHistory(currentLimit, "UPDATE", currentLimit.toString(), newLimit.toString());
         // update fields
         updateLimitFields(currentLimit, newLimit);
-        return limitRepository.save(currentLimit);
+        TransactionLimit saved = limitRepository.save(currentLimit);
+        limitCache.publishChange(userId);
+        return saved;
     }
 
     @Transactional
     public LimitException createException(LimitException exception) {
         validateException(exception);
-        return exceptionRepository.save(exception);
+        LimitException saved = exceptionRepository.save(exception);
+        limitCache.publishChange(saved.getUser().getId());
+        return saved;
     }
 
     void validateException(LimitException exception) {
@@ -221,15 +231,21 @@ public class TransactionLimitService {
         }
     }
 
-    void validateWithException(LimitException exception, BigDecimal amount) {
-        if (amount.compareTo(exception.getExceptionLimit()) > 0) {
+    void validateWithException(LimitExceptionIndex.Interval exception, BigDecimal amount) {
+        if (amount.compareTo(exception.limit()) > 0) {
             throw new TransactionLimitExceededException(
-                    "Amount exceeds exception limit of " + exception.getExceptionLimit()
+                    "Amount exceeds exception limit of " + exception.limit()
             );
         }
     }
 
     TransactionLimit createDefaultLimit(String userId) {
+        TransactionLimit limit = buildDefaultLimit(userId);
+        createLimitHistory(limit, "CREATE", null, limit.toString());
+        return limitRepository.save(limit);
+    }
+
+    TransactionLimit buildDefaultLimit(String userId) {
         TransactionLimit limit = new TransactionLimit();
         limit.setId(userId);
         limit.setSingleTransactionLimit(new BigDecimal("1000000"));
@@ -237,10 +253,7 @@ public class TransactionLimitService {
         limit.setMonthlyLimit(new BigDecimal("50000000"));
         limit.setMaxTransactionsPerMinute(3);
         limit.setMaxTransactionsPerDay(20);
-
-        createLimitHistory(limit, "CREATE", null, limit.toString());
-        return limitRepository.save(limit);
-
+        return limit;
     }
 
     void createLimitHistory(TransactionLimit limit, String action, String oldValue, String newValue) {
@@ -260,8 +273,15 @@ public class TransactionLimitService {
         return historyRepository.findUserLimitHistory(userId);
     }
 
+    // most users have none, which the index answers without a query
     public List<LimitException> getActiveExceptions(String userId) {
-        return exceptionRepository.findByUserId(userId)
+        List<String> ids = exceptionIndex.findUnended(userId).stream()
+                .map(LimitExceptionIndex.Interval::id)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return exceptionRepository.findAllById(ids)
                 .stream()
                 .filter(e -> e.isActive() && e.getEndTime().isAfter(LocalDateTime.now()))
                 .collect(Collectors.toList());
@@ -1,9 +1,9 @@
 package com.elevatebanking.service.transaction;
 
 import com.elevatebanking.entity.enums.TransactionStatus;
-import com.elevatebanking.entity.transaction.Transaction;
 import com.elevatebanking.event.NotificationEvent;
 import com.elevatebanking.repository.TransactionRepository;
+import com.elevatebanking.service.transaction.config.TransactionLockManager;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -14,48 +14,74 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+// checks the last hour of transactions on one node at a time, a condition is alerted once per cooldown
 @Service
 @RequiredArgsConstructor
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class TransactionMonitoringService {
+    private static final String LOCK_NAME = "jobs:transaction-monitoring";
+
     TransactionRepository transactionRepository;
     KafkaTemplate<String, NotificationEvent> notificationTemplate;
+    TransactionLockManager lockManager;
+    // last alert per condition, the window is an hour so a condition holds for many runs
+    Map<String, LocalDateTime> lastAlerts = new ConcurrentHashMap<>();
 
     @Value("${spring.kafka.topics.notification}")
     @NonFinal
     private String notificationTopic;
 
-    @Scheduled(fixedRate = 60000) // 1 minute
+    @Value("${transaction.monitoring.alert-cooldown:30m}")
+    @NonFinal
+    private Duration alertCooldown;
+
+    @Scheduled(fixedDelayString = "${transaction.monitoring.interval:PT1M}")
     public void monitorTransactionMetrics() {
-        log.info("Starting transaction monitoring process");
+        try {
+            Optional<TransactionLockManager.Lease> held = lockManager.tryAcquire(LOCK_NAME, Duration.ZERO);
+            if (held.isEmpty()) {
+                return;
+            }
+            try (TransactionLockManager.Lease lease = held.get()) {
+                checkLastHour();
+            }
+        } catch (Exception e) {
+            log.error("Transaction monitoring run failed: {}", e.getMessage(), e);
+        }
+    }
 
+    private void checkLastHour() {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime oneHourAgo = now.minusHours(1);
 
         // monitor success rate
         double successRate = calculateSuccessRate(oneHourAgo, now);
         if (successRate < 0.95) { // alert if success rate drops below 95%
-            sendAlertNotification("Transaction success rate dropped to " + String.format("%.2f", successRate * 100) + "%");
+            sendAlertNotification("success-rate",
+                    "Transaction success rate dropped to " + String.format("%.2f", successRate * 100) + "%");
         }
 
         // monitor processing time
         double avgProcessingTime = calculateAverageProcessingTime(oneHourAgo, now);
         if (avgProcessingTime > 5000) { // alert if average processing time exceeds 5 seconds
-            sendAlertNotification("High transaction processing time: " + String.format("%.2f ms", avgProcessingTime));
+            sendAlertNotification("processing-time",
+                    "High transaction processing time: " + String.format("%.2f ms", avgProcessingTime));
         }
 
         // monitor failed transactions
-        List<Transaction> failedTransactions = findRecentFailedTransactions(oneHourAgo);
-        if (failedTransactions.size() > 10) { // alert if more than 10 failures in an hour
-            sendAlertNotification("High number of failed transactions: " + failedTransactions.size());
+        long failedTransactions = transactionRepository.countTransactionsByStatusInTimeframe(
+                TransactionStatus.FAILED, oneHourAgo, now);
+        if (failedTransactions > 10) { // alert if more than 10 failures in an hour
+            sendAlertNotification("failures", "High number of failed transactions: " + failedTransactions);
         }
-
-
     }
 
     double calculateSuccessRate(LocalDateTime start, LocalDateTime end) {
@@ -66,22 +92,27 @@ public class TransactionMonitoringService {
 
     }
 
+    // null when nothing completed in the window
     double calculateAverageProcessingTime(LocalDateTime start, LocalDateTime end) {
-        return transactionRepository.calculateAverageProcessingTime(start, end);
+        Double average = transactionRepository.calculateAverageProcessingTime(start, end);
+        return average != null ? average : 0;
     }
 
-    List<Transaction> findRecentFailedTransactions(LocalDateTime since) {
-        return transactionRepository.findByStatusAndCreatedAtAfter(TransactionStatus.FAILED, since);
-    }
+    void sendAlertNotification(String condition, String message) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime last = lastAlerts.get(condition);
+        if (last != null && last.plus(alertCooldown).isAfter(now)) {
+            return;
+        }
+        lastAlerts.put(condition, now);
 
-    void sendAlertNotification(String message) {
         NotificationEvent alert = NotificationEvent.builder()
                 .eventId(UUID.randomUUID().toString())
                 .type("SYSTEM_ALERT")
                 .priority(NotificationEvent.Priority.HIGH.name())
                 .title("Transaction Monitoring Alert")
                 .message(message)
-                .timestamp(LocalDateTime.now())
+                .timestamp(now)
                 .build();
 
         notificationTemplate.send(notificationTopic, alert.getEventId(), alert);
@@ -4,65 +4,103 @@ import com.elevatebanking.entity.account.Account;
 import com.elevatebanking.entity.enums.AccountStatus;
 import com.elevatebanking.entity.enums.TransactionStatus;
 import com.elevatebanking.entity.transaction.Transaction;
-import com.elevatebanking.event.TransactionEvent;
-import com.elevatebanking.exception.InvalidOperationException;
-import com.elevatebanking.repository.AccountRepository;
 import com.elevatebanking.repository.TransactionRepository;
+import com.elevatebanking.service.ledger.LedgerPostingService;
+import com.elevatebanking.service.transaction.config.TransactionLockManager;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+// settles or fails transactions left PENDING long after their events were processed, one node at a time
 @Service
 @RequiredArgsConstructor
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class TransactionRecoveryService {
+    private static final String LOCK_NAME = "jobs:transaction-recovery";
+
     TransactionRepository transactionRepository;
     TransactionCompensationService transactionCompensationService;
-    AccountRepository accountRepository;
-    KafkaTemplate<String, TransactionEvent> kafkaTemplate;
+    LedgerPostingService ledgerPostingService;
+    TransactionStateMachine stateMachine;
+    TransactionLockManager lockManager;
+    TransactionTemplate transactionTemplate;
+
+    // far beyond the retries of a transaction event, so only transactions nobody works on any more
+    @Value("${transaction.recovery.stuck-after:15m}")
+    @NonFinal
+    private Duration stuckAfter;
 
-    @Value("${spring.kafka.topics.transaction}")
+    @Value("${transaction.recovery.batch-size:100}")
     @NonFinal
-    private String transactionTopic;
+    private int batchSize;
 
-    @Scheduled(fixedRate = 300000) // 5 minutes
+    @Scheduled(fixedDelayString = "${transaction.recovery.interval:PT5M}")
     public void recoverStuckTransactions() {
-        log.info("Starting transaction recovery process");
-        List<Transaction> stuckTransactions = findStuckTransactions();
-        for (Transaction transaction : stuckTransactions) {
-            try {
-                recoverTransaction(transaction);
-            } catch (Exception e) {
-                log.error("Failed to recover transaction: {}", transaction.getId(), e);
+        try {
+            Optional<TransactionLockManager.Lease> held = lockManager.tryAcquire(LOCK_NAME, Duration.ZERO);
+            if (held.isEmpty()) {
+                return;
+            }
+            try (TransactionLockManager.Lease lease = held.get()) {
+                List<String> stuck = findStuckTransactions();
+                if (!stuck.isEmpty()) {
+                    log.info("Recovering {} stuck transactions", stuck.size());
+                }
+                for (String transactionId : stuck) {
+                    recover(transactionId);
+                }
             }
+        } catch (Exception e) {
+            log.error("Transaction recovery run failed: {}", e.getMessage(), e);
         }
     }
 
-    List<Transaction> findStuckTransactions() {
-        LocalDateTime threshold = LocalDateTime.now().minusMinutes(15);
-        return transactionRepository.findStuckTransactions(threshold);
+    List<String> findStuckTransactions() {
+        LocalDateTime threshold = LocalDateTime.now().minus(stuckAfter);
+        return transactionRepository.findStuckTransactionIds(threshold, PageRequest.of(0, batchSize));
+    }
+
+    // each transaction in its own database transaction, a failed completion is failed in a fresh one
+    void recover(String transactionId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> transactionRepository.findById(transactionId)
+                    .filter(transaction -> transaction.getStatus() == TransactionStatus.PENDING)
+                    .ifPresent(this::recoverTransaction));
+        } catch (Exception e) {
+            log.error("Failed to recover transaction: {}", transactionId, e);
+            try {
+                transactionTemplate.executeWithoutResult(status -> transactionRepository.findById(transactionId)
+                        .filter(transaction -> transaction.getStatus() == TransactionStatus.PENDING)
+                        .ifPresent(transaction -> transactionCompensationService.compensateTransaction(transaction,
+                                "Failed during recovery completion: " + e.getMessage())));
+            } catch (Exception compensationFailure) {
+                log.error("Failed to compensate transaction: {}", transactionId, compensationFailure);
+            }
+        }
     }
 
-    @Transactional
-    public void recoverTransaction(Transaction transaction) {
+    void recoverTransaction(Transaction transaction) {
         log.info("Attempting to recover transaction: {}", transaction.getId());
-        // check account balances
-        boolean balancesConsistent = verifyAccountBalances(transaction);
-        if (!balancesConsistent) {
-            log.warn("Account balances inconsistent for transaction: {}", transaction.getId());
-            transactionCompensationService.compensateTransaction(transaction, "Inconsistent balances during recovery");
+        // the ledger tells whether money already moved, so a stuck transaction is never posted twice
+        if (ledgerPostingService.isReversed(transaction.getId())) {
+            stateMachine.transition(transaction, TransactionStatus.ROLLED_BACK, "transaction.rolled_back");
+            return;
+        }
+        if (ledgerPostingService.isPosted(transaction.getId())) {
+            markCompleted(transaction);
             return;
         }
 
@@ -74,123 +112,28 @@ public class TransactionRecoveryService {
         }
     }
 
-    boolean verifyAccountBalances(Transaction transaction) {
-        switch (transaction.getType()) {
-            case TRANSFER:
-                return verifyTransferBalances(transaction);
-            case WITHDRAWAL:
-                return verifyWithdrawalBalance(transaction);
-            case DEPOSIT:
-                return verifyDepositBalance(transaction);
-            default:
-                return false;
-        }
-    }
-
-    boolean verifyTransferBalances(Transaction transaction) {
-        Account fromAccount = transaction.getFromAccount();
-        Account toAccount = transaction.getToAccount();
-        BigDecimal amount = transaction.getAmount();
-
-        // verify source account wasn't debited or destination wasn't credited
-        return !(fromAccount.getBalance().compareTo(amount) < 0 ||
-                toAccount.getBalance().add(amount).compareTo(new BigDecimal("999999999999")) > 0); // 999,999,999,999$
-    }
-
-    boolean verifyWithdrawalBalance(Transaction transaction) {
-        return transaction.getFromAccount().getBalance().compareTo(transaction.getAmount()) >= 0;
-    }
-
-    boolean verifyDepositBalance(Transaction transaction) {
-        // verify deposit amount doesn't exceed the maximum balance
-        // 999,999,999,999$
-        // why <=0: because the balance is a positive number
-        // why compareTo(new BigDecimal("999999999999")) <= 0: because the balance should not exceed 999,999,999,999
-        return transaction.getToAccount().getBalance().add(transaction.getAmount())
-                .compareTo(new BigDecimal("999999999999")) <= 0; // 999,999,999,999$
-    }
-
     boolean canCompleteTransaction(Transaction transaction) {
-        // check if accounts are still active and have sufficient balance
-        return transaction.getFromAccount().getStatus() == AccountStatus.ACTIVE &&
-                transaction.getToAccount().getStatus() == AccountStatus.ACTIVE &&
-                verifyAccountBalances(transaction);
-    }
-
-    @Transactional
-    void completeTransaction(Transaction transaction) {
-        log.info("Completing recovered transaction: {}", transaction.getId());
-
-        try {
-            switch (transaction.getType()) {
-                case TRANSFER:
-                    completeTransfer(transaction);
-                    break;
-                case WITHDRAWAL:
-                    completeWithdrawal(transaction);
-                    break;
-                case DEPOSIT:
-                    completeDeposit(transaction);
-                    break;
-                default:
-                    log.warn("Unknown transaction type: {}", transaction.getType());
-            }
-
-            // update status
-            transaction.setStatus(TransactionStatus.COMPLETED);
-            transactionRepository.save(transaction);
-
-            // create and send event
-            TransactionEvent event = new TransactionEvent(transaction, "transaction.completed");
-            event.addProcessStep("COMPLETED_BY_RECOVERY");
-            kafkaTemplate.send(transactionTopic, event.getTransactionId(), event);
-            log.info("Successfully completed recovered transaction: {}", transaction.getId());
-        } catch (Exception e) {
-            log.error("Failed to complete recovered transaction: {}", transaction.getId(), e);
-            transactionCompensationService.compensateTransaction(transaction, "Failed during recovery completion: " + e.getMessage());
-            throw e;
-        }
-    }
-
-    void completeTransfer(Transaction transaction) {
+        // check if accounts are still active and have sufficient balance, deposits have no source account
         Account fromAccount = transaction.getFromAccount();
         Account toAccount = transaction.getToAccount();
-        BigDecimal amount = transaction.getAmount();
-
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
-            throw new InvalidOperationException("Insufficient balance during recovery");
+        if (fromAccount != null && (fromAccount.getStatus() != AccountStatus.ACTIVE
+                || fromAccount.getBalance().compareTo(transaction.getAmount()) < 0)) {
+            return false;
         }
-
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
-
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
+        return toAccount == null || toAccount.getStatus() == AccountStatus.ACTIVE;
     }
 
-    void completeWithdrawal(Transaction transaction) {
-        Account account = transaction.getFromAccount();
-        BigDecimal amount = transaction.getAmount();
-
-        if (account.getBalance().compareTo(amount) < 0) {
-            throw new InvalidOperationException("Insufficient balance during recovery");
-        }
-
-        account.setBalance(account.getBalance().subtract(amount));
-        accountRepository.save(account);
+    void completeTransaction(Transaction transaction) {
+        log.info("Completing recovered transaction: {}", transaction.getId());
+        stateMachine.settle(transaction);
+        log.info("Successfully completed recovered transaction: {}", transaction.getId());
     }
 
-    void completeDeposit(Transaction transaction) {
-        Account account = transaction.getToAccount();
-        BigDecimal amount = transaction.getAmount();
-
-        if (account.getBalance().add(amount).compareTo(new BigDecimal("999999999999")) > 0) {
-            throw new InvalidOperationException("Deposit amount exceeds maximum balance during recovery");
-        }
-
-        account.setBalance(account.getBalance().add(amount));
-        accountRepository.save(account);
+    void markCompleted(Transaction transaction) {
+        // money already moved, only the status was lost
+        stateMachine.transition(transaction, TransactionStatus.COMPLETED, "transaction.completed",
+                event -> event.addProcessStep("COMPLETED_BY_RECOVERY"));
+        log.info("Successfully completed recovered transaction: {}", transaction.getId());
     }
 
-
 }
@@ -5,7 +5,6 @@ import com.elevatebanking.entity.account.Account;
 import com.elevatebanking.entity.enums.TransactionStatus;
 import com.elevatebanking.entity.enums.TransactionType;
 import com.elevatebanking.entity.transaction.Transaction;
-import com.elevatebanking.event.TransactionEvent;
 import com.elevatebanking.exception.InvalidOperationException;
 import com.elevatebanking.repository.TransactionRepository;
 import com.elevatebanking.service.IAccountService;
@@ -13,7 +12,6 @@ import com.elevatebanking.service.ITransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,8 +29,8 @@ public class TransactionServiceImpl implements ITransactionService {
 
     private final TransactionRepository transactionRepository;
     private final IAccountService accountService;
-    private final KafkaTemplate<String, TransactionEvent> kafkaTemplate;
     private final TransactionValidationService validationService;
+    private final TransactionStateMachine stateMachine;
 
     @Override
     public Transaction createTransaction(Transaction transaction) {
@@ -41,14 +39,8 @@ public class TransactionServiceImpl implements ITransactionService {
         // transaction.getAmount());
         validationService.validateTransferTransaction(transaction.getFromAccount(), transaction.getToAccount(),
                 transaction.getAmount());
-        return initializeAndSaveTransaction(transaction);
-    }
-
-    private Transaction initializeAndSaveTransaction(Transaction transaction) {
-        transaction.setStatus(TransactionStatus.PENDING);
-        Transaction savedTransaction = transactionRepository.save(transaction);
-        publishTransactionEvent(savedTransaction, "transaction.initiated");
-        return savedTransaction;
+        // settled asynchronously by the event processor
+        return stateMachine.submit(transaction);
     }
 
     private Transaction buildTransaction(Account fromAccount, Account toAccount, BigDecimal amount, String description,
@@ -63,89 +55,56 @@ public class TransactionServiceImpl implements ITransactionService {
         return transaction;
     }
 
-    private void executeTransfer(String fromAccountId, String toAccountId, BigDecimal amount) {
-        BigDecimal fromBalance = accountService.getBalance(fromAccountId).subtract(amount);
-        BigDecimal toBalance = accountService.getBalance(toAccountId).add(amount);
-
-        accountService.updateBalance(fromAccountId, fromBalance);
-        accountService.updateBalance(toAccountId, toBalance);
-    }
-
-    private void executeWithdrawal(String accountId, BigDecimal amount) {
-        BigDecimal newBalance = accountService.getBalance(accountId).subtract(amount);
-        accountService.updateBalance(accountId, newBalance);
-    }
-
-    private void executeDeposit(String accountId, BigDecimal amount) {
-        BigDecimal newBalance = accountService.getBalance(accountId).add(amount);
-        accountService.updateBalance(accountId, newBalance);
-    }
-
-    private void handleTransactionError(Transaction transaction, Exception e) {
-        log.error("Transaction failed: {}", transaction.getId(), e);
-        transaction.setStatus(TransactionStatus.FAILED);
-        transaction = transactionRepository.save(transaction);
-        publishTransactionEvent(transaction, "transaction.failed");
+    // one row, one insert and one update, one event with the final state after commit
+    private Transaction execute(Transaction transaction, String errorMessage) {
+        transaction = stateMachine.begin(transaction);
+        try {
+            return stateMachine.settle(transaction);
+        } catch (Exception e) {
+            log.error("{}: {}", errorMessage, e.getMessage());
+            // the request's database transaction rolls back, the failed row is not kept
+            throw new RuntimeException(errorMessage, e);
+        }
     }
 
     @Override
     public Transaction processTransfer(String fromAccountId, String toAccountId, BigDecimal amount,
                                        String description) {
         // Validate accounts and balance before creating transaction
-
         Account fromAccount = validateAndGetAccount(fromAccountId, "Source account not found");
         Account toAccount = validateAndGetAccount(toAccountId, "Destination account not found");
         validationService.validateTransferTransaction(fromAccount, toAccount, amount);
 
         Transaction transaction = buildTransaction(fromAccount, toAccount, amount, description,
                 TransactionType.TRANSFER);
-        transaction = initializeAndSaveTransaction(transaction);
-
-        try {
-            // Execute money transfer
-            executeTransfer(fromAccountId, toAccountId, amount);
-            // Update successful status
-            return completeTransaction(transaction);
-        } catch (Exception e) {
-            // Handle error during transaction execution
-            handleTransactionError(transaction, "Error executing transfer", e);
-            throw new RuntimeException("Error executing transfer", e);
-        }
-
+        return execute(transaction, "Error executing transfer");
     }
 
     @Override
     public Transaction processDeposit(String accountId, BigDecimal amount) {
+        return deposit(accountId, amount, "Deposit");
+    }
 
+    private Transaction deposit(String accountId, BigDecimal amount, String description) {
         Account account = validateAndGetAccount(accountId, "Account not found");
         // validateTransactionAmount(amount);
         validationService.validateDepositTransaction(account, amount);
 
-        Transaction transaction = buildTransaction(null, account, amount, "Deposit", TransactionType.DEPOSIT);
-        transaction = initializeAndSaveTransaction(transaction);
-        try {
-            executeDeposit(accountId, amount);
-            return completeTransaction(transaction);
-        } catch (Exception e) {
-            handleTransactionError(transaction, "Error executing deposit", e);
-            throw new RuntimeException("Error executing deposit", e);
-        }
+        Transaction transaction = buildTransaction(null, account, amount, description, TransactionType.DEPOSIT);
+        return execute(transaction, "Error executing deposit");
     }
 
     @Override
     public Transaction processWithdrawal(String accountId, BigDecimal amount) {
+        return withdraw(accountId, amount, "Withdrawal");
+    }
 
+    private Transaction withdraw(String accountId, BigDecimal amount, String description) {
         Account account = validateAndGetAccount(accountId, "Account not found");
         validationService.validateWithdrawalTransaction(account, amount);
 
-        Transaction transaction = buildTransaction(account, null, amount, "Withdrawal", TransactionType.WITHDRAWAL);
-        try {
-            executeWithdrawal(accountId, amount);
-            return completeTransaction(transaction);
-        } catch (Exception e) {
-            handleTransactionError(transaction, "Error executing withdrawal", e);
-            throw new RuntimeException("Error processing withdrawal");
-        }
+        Transaction transaction = buildTransaction(account, null, amount, description, TransactionType.WITHDRAWAL);
+        return execute(transaction, "Error executing withdrawal");
     }
 
     @Override
@@ -174,44 +133,7 @@ public class TransactionServiceImpl implements ITransactionService {
         if (transaction.getStatus() != TransactionStatus.PENDING) {
             throw new InvalidOperationException("Only pending transactions can be cancelled");
         }
-        transaction.setStatus(TransactionStatus.CANCELLED);
-        transactionRepository.save(transaction);
-        publishTransactionEvent(transaction, "transaction.cancelled");
-    }
-
-    private void publishTransactionEvent(Transaction transaction, String eventType) {
-        if (transaction == null) {
-            throw new IllegalArgumentException("Transaction cannot be null");
-        }
-        if (eventType == null || eventType.trim().isEmpty()) {
-            throw new IllegalArgumentException("Event type cannot be null or empty");
-        }
-
-        try {
-            TransactionEvent event = new TransactionEvent(transaction, eventType);
-            kafkaTemplate.send("${spring.kafka.topics.transaction}", eventType, event);
-            //
-        } catch (Exception e) {
-            log.error("Error publishing transaction event: {}", e.getMessage());
-        }
-    }
-
-    private Transaction createInitialTransaction(Account fromAccount, Account toAccount, BigDecimal amount,
-                                                 TransactionType type, String description) {
-        Transaction transaction = new Transaction();
-        transaction.setFromAccount(fromAccount);
-        transaction.setToAccount(toAccount);
-        transaction.setAmount(amount);
-        transaction.setType(type);
-        transaction.setDescription(description);
-        transaction.setStatus(TransactionStatus.PENDING);
-
-        transaction = transactionRepository.save(transaction);
-
-        // publish transaction event
-        publishTransactionEvent(transaction, "transaction.initiated");
-
-        return transaction;
+        stateMachine.transition(transaction, TransactionStatus.CANCELLED, "transaction.cancelled");
     }
 
     private Account validateAndGetAccount(String accountId, String errorMessage) {
@@ -219,60 +141,6 @@ public class TransactionServiceImpl implements ITransactionService {
                 .orElseThrow(() -> new ResourceNotFoundException(errorMessage));
     }
 
-    private Transaction completeTransaction(Transaction transaction) {
-        log.debug("Completing transaction: {}", transaction.getId());
-        transaction.setStatus(TransactionStatus.COMPLETED);
-        transaction = transactionRepository.save(transaction);
-        publishTransactionEvent(transaction, "transaction.completed");
-        log.info("Transaction completed successfully: {}", transaction.getId());
-        return transaction;
-    }
-
-    private void handleTransactionError(Transaction transaction, String errorMessage, Exception e) {
-        log.error("{}: {}", errorMessage, e.getMessage());
-        transaction.setStatus(TransactionStatus.FAILED);
-        transactionRepository.save(transaction);
-        publishTransactionEvent(transaction, "transaction.failed");
-
-    }
-
-    private boolean needsRollback(Transaction transaction) {
-        return transaction.getStatus() == TransactionStatus.FAILED &&
-                (transaction.getType() == TransactionType.TRANSFER ||
-                        transaction.getType() == TransactionType.WITHDRAWAL);
-    }
-
-    private void performRollback(Transaction transaction) {
-        log.info("Performing rollback for transaction: {}", transaction.getId());
-        // add rollback logic here
-        try {
-            switch (transaction.getType()) {
-                case TRANSFER:
-                    executeTransfer(
-                            transaction.getToAccount().getId(), transaction.getFromAccount().getId(),
-                            transaction.getAmount());
-                    break;
-                case WITHDRAWAL:
-                    executeDeposit(transaction.getFromAccount().getId(), transaction.getAmount());
-                    break;
-                // case DEPOSIT:
-                // executeWithdrawal(transaction.getToAccount().getId(),
-                // transaction.getAmount());
-                // break;
-                default:
-                    break;
-            }
-            transaction.setStatus(TransactionStatus.ROLLED_BACK);
-            transactionRepository.save(transaction);
-            publishTransactionEvent(transaction, "transaction.rolled_back");
-        } catch (Exception e) {
-            log.error("Error performing rollback: {}", e.getMessage());
-            transaction.setStatus(TransactionStatus.ROLLBACK_FAILED);
-            transactionRepository.save(transaction);
-            publishTransactionEvent(transaction, "transaction.rollback_failed");
-        }
-    }
-
     //// NEW SERVICE
 
     @Override
@@ -280,119 +148,38 @@ public class TransactionServiceImpl implements ITransactionService {
         log.info("Processing transfer request: {} -> {}, amount: {}", request.getFromAccountId(),
                 request.getToAccountId(), request.getAmount());
 
+        Transaction transaction = processTransfer(request.getFromAccountId(), request.getToAccountId(),
+                request.getAmount(), request.getDescription());
+        return mapToTransactionResponse(transaction);
+    }
+
+    @Override
+    public TransactionResponse submitTransfer(TransferRequest request) {
+        log.info("Submitting transfer request: {} -> {}, amount: {}", request.getFromAccountId(),
+                request.getToAccountId(), request.getAmount());
+
         Account fromAccount = validateAndGetAccount(request.getFromAccountId(), "Source account not found");
         Account toAccount = validateAndGetAccount(request.getToAccountId(), "Destination account not found");
-
-        // validate account and balances
         validationService.validateTransferTransaction(fromAccount, toAccount, request.getAmount());
 
-        // create and save initial transaction
-        Transaction transaction = createInitialTransaction(
-                fromAccount, toAccount, request.getAmount(),
-                TransactionType.TRANSFER, request.getDescription());
-
-        try {
-            processTransfer(
-                    fromAccount.getId(),
-                    toAccount.getId(),
-                    request.getAmount(),
-                    request.getDescription());
-
-            // update transaction status
-            transaction.setStatus(TransactionStatus.COMPLETED);
-            transaction = transactionRepository.save(transaction);
-            publishTransactionEvent(transaction, "transaction.completed");
-        } catch (Exception e) {
-            log.error("Error processing transfer: {}", e.getMessage());
-            if (transaction != null) {
-                transaction.setStatus(TransactionStatus.FAILED);
-                transaction = transactionRepository.save(transaction);
-                publishTransactionEvent(transaction, "transaction.failed");
-            }
-            throw new RuntimeException("Error processing transfer");
-        }
-
-        return mapToTransactionResponse(transaction);
+        Transaction transaction = buildTransaction(fromAccount, toAccount, request.getAmount(),
+                request.getDescription(), TransactionType.TRANSFER);
+        return mapToTransactionResponse(stateMachine.submit(transaction));
     }
 
     @Override
     public TransactionResponse deposit(DepositRequest request) {
         log.info("Processing deposit request: account {}, amount: {}", request.getAccountId(), request.getAmount());
 
-        // validateTransactionAmount(request.getAmount());
-        // if(request.getAmount().compareTo(SINGLE_TRANSFER_LIMIT) > 0){
-        // throw new InvalidOperationException("Amount exceeds single transfer limit");
-        // }
-        Account account = accountService.getAccountById(request.getAccountId())
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
-        // accountService.validateAccount(account.getId(), null);
-        validationService.validateDepositTransaction(account, request.getAmount());
-
-        Transaction transaction = new Transaction();
-        transaction.setToAccount(account);
-        transaction.setAmount(request.getAmount());
-        transaction.setType(TransactionType.DEPOSIT);
-        transaction.setDescription(request.getDescription());
-        transaction.setStatus(TransactionStatus.PENDING);
-
-        transaction = transactionRepository.save(transaction);
-        publishTransactionEvent(transaction, "transaction.initiated");
-
-        try {
-            processDeposit(account.getId(), request.getAmount());
-            transaction.setStatus(TransactionStatus.COMPLETED);
-            transaction = transactionRepository.save(transaction);
-            publishTransactionEvent(transaction, "transaction.completed");
-        } catch (Exception e) {
-            log.error("Error processing deposit: {}", e.getMessage());
-            if (transaction != null) {
-                transaction.setStatus(TransactionStatus.FAILED);
-                transaction = transactionRepository.save(transaction);
-                publishTransactionEvent(transaction, "transaction.failed");
-            }
-            throw new RuntimeException("Error processing deposit");
-        }
-
+        Transaction transaction = deposit(request.getAccountId(), request.getAmount(), request.getDescription());
         return mapToTransactionResponse(transaction);
-
     }
 
     @Override
     public TransactionResponse withdraw(WithdrawRequest request) {
         log.info("Processing withdrawal request: account {}, amount: {}", request.getAccountId(), request.getAmount());
 
-        // validateTransactionAmount(request.getAmount());
-
-        Account account = accountService.getAccountById(request.getAccountId())
-                .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
-        // accountService.validateAccount(account.getId(), request.getAmount());
-        validationService.validateWithdrawalTransaction(account, request.getAmount());
-
-        Transaction transaction = new Transaction();
-        transaction.setFromAccount(account);
-        transaction.setAmount(request.getAmount());
-        transaction.setType(TransactionType.WITHDRAWAL);
-        transaction.setDescription(request.getDescription());
-        transaction.setStatus(TransactionStatus.PENDING);
-
-        transaction = transactionRepository.save(transaction);
-        publishTransactionEvent(transaction, "transaction.initiated");
-
-        try {
-            processWithdrawal(account.getId(), request.getAmount());
-            transaction.setStatus(TransactionStatus.COMPLETED);
-            transaction = transactionRepository.save(transaction);
-            publishTransactionEvent(transaction, "transaction.completed");
-
-        } catch (Exception e) {
-            log.error("Error processing withdrawal: {}", e.getMessage());
-            if (transaction != null) {
-                transaction.setStatus(TransactionStatus.FAILED);
-                transaction = transactionRepository.save(transaction);
-                publishTransactionEvent(transaction, "transaction.failed");
-            }
-            throw new RuntimeException("Error processing withdrawal");
-        }
+        Transaction transaction = withdraw(request.getAccountId(), request.getAmount(), request.getDescription());
         return mapToTransactionResponse(transaction);
     }
 
@@ -0,0 +1,276 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.dto.accounts.AccountDTOs.BalanceTransferResult;
+import com.elevatebanking.entity.enums.TransactionStatus;
+import com.elevatebanking.entity.enums.TransactionType;
+import com.elevatebanking.entity.transaction.Transaction;
+import com.elevatebanking.event.TransactionEvent;
+import com.elevatebanking.exception.InvalidOperationException;
+import com.elevatebanking.exception.ResourceNotFoundException;
+import com.elevatebanking.repository.TransactionRepository;
+import com.elevatebanking.service.ledger.LedgerPostingService;
+import com.elevatebanking.service.outbox.TransactionOutbox;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.elevatebanking.entity.enums.TransactionStatus.*;
+
+/**
+ * Single owner of a transaction's lifecycle. Every status change is checked against the allowed
+ * transitions and written once, and money only moves through {@link #settle}.
+ * <p>
+ * Events are collected per database transaction, one per transaction id carrying its final state: a
+ * transfer that is created and completed in one request publishes only transaction.completed. With
+ * the outbox enabled they are written to event_logs just before commit, in the same transaction,
+ * otherwise they are sent after commit. Outside of a database transaction they go out right away.
+ * <p>
+ * Completing or rolling back a transfer also updates the sender's spend aggregates in the same
+ * database transaction.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionStateMachine {
+    private static final Map<TransactionStatus, Set<TransactionStatus>> TRANSITIONS = new EnumMap<>(TransactionStatus.class);
+
+    static {
+        TRANSITIONS.put(PENDING, EnumSet.of(COMPLETED, FAILED, CANCELLED, ROLLED_BACK, ROLLBACK_FAILED));
+        TRANSITIONS.put(COMPLETED, EnumSet.of(ROLLED_BACK, ROLLBACK_FAILED));
+        TRANSITIONS.put(FAILED, EnumSet.of(ROLLED_BACK, ROLLBACK_FAILED));
+        TRANSITIONS.put(ROLLBACK_FAILED, EnumSet.of(ROLLED_BACK));
+        TRANSITIONS.put(CANCELLED, EnumSet.noneOf(TransactionStatus.class));
+        TRANSITIONS.put(ROLLED_BACK, EnumSet.noneOf(TransactionStatus.class));
+    }
+
+    private final TransactionRepository transactionRepository;
+    private final LedgerPostingService ledgerPostingService;
+    private final SpendAggregateService spendAggregateService;
+    private final KafkaTemplate<String, TransactionEvent> kafkaTemplate;
+    private final TransactionStatusNotifier statusNotifier;
+    private final TransactionOutbox outbox;
+
+    @Value("${spring.kafka.topics.transaction}")
+    private String transactionTopic;
+
+    /**
+     * Persists a new PENDING transaction that the caller settles itself, no event is published
+     * until it reaches its next state.
+     */
+    @Transactional
+    public Transaction begin(Transaction transaction) {
+        transaction.setStatus(PENDING);
+        return transactionRepository.save(transaction);
+    }
+
+    /**
+     * Persists a new PENDING transaction and announces it with transaction.initiated, for the
+     * event processor to settle.
+     */
+    @Transactional
+    public Transaction submit(Transaction transaction) {
+        Transaction saved = begin(transaction);
+        publish(saved.getId(), PENDING, new TransactionEvent(saved, "transaction.initiated"));
+        return saved;
+    }
+
+    /**
+     * {@link #submit} for many transactions, saved together. Their events are held until commit like
+     * any other, the caller may flush and clear the persistence context between calls.
+     */
+    @Transactional
+    public List<Transaction> submitAll(List<Transaction> transactions) {
+        transactions.forEach(transaction -> transaction.setStatus(PENDING));
+        List<Transaction> saved = transactionRepository.saveAll(transactions);
+        for (Transaction transaction : saved) {
+            publish(transaction.getId(), PENDING, new TransactionEvent(transaction, "transaction.initiated"));
+        }
+        return saved;
+    }
+
+    /**
+     * Moves the money of a PENDING transaction and completes it, in one database transaction. A
+     * transaction that is already posted fails on the ledger's unique constraint instead of moving
+     * money twice.
+     */
+    @Transactional
+    public Transaction settle(Transaction transaction) {
+        checkTransition(transaction, COMPLETED);
+
+        BigDecimal fromBalance = null;
+        BigDecimal toBalance = null;
+        switch (transaction.getType()) {
+            case TRANSFER -> {
+                BalanceTransferResult result = ledgerPostingService.postTransfer(transaction);
+                spendAggregateService.recordTransfer(transaction);
+                fromBalance = result.getFromBalance();
+                toBalance = result.getToBalance();
+            }
+            case DEPOSIT -> toBalance = ledgerPostingService.postDeposit(transaction);
+            case WITHDRAWAL -> fromBalance = ledgerPostingService.postWithdrawal(transaction);
+            default -> throw new InvalidOperationException("Unknown transaction type: " + transaction.getType());
+        }
+
+        BigDecimal settledFrom = fromBalance;
+        BigDecimal settledTo = toBalance;
+        return transition(transaction, COMPLETED, "transaction.completed",
+                event -> event.updateBalances(settledFrom, settledTo));
+    }
+
+    @Transactional
+    public Transaction transition(Transaction transaction, TransactionStatus target, String eventType) {
+        return transition(transaction, target, eventType, event -> {
+        });
+    }
+
+    /**
+     * Moves the transaction to the target status. Repeating the current status is a no-op, so a
+     * redelivered event does not write again. A null event type persists without publishing.
+     */
+    @Transactional
+    public Transaction transition(Transaction transaction, TransactionStatus target, String eventType,
+                                  Consumer<TransactionEvent> enrich) {
+        if (transaction.getStatus() == target) {
+            log.debug("Transaction {} is already {}", transaction.getId(), target);
+            return transaction;
+        }
+        checkTransition(transaction, target);
+
+        // money of a settled transfer went back, it no longer counts towards the sender's limits
+        if (target == ROLLED_BACK && transaction.getType() == TransactionType.TRANSFER
+                && ledgerPostingService.isPosted(transaction.getId())) {
+            spendAggregateService.reverseTransfer(transaction);
+        }
+
+        TransactionStatus previous = transaction.getStatus();
+        transaction.setStatus(target);
+        Transaction saved = transactionRepository.save(transaction);
+        log.debug("Transaction {} moved {} -> {}", saved.getId(), previous, target);
+
+        TransactionEvent event = null;
+        if (eventType != null) {
+            event = new TransactionEvent(saved, eventType);
+            enrich.accept(event);
+        }
+        publish(saved.getId(), target, event);
+        return saved;
+    }
+
+    @Transactional
+    public Transaction transition(String transactionId, TransactionStatus target, String eventType) {
+        Transaction transaction = transactionRepository.findById(transactionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found: " + transactionId));
+        return transition(transaction, target, eventType);
+    }
+
+    /**
+     * Publishes the event of a settled transaction's status again, for a redelivered event whose first
+     * delivery committed the status change but may not have got its event out.
+     */
+    // not read-only, the outbox row has to be flushed
+    @Transactional
+    public void republish(String transactionId) {
+        Transaction transaction = transactionRepository.findById(transactionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found: " + transactionId));
+        String eventType = switch (transaction.getStatus()) {
+            case COMPLETED -> "transaction.completed";
+            case FAILED -> "transaction.failed";
+            default -> null;
+        };
+        if (eventType != null) {
+            send(new TransactionEvent(transaction, eventType));
+        }
+    }
+
+    public boolean canTransition(TransactionStatus from, TransactionStatus to) {
+        return TRANSITIONS.get(from).contains(to);
+    }
+
+    // settled once it left PENDING, which is what clients waiting on a submitted transaction care about
+    public static boolean isSettled(TransactionStatus status) {
+        return status != PENDING;
+    }
+
+    private void checkTransition(Transaction transaction, TransactionStatus target) {
+        if (!canTransition(transaction.getStatus(), target)) {
+            throw new InvalidOperationException(String.format("Transaction %s cannot move from %s to %s",
+                    transaction.getId(), transaction.getStatus(), target));
+        }
+    }
+
+    private void publish(String transactionId, TransactionStatus status, TransactionEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            statusNotifier.publish(transactionId, status);
+            if (event != null) {
+                send(event);
+            }
+            return;
+        }
+
+        PendingEvents pending = (PendingEvents) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingEvents();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        // a later state of the same transaction replaces the earlier one
+        pending.statuses.put(transactionId, status);
+        if (event != null) {
+            pending.events.put(transactionId, event);
+        }
+    }
+
+    private void send(TransactionEvent event) {
+        if (outbox.isEnabled()) {
+            outbox.enqueue(transactionTopic, event.getTransactionId(), event);
+            return;
+        }
+        try {
+            kafkaTemplate.send(transactionTopic, event.getTransactionId(), event);
+        } catch (Exception e) {
+            log.error("Error publishing transaction event {} for {}: {}",
+                    event.getEventType(), event.getTransactionId(), e.getMessage());
+        }
+    }
+
+    // events of one database transaction, rolled back work publishes nothing
+    private class PendingEvents implements TransactionSynchronization {
+        private final Map<String, TransactionStatus> statuses = new LinkedHashMap<>();
+        private final Map<String, TransactionEvent> events = new LinkedHashMap<>();
+
+        // an outbox row that fails to insert fails the commit rather than losing the event
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (outbox.isEnabled() && !events.isEmpty()) {
+                outbox.enqueueAll(transactionTopic, events.values());
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            statuses.forEach(statusNotifier::publish);
+            if (!outbox.isEnabled()) {
+                events.values().forEach(TransactionStateMachine.this::send);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionStateMachine.this);
+        }
+    }
+}
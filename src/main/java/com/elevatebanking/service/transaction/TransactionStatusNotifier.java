@@ -0,0 +1,63 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.entity.enums.TransactionStatus;
+import com.elevatebanking.event.TransactionEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Wakes up long-poll and SSE clients waiting on a transaction's status. Changes made on this node
+ * are delivered by {@link TransactionStateMachine} after commit, changes made on other nodes arrive
+ * through a consumer group of this instance alone, so every node sees every transaction event.
+ */
+@Component
+@Slf4j
+public class TransactionStatusNotifier {
+    private final ConcurrentMap<String, Set<Consumer<TransactionStatus>>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a listener for status changes of the transaction, the returned handle removes it.
+     */
+    public Runnable subscribe(String transactionId, Consumer<TransactionStatus> listener) {
+        listeners.computeIfAbsent(transactionId, id -> ConcurrentHashMap.newKeySet()).add(listener);
+        return () -> listeners.computeIfPresent(transactionId, (id, current) -> {
+            current.remove(listener);
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    public void publish(String transactionId, TransactionStatus status) {
+        Set<Consumer<TransactionStatus>> current = listeners.get(transactionId);
+        if (current == null) {
+            return;
+        }
+        for (Consumer<TransactionStatus> listener : current) {
+            try {
+                listener.accept(status);
+            } catch (Exception e) {
+                log.warn("Transaction status listener failed for {}: {}", transactionId, e.getMessage());
+            }
+        }
+    }
+
+    @KafkaListener(
+            topics = "${spring.kafka.topics.transaction}",
+            groupId = "${spring.kafka.consumer.groups.transaction-status}-${random.uuid}",
+            containerFactory = "transactionKafkaListenerContainerFactory",
+            properties = "auto.offset.reset=latest"
+    )
+    public void onTransactionEvent(TransactionEvent event, Acknowledgment ack) {
+        // only status changes of transactions someone on this node is waiting for matter
+        if (event.getTransactionId() != null && event.getStatus() != null) {
+            publish(event.getTransactionId(), event.getStatus());
+        }
+        ack.acknowledge();
+    }
+}
@@ -0,0 +1,133 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.dto.transaction.TransactionDTOs.TransactionStatusResponse;
+import com.elevatebanking.entity.enums.TransactionStatus;
+import com.elevatebanking.entity.transaction.Transaction;
+import com.elevatebanking.exception.ResourceNotFoundException;
+import com.elevatebanking.repository.TransactionRepository;
+import com.elevatebanking.service.transaction.config.AsyncTransactionConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Reports the progress of transactions submitted with Prefer: respond-async. Neither the long-poll
+ * nor the stream holds a request thread while waiting, both are woken by
+ * {@link TransactionStatusNotifier} and fall back to reading the row when they time out.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionStatusService {
+    private final TransactionRepository transactionRepository;
+    private final TransactionStatusNotifier statusNotifier;
+    private final AsyncTransactionConfig config;
+
+    public TransactionStatusResponse getStatus(String transactionId) {
+        Transaction transaction = transactionRepository.findById(transactionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found: " + transactionId));
+        return toResponse(transaction.getId(), transaction.getStatus(), transaction.getUpdatedAt());
+    }
+
+    /**
+     * Answers as soon as the transaction is settled, or with its current status once the wait is over.
+     */
+    public DeferredResult<TransactionStatusResponse> awaitStatus(String transactionId, Duration wait) {
+        Duration timeout = resolveWait(wait);
+        DeferredResult<TransactionStatusResponse> result = new DeferredResult<>(timeout.toMillis());
+
+        // subscribe before reading, so a settlement in between is not missed
+        Runnable unsubscribe = statusNotifier.subscribe(transactionId, status -> {
+            if (TransactionStateMachine.isSettled(status)) {
+                result.setResult(toResponse(transactionId, status, LocalDateTime.now()));
+            }
+        });
+        result.onCompletion(unsubscribe);
+        result.onTimeout(() -> result.setResult(currentStatus(transactionId)));
+        result.onError(e -> unsubscribe.run());
+
+        TransactionStatusResponse current;
+        try {
+            current = getStatus(transactionId);
+        } catch (RuntimeException e) {
+            unsubscribe.run();
+            throw e;
+        }
+        if (current.isSettled() || timeout.isZero()) {
+            result.setResult(current);
+        }
+        return result;
+    }
+
+    /**
+     * Streams status events until the transaction is settled or the stream times out.
+     */
+    public SseEmitter streamStatus(String transactionId) {
+        SseEmitter emitter = new SseEmitter(config.getStreamTimeout().toMillis());
+
+        Runnable unsubscribe = statusNotifier.subscribe(transactionId,
+                status -> send(emitter, toResponse(transactionId, status, LocalDateTime.now())));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe.run());
+
+        try {
+            send(emitter, getStatus(transactionId));
+        } catch (RuntimeException e) {
+            unsubscribe.run();
+            throw e;
+        }
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, TransactionStatusResponse response) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("status")
+                    .id(response.getStatus())
+                    .data(response, MediaType.APPLICATION_JSON));
+            if (response.isSettled()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // client went away or the stream is already closed
+            log.debug("Could not send status of {}: {}", response.getTransactionId(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    private TransactionStatusResponse currentStatus(String transactionId) {
+        try {
+            return getStatus(transactionId);
+        } catch (Exception e) {
+            log.warn("Could not read status of transaction {}: {}", transactionId, e.getMessage());
+            return toResponse(transactionId, TransactionStatus.PENDING, null);
+        }
+    }
+
+    private Duration resolveWait(Duration wait) {
+        if (wait == null) {
+            return config.getDefaultWait();
+        }
+        if (wait.isNegative()) {
+            return Duration.ZERO;
+        }
+        return wait.compareTo(config.getMaxWait()) > 0 ? config.getMaxWait() : wait;
+    }
+
+    private TransactionStatusResponse toResponse(String transactionId, TransactionStatus status, LocalDateTime updatedAt) {
+        return TransactionStatusResponse.builder()
+                .transactionId(transactionId)
+                .status(status.name())
+                .settled(TransactionStateMachine.isSettled(status))
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
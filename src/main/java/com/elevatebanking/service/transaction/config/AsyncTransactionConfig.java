@@ -0,0 +1,19 @@
+package com.elevatebanking.service.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "transaction.async")
+@Data
+public class AsyncTransactionConfig {
+    // when false, Prefer: respond-async is ignored and transfers run synchronously
+    private boolean enabled = true;
+    // long-poll wait when the client does not ask for one, and the most it may ask for
+    private Duration defaultWait = Duration.ofSeconds(20);
+    private Duration maxWait = Duration.ofSeconds(60);
+    private Duration streamTimeout = Duration.ofMinutes(2);
+}
@@ -0,0 +1,24 @@
+package com.elevatebanking.service.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "transaction.idempotency")
+@Data
+public class IdempotencyConfig {
+    // how long a completed response is replayed for the same Idempotency-Key
+    private Duration responseTtl = Duration.ofHours(24);
+    // lease of an in-flight claim, frees the key if the owning node dies mid-request
+    private Duration inFlightTtl = Duration.ofSeconds(30);
+    // renewal of the claim while its request runs, a claim survives two missed renewals
+    private Duration renewInterval = Duration.ofSeconds(10);
+    // how long a duplicate waits for the in-flight request before giving up
+    private Duration waitTimeout = Duration.ofSeconds(10);
+    private Duration pollInterval = Duration.ofMillis(100);
+    private long localMaxEntries = 10_000;
+    private Duration localTtl = Duration.ofMinutes(10);
+}
@@ -1,11 +1,18 @@
 package com.elevatebanking.service.transaction.config;
 
+import com.elevatebanking.entity.enums.UserTier;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -14,6 +21,13 @@ import java.util.Map;
 @Data
 public class TransactionLimitConfig {
     private Map<String, TierLimit> tiers = new HashMap<>();
+    private Cache cache = new Cache();
+    private Headroom headroom = new Headroom();
+
+    // read by every validation, replaced as a whole whenever the tiers are (re)bound
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile Map<UserTier, TierLimit> snapshot = Collections.emptyMap();
 
     @Data
     @Builder
@@ -24,4 +38,31 @@ public class TransactionLimitConfig {
         private int maxTransactionsPerMinute;
         private int maxTransactionsPerDay;
     }
+
+    @Data
+    public static class Cache {
+        private long maxEntries = 100000; // effective limits of this many users are kept per node
+        private Duration ttl = Duration.ofMinutes(10); // bounds staleness of changes made outside the service
+        private String channel = "transaction-limits:changed"; // redis channel of limit change events
+    }
+
+    @Data
+    public static class Headroom {
+        private long maxEntries = 100000;
+        private Duration ttl = Duration.ofSeconds(5); // also sent as max-age, clients may show a headroom this old
+    }
+
+    public void setTiers(Map<String, TierLimit> tiers) {
+        this.tiers = tiers;
+        Map<UserTier, TierLimit> byTier = new EnumMap<>(UserTier.class);
+        tiers.forEach((name, limit) -> byTier.put(UserTier.valueOf(name.toUpperCase()), limit));
+        this.snapshot = Collections.unmodifiableMap(byTier);
+    }
+
+    /**
+     * Limits configured for the tier, or null when the tier has none.
+     */
+    public TierLimit getTierLimit(UserTier tier) {
+        return snapshot.get(tier);
+    }
 }
@@ -0,0 +1,24 @@
+package com.elevatebanking.service.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "transaction.lock")
+@Data
+public class TransactionLockConfig {
+    private String keyPrefix = "lock:";
+    // a lease the watchdog stops renewing, because its node died, frees the lock after this long
+    private Duration leaseTime = Duration.ofSeconds(10);
+    private Duration renewInterval = Duration.ofMillis(3300);
+    // cap on any caller's wait, queued waiters older than this are dropped
+    private Duration maxWait = Duration.ofSeconds(30);
+    // fallback poll while the lock is free but promised to a waiter on another node
+    private Duration retryInterval = Duration.ofMillis(50);
+    // local locks, contenders on one node queue here and only the first one goes to redis
+    private int stripes = 256;
+    private String channel = "transaction-locks:released";
+}
@@ -0,0 +1,316 @@
+package com.elevatebanking.service.transaction.config;
+
+import com.elevatebanking.exception.TransactionProcessingException;
+import com.elevatebanking.service.redis.RedisScripts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Distributed lock on a name, held as a lease that a watchdog keeps renewing while its holder is
+ * alive. A holder that dies stops renewing and the lock frees itself after one lease time, so no
+ * job has to look for leaked locks.
+ * <p>
+ * Contenders on one node first queue on a local stripe, only its holder goes to Redis. There,
+ * waiters queue in arrival order and are woken by a pub/sub message when the lock is released
+ * instead of polling it. Every acquisition gets a fencing token that is higher than the one
+ * before, writers protected by the lock can reject work carrying an older token.
+ * <p>
+ * Leases are not reentrant: acquiring a lock already held by the calling thread waits for itself.
+ */
+@Component
+@Slf4j
+public class TransactionLockManager implements MessageListener {
+    private static final DefaultRedisScript<List<String>> ACQUIRE_SCRIPT =
+            RedisScripts.stringListFromClasspath("scripts/lock_acquire.lua");
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "    redis.call('del', KEYS[1]) " +
+                    "    redis.call('publish', ARGV[2], ARGV[3]) " +
+                    "    return 1 " +
+                    "else " +
+                    "    return 0 " +
+                    "end", Long.class);
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "    return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "else " +
+                    "    return 0 " +
+                    "end", Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TransactionLockConfig config;
+
+    private final Semaphore[] stripes;
+    // the local stripe holder waiting in redis for a name, completed when that lock is released
+    private final ConcurrentMap<String, CompletableFuture<Void>> wakeups = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog;
+
+    private final Timer acquiredWait;
+    private final Timer timedOutWait;
+    private final Counter leasesLost;
+
+    public TransactionLockManager(RedisTemplate<String, String> redisTemplate, TransactionLockConfig config,
+                                  RedisMessageListenerContainer listenerContainer, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.config = config;
+
+        // semaphores instead of locks, a lease may be closed by another thread than the one that took it
+        this.stripes = new Semaphore[config.getStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Semaphore(1, true);
+        }
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("lock-watchdog").daemon().factory());
+
+        this.acquiredWait = waitTimer(meterRegistry, "acquired");
+        this.timedOutWait = waitTimer(meterRegistry, "timed_out");
+        this.leasesLost = Counter.builder("transaction.lock.leases.lost")
+                .description("Leases that expired before their holder released them")
+                .register(meterRegistry);
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(config.getChannel()));
+    }
+
+    /**
+     * A held lock, released by closing it.
+     */
+    public final class Lease implements AutoCloseable {
+        private final String name;
+        private final String owner;
+        private final long fencingToken;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean valid = true;
+        private volatile ScheduledFuture<?> renewal;
+
+        private Lease(String name, String owner, long fencingToken) {
+            this.name = name;
+            this.owner = owner;
+            this.fencingToken = fencingToken;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getFencingToken() {
+            return fencingToken;
+        }
+
+        // false once the lease could not be renewed, another node may hold the lock by now
+        public boolean isValid() {
+            return valid && !released.get();
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    /**
+     * Waits up to the given time, capped by the configured maximum, for the lock.
+     */
+    public Optional<Lease> tryAcquire(String name, Duration wait) {
+        long startedAt = System.nanoTime();
+        Duration capped = wait.compareTo(config.getMaxWait()) > 0 ? config.getMaxWait() : wait;
+        long deadline = startedAt + capped.toNanos();
+
+        Semaphore stripe = stripe(name);
+        try {
+            if (!stripe.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                timedOutWait.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                return Optional.empty();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionProcessingException("Interrupted while waiting for lock " + name, null, true);
+        }
+
+        Optional<Lease> lease;
+        try {
+            lease = acquireInRedis(name, deadline);
+        } catch (RuntimeException e) {
+            stripe.release();
+            throw e;
+        }
+        if (lease.isEmpty()) {
+            stripe.release();
+        }
+        (lease.isPresent() ? acquiredWait : timedOutWait).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return lease;
+    }
+
+    public Lease acquire(String name, Duration wait) {
+        return tryAcquire(name, wait).orElseThrow(() ->
+                new TransactionProcessingException("Timed out waiting for lock " + name, null, true));
+    }
+
+    public <T> T withLock(String name, Duration wait, Supplier<T> action) {
+        try (Lease lease = acquire(name, wait)) {
+            return action.get();
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CompletableFuture<Void> wakeup = wakeups.get(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (wakeup != null) {
+            wakeup.complete(null);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    private Optional<Lease> acquireInRedis(String name, long deadline) {
+        String key = key(name);
+        List<String> keys = List.of(key, key + ":fence", key + ":queue");
+        String owner = UUID.randomUUID().toString();
+
+        while (true) {
+            // registered before trying, so a release right after the attempt still wakes us
+            CompletableFuture<Void> wakeup = new CompletableFuture<>();
+            wakeups.put(name, wakeup);
+            try {
+                List<String> result = redisTemplate.execute(ACQUIRE_SCRIPT, keys, owner,
+                        String.valueOf(config.getLeaseTime().toMillis()),
+                        String.valueOf(config.getMaxWait().toMillis()));
+                if (result == null || result.size() < 2) {
+                    throw new IllegalStateException("Empty result from lock script");
+                }
+                if ("1".equals(result.get(0))) {
+                    return Optional.of(startLease(name, owner, Long.parseLong(result.get(1))));
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    leaveQueue(key, owner);
+                    return Optional.empty();
+                }
+                long leaseLeft = Long.parseLong(result.get(1));
+                long pause = leaseLeft > 0
+                        ? TimeUnit.MILLISECONDS.toNanos(leaseLeft)
+                        : config.getRetryInterval().toNanos();
+                await(wakeup, Math.min(remaining, pause), key, owner);
+            } finally {
+                wakeups.remove(name, wakeup);
+            }
+        }
+    }
+
+    private void await(CompletableFuture<Void> wakeup, long nanos, String key, String owner) {
+        try {
+            wakeup.get(nanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // the holder died without releasing or the pause is over, try again
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            leaveQueue(key, owner);
+            throw new TransactionProcessingException("Interrupted while waiting for lock " + key, null, true);
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+        }
+    }
+
+    private Lease startLease(String name, String owner, long fencingToken) {
+        Lease lease = new Lease(name, owner, fencingToken);
+        long interval = config.getRenewInterval().toMillis();
+        lease.renewal = watchdog.scheduleAtFixedRate(() -> renew(lease), interval, interval, TimeUnit.MILLISECONDS);
+        log.debug("Acquired lock {} with fencing token {}", name, fencingToken);
+        return lease;
+    }
+
+    private void renew(Lease lease) {
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(key(lease.name)), lease.owner,
+                    String.valueOf(config.getLeaseTime().toMillis()));
+            if (renewed == null || renewed == 0) {
+                lease.valid = false;
+                lease.renewal.cancel(false);
+                leasesLost.increment();
+                log.warn("Lease of lock {} expired before it was released", lease.name);
+            }
+        } catch (Exception e) {
+            // tried again on the next tick, the lease outlives a few missed renewals
+            log.warn("Could not renew lease of lock {}: {}", lease.name, e.getMessage());
+        }
+    }
+
+    private void release(Lease lease) {
+        if (!lease.released.compareAndSet(false, true)) {
+            return;
+        }
+        if (lease.renewal != null) {
+            lease.renewal.cancel(false);
+        }
+        try {
+            Long released = redisTemplate.execute(RELEASE_SCRIPT, List.of(key(lease.name)), lease.owner,
+                    config.getChannel(), lease.name);
+            if (released == null || released == 0) {
+                log.warn("Lock {} was no longer held when it was released", lease.name);
+            }
+        } catch (Exception e) {
+            // the lease runs out on its own
+            log.error("Could not release lock {}: {}", lease.name, e.getMessage());
+        } finally {
+            stripe(lease.name).release();
+        }
+    }
+
+    private void leaveQueue(String key, String owner) {
+        try {
+            redisTemplate.opsForZSet().remove(key + ":queue", owner);
+        } catch (Exception e) {
+            // dropped from the queue once it is older than the longest wait
+            log.debug("Could not leave wait queue of {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Semaphore stripe(String name) {
+        return stripes[Math.floorMod(name.hashCode(), stripes.length)];
+    }
+
+    private String key(String name) {
+        return config.getKeyPrefix() + name;
+    }
+
+    private Timer waitTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("transaction.lock.wait")
+                .description("Time spent waiting for a transaction lock")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,24 @@
+package com.elevatebanking.service.transaction.rule;
+
+import com.elevatebanking.entity.account.Account;
+import com.elevatebanking.entity.enums.TransactionType;
+
+import java.math.BigDecimal;
+
+/**
+ * The submission a pipeline validates. Deposits have no source account, withdrawals no destination.
+ */
+public record ValidationContext(TransactionType type, Account fromAccount, Account toAccount, BigDecimal amount) {
+
+    public static ValidationContext transfer(Account fromAccount, Account toAccount, BigDecimal amount) {
+        return new ValidationContext(TransactionType.TRANSFER, fromAccount, toAccount, amount);
+    }
+
+    public static ValidationContext deposit(Account account, BigDecimal amount) {
+        return new ValidationContext(TransactionType.DEPOSIT, null, account, amount);
+    }
+
+    public static ValidationContext withdrawal(Account account, BigDecimal amount) {
+        return new ValidationContext(TransactionType.WITHDRAWAL, account, null, amount);
+    }
+}
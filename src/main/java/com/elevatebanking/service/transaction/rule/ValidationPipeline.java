@@ -0,0 +1,146 @@
+package com.elevatebanking.service.transaction.rule;
+
+import com.elevatebanking.entity.enums.TransactionType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The rules of one transaction type, ordered once at startup into stages. The cheapest rule whose
+ * dependencies have passed always runs next, so local rejections happen before any round trip.
+ * Remote rules that are ready at the same time form one stage and run concurrently; the first
+ * rejection fails the stage without waiting for the others.
+ */
+public class ValidationPipeline {
+    private final TransactionType type;
+    private final List<List<Stage>> stages;
+    private final AsyncTaskExecutor executor;
+
+    private record Stage(ValidationRule rule, Timer passed, Timer rejected) {
+    }
+
+    private ValidationPipeline(TransactionType type, List<List<Stage>> stages, AsyncTaskExecutor executor) {
+        this.type = type;
+        this.stages = stages;
+        this.executor = executor;
+    }
+
+    public static ValidationPipeline compile(TransactionType type, List<ValidationRule> rules,
+                                             AsyncTaskExecutor executor, MeterRegistry meterRegistry) {
+        List<ValidationRule> remaining = rules.stream()
+                .filter(rule -> rule.types().contains(type))
+                .sorted(Comparator.comparing(ValidationRule::cost))
+                .collect(Collectors.toCollection(ArrayList::new));
+        Set<String> applicable = remaining.stream().map(ValidationRule::name).collect(Collectors.toSet());
+
+        Set<String> done = new HashSet<>();
+        List<List<Stage>> stages = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            // dependencies on rules that do not apply to this type are already satisfied
+            List<ValidationRule> ready = remaining.stream()
+                    .filter(rule -> rule.dependsOn().stream().allMatch(d -> done.contains(d) || !applicable.contains(d)))
+                    .toList();
+            if (ready.isEmpty()) {
+                throw new IllegalStateException("Validation rules of " + type + " depend on each other: "
+                        + remaining.stream().map(ValidationRule::name).toList());
+            }
+
+            List<ValidationRule> stage = ready.get(0).cost() == ValidationRule.Cost.REMOTE
+                    ? ready.stream().filter(rule -> rule.cost() == ValidationRule.Cost.REMOTE).toList()
+                    : List.of(ready.get(0));
+            stages.add(stage.stream().map(rule -> new Stage(rule,
+                    ruleTimer(meterRegistry, type, rule, "passed"),
+                    ruleTimer(meterRegistry, type, rule, "rejected"))).toList());
+            stage.forEach(rule -> done.add(rule.name()));
+            remaining.removeAll(stage);
+        }
+        return new ValidationPipeline(type, stages, executor);
+    }
+
+    public void validate(ValidationContext context) {
+        validate(context, ValidationRule.Cost.REMOTE);
+    }
+
+    /**
+     * Runs only the rules no more expensive than maxCost.
+     */
+    public void validate(ValidationContext context, ValidationRule.Cost maxCost) {
+        if (context.type() != type) {
+            throw new IllegalArgumentException("Pipeline of " + type + " cannot validate a " + context.type());
+        }
+        for (List<Stage> stage : stages) {
+            List<Stage> runnable = stage.stream()
+                    .filter(s -> s.rule().cost().compareTo(maxCost) <= 0)
+                    .toList();
+            if (runnable.size() == 1) {
+                run(runnable.get(0), context);
+            } else if (runnable.size() > 1) {
+                runConcurrently(runnable, context);
+            }
+        }
+    }
+
+    // the names of the rules in the order they run, stages in brackets
+    public List<String> describe() {
+        return stages.stream()
+                .map(stage -> stage.stream().map(s -> s.rule().name()).toList().toString())
+                .toList();
+    }
+
+    private void runConcurrently(List<Stage> stage, ValidationContext context) {
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        List<CompletableFuture<Void>> checks = new ArrayList<>(stage.size());
+        for (Stage s : stage) {
+            CompletableFuture<Void> check = CompletableFuture.runAsync(() -> run(s, context), executor);
+            check.whenComplete((result, error) -> {
+                if (error != null) {
+                    firstFailure.completeExceptionally(error);
+                }
+            });
+            checks.add(check);
+        }
+
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new)), firstFailure)
+                    .join();
+        } catch (CompletionException e) {
+            checks.forEach(check -> check.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void run(Stage stage, ValidationContext context) {
+        long startedAt = System.nanoTime();
+        try {
+            stage.rule().check(context);
+            stage.passed().record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            stage.rejected().record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private static Timer ruleTimer(MeterRegistry meterRegistry, TransactionType type, ValidationRule rule,
+                                   String outcome) {
+        return Timer.builder("transaction.validation.rule")
+                .description("Time spent in a validation rule, rejections are counted by the rejected outcome")
+                .tag("type", type.name())
+                .tag("rule", rule.name())
+                .tag("cost", rule.cost().name())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,69 @@
+package com.elevatebanking.service.transaction.rule;
+
+import com.elevatebanking.entity.enums.TransactionType;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * One check of a submission, rejecting it by throwing. Rules name the rules that must have passed
+ * before they run; a rule with side effects, such as counting the submission, should depend on
+ * every rule that can still reject it.
+ */
+public interface ValidationRule {
+
+    enum Cost {
+        LOCAL,  // in memory, on data the caller already holds
+        CACHE,  // a local cache that may load on a miss
+        REMOTE  // a network round trip
+    }
+
+    String name();
+
+    Cost cost();
+
+    Set<TransactionType> types();
+
+    Set<String> dependsOn();
+
+    void check(ValidationContext context);
+
+    static ValidationRule of(String name, Cost cost, Set<TransactionType> types, Set<String> dependsOn,
+                             Consumer<ValidationContext> check) {
+        return new ValidationRule() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public Cost cost() {
+                return cost;
+            }
+
+            @Override
+            public Set<TransactionType> types() {
+                return types;
+            }
+
+            @Override
+            public Set<String> dependsOn() {
+                return dependsOn;
+            }
+
+            @Override
+            public void check(ValidationContext context) {
+                check.accept(context);
+            }
+        };
+    }
+
+    static ValidationRule local(String name, Set<TransactionType> types, Consumer<ValidationContext> check) {
+        return of(name, Cost.LOCAL, types, Set.of(), check);
+    }
+
+    static Set<TransactionType> allTypes() {
+        return EnumSet.allOf(TransactionType.class);
+    }
+}
@@ -0,0 +1,27 @@
+-- GCRA: one theoretical arrival time per key, either every rate takes the request or none does.
+-- KEYS: one per rate
+-- ARGV: emission interval and period of each rate, in milliseconds
+-- Returns {'1'} when allowed, or {'0', index of the refusing rate, retry after in milliseconds}.
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local arrivals = {}
+for i, key in ipairs(KEYS) do
+    local interval = tonumber(ARGV[i * 2 - 1])
+    local period = tonumber(ARGV[i * 2])
+    local tat = tonumber(redis.call('GET', key) or now)
+    if tat < now then
+        tat = now
+    end
+    arrivals[i] = tat + interval
+    local allowAt = arrivals[i] - period
+    if allowAt > now then
+        return {'0', tostring(i), string.format('%d', allowAt - now)}
+    end
+end
+
+for i, key in ipairs(KEYS) do
+    redis.call('SET', key, string.format('%d', arrivals[i]), 'PX', string.format('%d', arrivals[i] - now))
+end
+return {'1'}
@@ -0,0 +1,24 @@
+-- Takes the lock when it is free and no earlier waiter is queued for it, otherwise queues the caller.
+-- KEYS: lock, fencing counter, wait queue
+-- ARGV: owner, lease and longest wait in milliseconds
+-- Returns {'1', fencing token} once taken, or {'0', milliseconds left on the current lease},
+-- which is negative when the lock is free but promised to an earlier waiter.
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+-- waiters that queued longer ago than anyone may wait have given up or died
+redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', now - tonumber(ARGV[3]))
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    local head = redis.call('ZRANGE', KEYS[3], 0, 0)[1]
+    if not head or head == ARGV[1] then
+        redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+        redis.call('ZREM', KEYS[3], ARGV[1])
+        return {'1', tostring(redis.call('INCR', KEYS[2]))}
+    end
+end
+
+redis.call('ZADD', KEYS[3], 'NX', now, ARGV[1])
+redis.call('PEXPIRE', KEYS[3], ARGV[3])
+return {'0', tostring(redis.call('PTTL', KEYS[1]))}
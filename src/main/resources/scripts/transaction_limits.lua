@@ -0,0 +1,78 @@
+-- Checks every tier limit of one submission and, only if all of them pass, counts it.
+-- Money is in integer minor units (cents), so totals add and compare exactly.
+-- KEYS: daily total, monthly total, per minute arrival time, per day arrival time
+-- ARGV: amount, largest single amount, count totals (1/0), check rates (1/0),
+--       single limit, daily limit, monthly limit,
+--       daily seed, monthly seed ('' when not known), daily ttl, monthly ttl (seconds),
+--       per minute interval and period, per day interval and period (milliseconds)
+-- Returns {'OK', daily, monthly} as strings, {'SEED', daily missing, monthly missing},
+-- {'PER_MINUTE' or 'PER_DAY', retry after in milliseconds} or {failed limit, current, limit}.
+-- Transaction velocity is rate limited with GCRA, see gcra.lua.
+
+local amount = tonumber(ARGV[1])
+local countTotals = ARGV[3] == '1'
+local checkRates = ARGV[4] == '1'
+
+if tonumber(ARGV[2]) > tonumber(ARGV[5]) then
+    return {'SINGLE', ARGV[2], ARGV[5]}
+end
+
+local daily = false
+local monthly = false
+local dailyStored = false
+local monthlyStored = false
+if countTotals then
+    dailyStored = redis.call('GET', KEYS[1])
+    monthlyStored = redis.call('GET', KEYS[2])
+    daily = dailyStored or (ARGV[8] ~= '' and ARGV[8])
+    monthly = monthlyStored or (ARGV[9] ~= '' and ARGV[9])
+    -- the caller sums the database once and calls again with the seed
+    if not daily or not monthly then
+        return {'SEED', daily and '0' or '1', monthly and '0' or '1'}
+    end
+    if tonumber(daily) + amount > tonumber(ARGV[6]) then
+        return {'DAILY', daily, ARGV[6]}
+    end
+    if tonumber(monthly) + amount > tonumber(ARGV[7]) then
+        return {'MONTHLY', monthly, ARGV[7]}
+    end
+end
+
+local now = 0
+local arrivals = {}
+if checkRates then
+    local time = redis.call('TIME')
+    now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+    local names = {'PER_MINUTE', 'PER_DAY'}
+    for i = 1, 2 do
+        local interval = tonumber(ARGV[10 + i * 2])
+        local period = tonumber(ARGV[11 + i * 2])
+        local tat = tonumber(redis.call('GET', KEYS[2 + i]) or now)
+        if tat < now then
+            tat = now
+        end
+        arrivals[i] = tat + interval
+        if arrivals[i] - period > now then
+            return {names[i], string.format('%d', arrivals[i] - period - now)}
+        end
+    end
+end
+
+local function add(key, stored, seed, value, ttl)
+    if not stored then
+        redis.call('SET', key, seed, 'EX', ttl)
+    end
+    -- a number in a reply becomes an integer reply, the caller reads strings
+    return tostring(redis.call('INCRBY', key, value))
+end
+
+if countTotals then
+    daily = add(KEYS[1], dailyStored, daily, ARGV[1], ARGV[10])
+    monthly = add(KEYS[2], monthlyStored, monthly, ARGV[1], ARGV[11])
+end
+if checkRates then
+    for i = 1, 2 do
+        redis.call('SET', KEYS[2 + i], string.format('%d', arrivals[i]), 'PX', string.format('%d', arrivals[i] - now))
+    end
+end
+return {'OK', daily or '', monthly or ''}
@@ -0,0 +1,248 @@
+package com.elevatebanking.event.codec;
+
+import com.elevatebanking.entity.enums.TransactionStatus;
+import com.elevatebanking.entity.enums.TransactionType;
+import com.elevatebanking.event.NotificationEvent;
+import com.elevatebanking.event.TransactionEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryEventCodecTest {
+    private static final String TOPIC = "elevate.transactions";
+
+    private static final RecordBinding<Widget> WIDGET_V1 = RecordBinding.of(Widget::new)
+            .field("name", Widget::getName, Widget::setName)
+            .field("size", Widget::getSize, Widget::setSize)
+            .enumField("color", Color.class, Widget::getColor, Widget::setColor)
+            .field("legacy", Widget::getLegacy, Widget::setLegacy);
+
+    private static final RecordBinding<Widget> WIDGET_V2 = RecordBinding.of(Widget::new)
+            .field("name", Widget::getName, Widget::setName)
+            .field("size", Widget::getSize, Widget::setSize)
+            .enumField("color", Color.class, Widget::getColor, Widget::setColor)
+            .field("weight", Widget::getWeight, Widget::setWeight);
+
+    private static EventCodecs codecs;
+
+    @BeforeAll
+    static void loadSchemas() throws IOException {
+        codecs = new EventCodecs(new EventSchemaRegistry());
+    }
+
+    @Test
+    void transactionEventRoundTrips() {
+        TransactionEvent event = transactionEvent();
+
+        BinaryEventCodec<TransactionEvent> codec = codecs.forType(TransactionEvent.class).orElseThrow();
+
+        assertEquals(event, codec.decode(codec.encode(event)));
+    }
+
+    @Test
+    void notificationEventRoundTrips() {
+        NotificationEvent event = NotificationEvent.builder()
+                .eventId("evt-1")
+                .userId("user-1")
+                .title("Transaction COMPLETED")
+                .message("Your transfer has been completed")
+                .transactionId("tx-1")
+                .type("TRANSACTION")
+                .priority("HIGH")
+                .timestamp(LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_789))
+                .metadata(new HashMap<>(Map.of("amount", "10.00", "attempt", 2)))
+                .build();
+
+        BinaryEventCodec<NotificationEvent> codec = codecs.forType(NotificationEvent.class).orElseThrow();
+
+        assertEquals(event, codec.decode(codec.encode(event)));
+    }
+
+    @Test
+    void unsetFieldsStayNull() {
+        TransactionEvent event = new TransactionEvent();
+        event.setEventId("evt-1");
+
+        BinaryEventCodec<TransactionEvent> codec = codecs.forType(TransactionEvent.class).orElseThrow();
+        TransactionEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertNull(decoded.getFromAccount());
+        assertNull(decoded.getMetadata());
+    }
+
+    @Test
+    void deserializerReadsBinaryAndJsonRecords() {
+        TransactionEvent event = transactionEvent();
+        BinaryEventCodec<TransactionEvent> codec = codecs.forType(TransactionEvent.class).orElseThrow();
+        byte[] json;
+        try (JsonSerializer<TransactionEvent> serializer = new JsonSerializer<>()) {
+            json = serializer.serialize(TOPIC, event);
+        }
+
+        try (BinaryEventDeserializer<TransactionEvent> deserializer =
+                     new BinaryEventDeserializer<>(codec, TransactionEvent.class)) {
+            assertEquals(event, deserializer.deserialize(TOPIC, new BinaryEventSerializer<>(codec).serialize(TOPIC, event)));
+            assertEquals(event, deserializer.deserialize(TOPIC, json));
+            assertNull(deserializer.deserialize(TOPIC, null));
+        }
+    }
+
+    @Test
+    void newReaderReadsRecordsOfTheVersionBefore() throws IOException {
+        BinaryEventCodec<Widget> writer = new BinaryEventCodec<>(registry("first"), "widget", WIDGET_V1);
+        BinaryEventCodec<Widget> reader = new BinaryEventCodec<>(registry("evolving"), "widget", WIDGET_V2);
+        Widget widget = new Widget();
+        widget.setName("bolt");
+        widget.setSize(7);
+        widget.setColor(Color.GREEN);
+        widget.setLegacy("dropped in v2");
+
+        Widget decoded = reader.decode(writer.encode(widget));
+
+        assertEquals("bolt", decoded.getName());
+        assertEquals(7, decoded.getSize());
+        assertEquals(Color.GREEN, decoded.getColor());
+        // v2 does not read legacy and v1 never wrote weight
+        assertNull(decoded.getLegacy());
+        assertNull(decoded.getWeight());
+    }
+
+    @Test
+    void readerRefusesAVersionItDoesNotKnow() throws IOException {
+        BinaryEventCodec<Widget> writer = new BinaryEventCodec<>(registry("evolving"), "widget", WIDGET_V2);
+        BinaryEventCodec<Widget> reader = new BinaryEventCodec<>(registry("first"), "widget", WIDGET_V1);
+        Widget widget = new Widget();
+        widget.setColor(Color.BLUE);
+
+        assertThrows(SerializationException.class, () -> reader.decode(writer.encode(widget)));
+    }
+
+    @Test
+    void truncatedRecordIsRefused() {
+        BinaryEventCodec<TransactionEvent> codec = codecs.forType(TransactionEvent.class).orElseThrow();
+        byte[] data = codec.encode(transactionEvent());
+
+        assertThrows(SerializationException.class, () -> codec.decode(Arrays.copyOf(data, data.length / 2)));
+    }
+
+    @Test
+    void registryRefusesAVersionThatChangesAFieldType() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> registry("incompatible"));
+        assertTrue(e.getMessage().contains("size"), e.getMessage());
+    }
+
+    @Test
+    void droppingAnEnumSymbolIsIncompatibleAndAddingOneIsNot() {
+        EventSchema v1 = widgetSchema(1, "RED", "GREEN");
+
+        assertDoesNotThrow(() -> v1.checkCompatible(widgetSchema(2, "RED", "GREEN", "BLUE")));
+        assertThrows(IllegalStateException.class, () -> v1.checkCompatible(widgetSchema(2, "RED")));
+    }
+
+    @Test
+    void codecRefusesABindingThatDoesNotCoverTheSchema() throws IOException {
+        EventSchemaRegistry registry = registry("evolving");
+
+        assertThrows(IllegalStateException.class, () -> new BinaryEventCodec<>(registry, "widget", WIDGET_V1));
+    }
+
+    private static EventSchemaRegistry registry(String set) throws IOException {
+        return new EventSchemaRegistry("classpath*:codec/" + set + "/*/v*.json");
+    }
+
+    private static EventSchema widgetSchema(int version, String... colors) {
+        return new EventSchema("widget", version, List.of(
+                new EventSchema.Field("color", EventSchema.Type.ENUM, List.of(colors), null)));
+    }
+
+    private static TransactionEvent transactionEvent() {
+        TransactionEvent.AccountInfo from = new TransactionEvent.AccountInfo();
+        from.setAccountId("acc-1");
+        from.setAccountNumber("1000000001");
+        from.setAccountName("Alice");
+        from.setBalanceBefore(new BigDecimal("250.00"));
+        from.setBalanceAfter(new BigDecimal("239.50"));
+
+        TransactionEvent event = new TransactionEvent();
+        event.setEventId("evt-1");
+        event.setEventType("transaction.completed");
+        event.setTransactionId("tx-1");
+        event.setType(TransactionType.TRANSFER);
+        event.setStatus(TransactionStatus.COMPLETED);
+        event.setAmount(new BigDecimal("10.50"));
+        event.setFromAccount(from);
+        event.setDescription("rent, ünïcode");
+        event.setTimestamp(LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_789));
+        event.setRetryCount(0);
+        event.setUserId("user-1");
+        event.setMetadata(new HashMap<>(Map.of("channel", "web", "attempt", 3, "fee", 0.25,
+                "sequence", 9_000_000_000L, "flagged", false)));
+        event.setProcessedSteps(List.of("EVENT_CREATED", "VALIDATED"));
+        event.setProcessingStage("SETTLED");
+        return event;
+    }
+
+    enum Color {
+        RED, GREEN, BLUE
+    }
+
+    static class Widget {
+        private String name;
+        private Integer size;
+        private Color color;
+        private String legacy;
+        private BigDecimal weight;
+
+        String getName() {
+            return name;
+        }
+
+        void setName(String name) {
+            this.name = name;
+        }
+
+        Integer getSize() {
+            return size;
+        }
+
+        void setSize(Integer size) {
+            this.size = size;
+        }
+
+        Color getColor() {
+            return color;
+        }
+
+        void setColor(Color color) {
+            this.color = color;
+        }
+
+        String getLegacy() {
+            return legacy;
+        }
+
+        void setLegacy(String legacy) {
+            this.legacy = legacy;
+        }
+
+        BigDecimal getWeight() {
+            return weight;
+        }
+
+        void setWeight(BigDecimal weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.elevatebanking.service.processor;
+
+import com.elevatebanking.entity.enums.TransactionStatus;
+import com.elevatebanking.entity.enums.TransactionType;
+import com.elevatebanking.entity.transaction.Transaction;
+import com.elevatebanking.event.NotificationEvent;
+import com.elevatebanking.event.TransactionEvent;
+import com.elevatebanking.repository.AccountRepository;
+import com.elevatebanking.repository.ProcessedEventRepository;
+import com.elevatebanking.repository.TransactionRepository;
+import com.elevatebanking.service.ITransactionService;
+import com.elevatebanking.service.ledger.LedgerPostingService;
+import com.elevatebanking.service.retry.TransactionRetryScheduler;
+import com.elevatebanking.service.transaction.TransactionStateMachine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Redelivered transaction.initiated events: money moves once per event id, and a delivery that finds
+ * the event already processed publishes the settled status again instead.
+ */
+class TransactionEventProcessorTest {
+    private static final String TOPIC = "elevate.transactions";
+    private static final String TRANSACTION_ID = "tx-1";
+
+    private TransactionStateMachine stateMachine;
+    private TransactionRepository transactionRepository;
+    private TransactionEventProcessor processor;
+    private Acknowledgment ack;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stateMachine = mock(TransactionStateMachine.class);
+        transactionRepository = mock(TransactionRepository.class);
+        ack = mock(Acknowledgment.class);
+
+        // processed_events with its primary key
+        Set<String> processed = new HashSet<>();
+        ProcessedEventRepository processedEventRepository = mock(ProcessedEventRepository.class);
+        when(processedEventRepository.insertIfAbsent(anyString()))
+                .thenAnswer(invocation -> processed.add(invocation.getArgument(0)) ? 1 : 0);
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        // each delivery reads the row as it was before settling, like a consumer racing the first one
+        when(transactionRepository.findById(TRANSACTION_ID)).thenAnswer(invocation -> Optional.of(pendingTransaction()));
+        when(transactionRepository.findAllById(anyCollection())).thenAnswer(invocation -> List.of(pendingTransaction()));
+        when(stateMachine.settle(any())).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            transaction.setStatus(TransactionStatus.COMPLETED);
+            return transaction;
+        });
+
+        processor = new TransactionEventProcessor(mock(ITransactionService.class), mock(LedgerPostingService.class),
+                stateMachine, mock(TransactionRetryScheduler.class),
+                new ProcessedEventService(processedEventRepository, transactionTemplate, Duration.ofDays(7)),
+                transactionRepository, mock(AccountRepository.class), transactionTemplate, new SimpleMeterRegistry(),
+                mock(KafkaTemplate.class), (KafkaTemplate<String, NotificationEvent>) mock(KafkaTemplate.class),
+                mock(ConsumerRecordRecoverer.class));
+    }
+
+    @Test
+    void redeliveredEventSettlesOnceAndRepublishes() {
+        TransactionEvent event = initiated("evt-1");
+
+        processor.processTransactionEvent(event, ack);
+        processor.processTransactionEvent(event, ack);
+
+        verify(stateMachine, times(1)).settle(any());
+        verify(stateMachine, times(1)).republish(TRANSACTION_ID);
+        verify(stateMachine, never()).transition(anyString(), eq(TransactionStatus.FAILED), any());
+    }
+
+    @Test
+    void duplicateInOneBatchSettlesOnceWithoutRepublishing() {
+        TransactionEvent event = initiated("evt-1");
+
+        processor.processTransactionEvents(List.of(record(0, event), record(1, event)), ack);
+
+        verify(stateMachine, times(1)).settle(any());
+        verify(stateMachine, never()).republish(anyString());
+        verify(ack).acknowledge();
+    }
+
+    @Test
+    void eventRedeliveredInALaterBatchRepublishes() {
+        TransactionEvent event = initiated("evt-1");
+
+        processor.processTransactionEvents(List.of(record(0, event)), ack);
+        processor.processTransactionEvents(List.of(record(0, event)), ack);
+
+        verify(stateMachine, times(1)).settle(any());
+        verify(stateMachine, times(1)).republish(TRANSACTION_ID);
+        verify(ack, times(2)).acknowledge();
+    }
+
+    @Test
+    void eventProcessedByTheBatchListenerIsNotSettledAgainByTheSingleOne() {
+        TransactionEvent event = initiated("evt-1");
+
+        processor.processTransactionEvents(List.of(record(0, event)), ack);
+        processor.processTransactionEvent(event, ack);
+
+        verify(stateMachine, times(1)).settle(any());
+        verify(stateMachine, times(1)).republish(TRANSACTION_ID);
+    }
+
+    private static Transaction pendingTransaction() {
+        Transaction transaction = new Transaction();
+        transaction.setId(TRANSACTION_ID);
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setStatus(TransactionStatus.PENDING);
+        transaction.setAmount(new BigDecimal("10.00"));
+        return transaction;
+    }
+
+    private static TransactionEvent initiated(String eventId) {
+        TransactionEvent event = new TransactionEvent();
+        event.setEventId(eventId);
+        event.setEventType("transaction.initiated");
+        event.setTransactionId(TRANSACTION_ID);
+        event.setType(TransactionType.DEPOSIT);
+        event.setStatus(TransactionStatus.PENDING);
+        event.setAmount(new BigDecimal("10.00"));
+        event.setTimestamp(LocalDateTime.now());
+        return event;
+    }
+
+    private static ConsumerRecord<String, TransactionEvent> record(long offset, TransactionEvent event) {
+        return new ConsumerRecord<>(TOPIC, 0, offset, event.getTransactionId(), event);
+    }
+}
@@ -0,0 +1,73 @@
+package com.elevatebanking.service.ratelimit;
+
+import com.elevatebanking.service.ratelimit.config.RateLimiterConfig;
+import com.elevatebanking.service.redis.RedisCircuitBreaker;
+import com.elevatebanking.support.RedisTestContainer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimiterServiceTest {
+    private static final String KEY = "tx:user-1";
+
+    @ParameterizedTest
+    @EnumSource(RateLimiterConfig.Mode.class)
+    void allowsABurstUpToTheLimitThenOneRequestPerInterval(RateLimiterConfig.Mode mode) {
+        RateLimiterService limiter = limiter(mode);
+        Rate rate = Rate.perMinute("PER_MINUTE", 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire(KEY, rate).allowed(), "request " + i);
+        }
+        RateLimitResult limited = limiter.tryAcquire(KEY, rate);
+
+        assertFalse(limited.allowed());
+        assertEquals("PER_MINUTE", limited.limitedBy());
+        // the next slot opens one emission interval (20s) after the burst
+        assertTrue(limited.retryAfter().compareTo(Duration.ZERO) > 0);
+        assertTrue(limited.retryAfter().compareTo(Duration.ofSeconds(20)) <= 0);
+    }
+
+    @ParameterizedTest
+    @EnumSource(RateLimiterConfig.Mode.class)
+    void refusalByOneRateTakesNothingFromTheOthers(RateLimiterConfig.Mode mode) {
+        RateLimiterService limiter = limiter(mode);
+        Rate perMinute = Rate.perMinute("PER_MINUTE", 2);
+        Rate perDay = Rate.perDay("PER_DAY", 1);
+
+        assertTrue(limiter.tryAcquire(KEY, perMinute, perDay).allowed());
+        RateLimitResult limited = limiter.tryAcquire(KEY, perMinute, perDay);
+
+        assertEquals("PER_DAY", limited.limitedBy());
+        // the refused request left the per minute rate with its second request
+        assertTrue(limiter.tryAcquire(KEY, perMinute).allowed());
+        assertFalse(limiter.tryAcquire(KEY, perMinute).allowed());
+    }
+
+    @Test
+    void keysAreSeparate() {
+        RateLimiterService limiter = limiter(RateLimiterConfig.Mode.REDIS);
+        Rate rate = Rate.perMinute("PER_MINUTE", 1);
+
+        assertTrue(limiter.tryAcquire(KEY, rate).allowed());
+        assertTrue(limiter.tryAcquire("tx:user-2", rate).allowed());
+        assertFalse(limiter.tryAcquire(KEY, rate).allowed());
+    }
+
+    private static RateLimiterService limiter(RateLimiterConfig.Mode mode) {
+        RateLimiterConfig config = new RateLimiterConfig();
+        config.setMode(mode);
+        StringRedisTemplate redis = mode == RateLimiterConfig.Mode.REDIS ? RedisTestContainer.freshTemplate() : null;
+        RedisCircuitBreaker redisHealth = mock(RedisCircuitBreaker.class);
+        when(redisHealth.allowRequest()).thenReturn(true);
+        return new RateLimiterService(redis, config, redisHealth, new SimpleMeterRegistry());
+    }
+}
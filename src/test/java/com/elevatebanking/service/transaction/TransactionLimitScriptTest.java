@@ -0,0 +1,120 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.service.ratelimit.RateLimiterService;
+import com.elevatebanking.service.ratelimit.config.RateLimiterConfig;
+import com.elevatebanking.service.redis.RedisCircuitBreaker;
+import com.elevatebanking.service.transaction.TransactionLimitScript.Limit;
+import com.elevatebanking.service.transaction.TransactionLimitScript.Verdict;
+import com.elevatebanking.service.transaction.config.TransactionLimitConfig.TierLimit;
+import com.elevatebanking.support.RedisTestContainer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionLimitScriptTest {
+    private static final String USER = "user-1";
+    private static final Supplier<BigDecimal> NOTHING_SPENT = () -> BigDecimal.ZERO;
+
+    @Test
+    void roundsAmountsUpAndLimitsDown() {
+        assertEquals(1001, TransactionLimitScript.toMinorUnits(new BigDecimal("10.001"), RoundingMode.UP));
+        assertEquals(1000, TransactionLimitScript.toMinorUnits(new BigDecimal("10.009"), RoundingMode.DOWN));
+        assertEquals(30, TransactionLimitScript.toMinorUnits(new BigDecimal("0.30"), RoundingMode.UP));
+        assertEquals(new BigDecimal("0.30"), TransactionLimitScript.fromMinorUnits("30"));
+    }
+
+    @Test
+    void allowsSpendingExactlyUpToTheDailyLimit() {
+        StringRedisTemplate redis = RedisTestContainer.freshTemplate();
+        TransactionLimitScript script = script(redis);
+        TierLimit limits = limits("0.30", 100);
+
+        // 0.1 + 0.1 + 0.1 is above 0.3 in floating point
+        for (int i = 0; i < 3; i++) {
+            assertTrue(check(script, "0.10", limits).passed(), "transfer " + i);
+        }
+        Verdict over = check(script, "0.01", limits);
+
+        assertEquals(Limit.DAILY, over.failed());
+        assertEquals(0, new BigDecimal("0.30").compareTo(over.current()));
+        assertEquals(0, new BigDecimal("0.30").compareTo(over.limit()));
+        assertEquals("30", redis.opsForValue().get(TransactionLimitScript.dailyKey(USER, LocalDate.now())));
+    }
+
+    @Test
+    void rejectsASingleAmountAboveTheLimit() {
+        TransactionLimitScript script = script(RedisTestContainer.freshTemplate());
+
+        Verdict verdict = check(script, "100.01", limits("1000", 100));
+
+        assertEquals(Limit.SINGLE, verdict.failed());
+        assertEquals(0, new BigDecimal("100.01").compareTo(verdict.current()));
+    }
+
+    @Test
+    void seedsMissingTotalsFromTheDatabaseOnce() {
+        StringRedisTemplate redis = RedisTestContainer.freshTemplate();
+        TransactionLimitScript script = script(redis);
+        AtomicInteger dailyLookups = new AtomicInteger();
+        Supplier<BigDecimal> dailyTotal = () -> {
+            dailyLookups.incrementAndGet();
+            return new BigDecimal("12.34");
+        };
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(script.check(USER, new BigDecimal("1.00"), new BigDecimal("1.00"), true, false,
+                    limits("1000", 100), dailyTotal, NOTHING_SPENT).passed());
+        }
+
+        assertEquals(1, dailyLookups.get());
+        assertEquals("1434", redis.opsForValue().get(TransactionLimitScript.dailyKey(USER, LocalDate.now())));
+    }
+
+    @Test
+    void refusedRateCountsNothing() {
+        StringRedisTemplate redis = RedisTestContainer.freshTemplate();
+        TransactionLimitScript script = script(redis);
+        TierLimit limits = limits("1000", 2);
+
+        assertTrue(check(script, "1.00", limits).passed());
+        assertTrue(check(script, "1.00", limits).passed());
+        Verdict limited = check(script, "1.00", limits);
+
+        assertEquals(Limit.PER_MINUTE, limited.failed());
+        assertTrue(limited.retryAfter().toMillis() > 0);
+        assertEquals("200", redis.opsForValue().get(TransactionLimitScript.dailyKey(USER, LocalDate.now())));
+    }
+
+    private static Verdict check(TransactionLimitScript script, String amount, TierLimit limits) {
+        BigDecimal value = new BigDecimal(amount);
+        return script.check(USER, value, value, true, true, limits, NOTHING_SPENT, NOTHING_SPENT);
+    }
+
+    private static TierLimit limits(String daily, int perMinute) {
+        return TierLimit.builder()
+                .singleTransactionLimit(new BigDecimal("100"))
+                .dailyLimit(new BigDecimal(daily))
+                .monthlyLimit(new BigDecimal("100000"))
+                .maxTransactionsPerMinute(perMinute)
+                .maxTransactionsPerDay(1000)
+                .build();
+    }
+
+    private static TransactionLimitScript script(StringRedisTemplate redis) {
+        RedisCircuitBreaker redisHealth = mock(RedisCircuitBreaker.class);
+        when(redisHealth.allowRequest()).thenReturn(true);
+        RateLimiterService rateLimiter = new RateLimiterService(redis, new RateLimiterConfig(), redisHealth,
+                new SimpleMeterRegistry());
+        return new TransactionLimitScript(redis, rateLimiter);
+    }
+}
@@ -0,0 +1,132 @@
+package com.elevatebanking.service.transaction;
+
+import com.elevatebanking.entity.enums.TransactionStatus;
+import com.elevatebanking.entity.enums.TransactionType;
+import com.elevatebanking.entity.transaction.Transaction;
+import com.elevatebanking.event.TransactionEvent;
+import com.elevatebanking.exception.InvalidOperationException;
+import com.elevatebanking.repository.TransactionRepository;
+import com.elevatebanking.service.ledger.LedgerPostingService;
+import com.elevatebanking.service.outbox.TransactionOutbox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.elevatebanking.entity.enums.TransactionStatus.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TransactionStateMachineTest {
+    // the whole table, a status missing here has no way out
+    private static final Map<TransactionStatus, Set<TransactionStatus>> ALLOWED = Map.of(
+            PENDING, EnumSet.of(COMPLETED, FAILED, CANCELLED, ROLLED_BACK, ROLLBACK_FAILED),
+            COMPLETED, EnumSet.of(ROLLED_BACK, ROLLBACK_FAILED),
+            FAILED, EnumSet.of(ROLLED_BACK, ROLLBACK_FAILED),
+            ROLLBACK_FAILED, EnumSet.of(ROLLED_BACK),
+            CANCELLED, EnumSet.noneOf(TransactionStatus.class),
+            ROLLED_BACK, EnumSet.noneOf(TransactionStatus.class));
+
+    private TransactionRepository transactionRepository;
+    private LedgerPostingService ledgerPostingService;
+    private SpendAggregateService spendAggregateService;
+    private KafkaTemplate<String, TransactionEvent> kafkaTemplate;
+    private TransactionStatusNotifier statusNotifier;
+    private TransactionStateMachine stateMachine;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        transactionRepository = mock(TransactionRepository.class);
+        ledgerPostingService = mock(LedgerPostingService.class);
+        spendAggregateService = mock(SpendAggregateService.class);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        statusNotifier = mock(TransactionStatusNotifier.class);
+        TransactionOutbox outbox = mock(TransactionOutbox.class);
+        when(transactionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        stateMachine = new TransactionStateMachine(transactionRepository, ledgerPostingService,
+                spendAggregateService, kafkaTemplate, statusNotifier, outbox);
+        ReflectionTestUtils.setField(stateMachine, "transactionTopic", "elevate.transactions");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransactionStatus.class)
+    void followsTheTransitionTable(TransactionStatus from) {
+        for (TransactionStatus to : TransactionStatus.values()) {
+            assertEquals(ALLOWED.get(from).contains(to), stateMachine.canTransition(from, to), from + " -> " + to);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransactionStatus.class)
+    void transitionEnforcesTheTable(TransactionStatus from) {
+        for (TransactionStatus to : TransactionStatus.values()) {
+            clearInvocations(transactionRepository, kafkaTemplate, statusNotifier);
+            Transaction transaction = transaction(TransactionType.DEPOSIT, from);
+
+            if (from == to) {
+                // a redelivered event repeating the current status writes nothing
+                stateMachine.transition(transaction, to, "transaction.test");
+                verifyNoInteractions(kafkaTemplate, statusNotifier);
+                verify(transactionRepository, never()).save(any());
+            } else if (ALLOWED.get(from).contains(to)) {
+                Transaction saved = stateMachine.transition(transaction, to, "transaction.test");
+                assertEquals(to, saved.getStatus());
+                verify(statusNotifier).publish(transaction.getId(), to);
+                verify(kafkaTemplate).send(eq("elevate.transactions"), eq(transaction.getId()),
+                        any(TransactionEvent.class));
+            } else {
+                assertThrows(InvalidOperationException.class,
+                        () -> stateMachine.transition(transaction, to, "transaction.test"), from + " -> " + to);
+                assertEquals(from, transaction.getStatus());
+                verify(transactionRepository, never()).save(any());
+            }
+        }
+    }
+
+    @Test
+    void settleRefusesATransactionThatLeftPending() {
+        Transaction transaction = transaction(TransactionType.TRANSFER, COMPLETED);
+
+        assertThrows(InvalidOperationException.class, () -> stateMachine.settle(transaction));
+        verifyNoInteractions(ledgerPostingService, spendAggregateService);
+    }
+
+    @Test
+    void rollingBackAPostedTransferReversesTheSpendAggregates() {
+        Transaction transaction = transaction(TransactionType.TRANSFER, COMPLETED);
+        when(ledgerPostingService.isPosted(transaction.getId())).thenReturn(true);
+
+        stateMachine.transition(transaction, ROLLED_BACK, null);
+
+        verify(spendAggregateService).reverseTransfer(transaction);
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any(TransactionEvent.class));
+    }
+
+    @Test
+    void onlyPendingIsUnsettled() {
+        for (TransactionStatus status : TransactionStatus.values()) {
+            assertEquals(status != PENDING, TransactionStateMachine.isSettled(status), status.name());
+        }
+    }
+
+    private static Transaction transaction(TransactionType type, TransactionStatus status) {
+        Transaction transaction = new Transaction();
+        transaction.setId("tx-1");
+        transaction.setType(type);
+        transaction.setStatus(status);
+        transaction.setAmount(new BigDecimal("10.00"));
+        return transaction;
+    }
+}
@@ -0,0 +1,39 @@
+package com.elevatebanking.support;
+
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * One Redis for all script tests, started on first use. Tests using it are skipped where Docker is
+ * not available.
+ */
+public final class RedisTestContainer {
+    private static GenericContainer<?> redis;
+    private static StringRedisTemplate template;
+
+    private RedisTestContainer() {
+    }
+
+    // an empty database for every test
+    public static synchronized StringRedisTemplate freshTemplate() {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is needed to run Redis");
+        if (redis == null) {
+            redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+            redis.start();
+            LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+            connectionFactory.afterPropertiesSet();
+            template = new StringRedisTemplate(connectionFactory);
+            template.afterPropertiesSet();
+        }
+        template.execute(connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        }, true);
+        return template;
+    }
+}